@@ -0,0 +1,79 @@
+package net.maunium.maucapture.benchmark;
+
+import java.awt.event.InputEvent;
+import java.awt.event.MouseEvent;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.maunium.maucapture.swing.JDrawPlate;
+
+/**
+ * Measures drawing one freehand or eraser stroke through the mouse handlers of {@link JDrawPlate}: pressing, dragging
+ * over 100 points and releasing. The stroke is undone after each invocation so the scene doesn't grow.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class DrawPlateBenchmark {
+	private static final int POINTS = 100;
+
+	@Param({"FREE", "ERASE"})
+	public JDrawPlate.DrawMode mode;
+	@Param({"1920x1080", "3840x2160"})
+	public String resolution;
+
+	private JDrawPlate plate;
+	private MouseEvent press, release;
+	private MouseEvent[] drags;
+
+	@Setup
+	public void setup() {
+		String[] parts = resolution.split("x");
+		int width = Integer.parseInt(parts[0]), height = Integer.parseInt(parts[1]);
+		plate = new JDrawPlate(Screenshots.create(width, height));
+		plate.setZoom(1);
+		plate.setDrawMode(mode);
+
+		// A diagonal zigzag across the middle of the image.
+		drags = new MouseEvent[POINTS];
+		for (int i = 0; i < POINTS; i++) {
+			int x = width / 4 + i * width / 2 / POINTS;
+			int y = height / 2 + (i % 2 == 0 ? -1 : 1) * height / 8;
+			drags[i] = event(MouseEvent.MOUSE_DRAGGED, x, y);
+		}
+		press = event(MouseEvent.MOUSE_PRESSED, width / 4, height / 2);
+		release = event(MouseEvent.MOUSE_RELEASED, width * 3 / 4, height / 2);
+	}
+
+	private MouseEvent event(int id, int x, int y) {
+		return new MouseEvent(plate, id, 0, InputEvent.BUTTON1_DOWN_MASK, x, y, 1, false, MouseEvent.BUTTON1);
+	}
+
+	@Benchmark
+	public long stroke() {
+		plate.mousePressed(press);
+		for (MouseEvent drag : drags) {
+			plate.mouseDragged(drag);
+		}
+		plate.mouseReleased(release);
+		plate.undo();
+		return plate.getRevision();
+	}
+}
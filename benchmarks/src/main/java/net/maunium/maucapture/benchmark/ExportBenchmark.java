@@ -0,0 +1,70 @@
+package net.maunium.maucapture.benchmark;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.maunium.maucapture.annotation.ArrowAnnotation;
+import net.maunium.maucapture.annotation.RectangleAnnotation;
+import net.maunium.maucapture.annotation.Scene;
+import net.maunium.maucapture.util.ImageConversion;
+
+/**
+ * Measures the full-image copies made before uploading: exporting an annotated scene to a new image, and converting
+ * a decoded or captured image to the compatible format the editor uses.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ExportBenchmark {
+	@Param({"1920x1080", "3840x2160", "7680x4320"})
+	public String resolution;
+
+	private Scene scene;
+	private BufferedImage decoded;
+
+	@Setup
+	public void setup() {
+		String[] parts = resolution.split("x");
+		int width = Integer.parseInt(parts[0]), height = Integer.parseInt(parts[1]);
+		BufferedImage image = Screenshots.create(width, height);
+		scene = new Scene(image);
+		for (int i = 0; i < 10; i++) {
+			int x = width * i / 10, y = height * i / 10;
+			scene.add(new RectangleAnnotation(Color.RED, 10, false, x, y, x + width / 10, y + height / 10));
+			scene.add(new ArrowAnnotation(Color.BLUE, 10, width - x, y, width - x - width / 10, y + height / 10));
+		}
+
+		// ImageIO decodes PNGs to byte-based images, which have to be converted before editing.
+		decoded = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+		decoded.getGraphics().drawImage(image, 0, 0, null);
+	}
+
+	@Benchmark
+	public BufferedImage export() {
+		return scene.export();
+	}
+
+	@Benchmark
+	public BufferedImage toCompatible() {
+		return ImageConversion.toCompatible(decoded);
+	}
+}
@@ -0,0 +1,54 @@
+package net.maunium.maucapture.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the ImageIO writers with their default settings, as a baseline for the encoders in mauCapture.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ImageIoEncodeBenchmark {
+	@Param({"1920x1080", "3840x2160", "7680x4320"})
+	public String resolution;
+	@Param({"png", "jpg"})
+	public String format;
+
+	private BufferedImage image;
+
+	@Setup
+	public void setup() {
+		String[] parts = resolution.split("x");
+		image = Screenshots.create(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+	}
+
+	@Benchmark
+	public int encode() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, format, out);
+		return out.size();
+	}
+}
@@ -0,0 +1,49 @@
+package net.maunium.maucapture.benchmark;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Generates images that look roughly like screenshots: flat backgrounds, window-like boxes, antialiased text and a
+ * photo-like noisy area.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class Screenshots {
+	public static BufferedImage create(int width, int height) {
+		BufferedImage bi = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = bi.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		// Always use the same seed, so every run encodes the same image.
+		Random r = new Random(1);
+		g.setColor(new Color(0x2B2B2B));
+		g.fillRect(0, 0, width, height);
+		g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 13));
+		for (int i = 0; i < width * height / 200000; i++) {
+			int x = r.nextInt(width), y = r.nextInt(height), w = 200 + r.nextInt(800), h = 100 + r.nextInt(500);
+			g.setColor(new Color(0xEEEEEE));
+			g.fillRect(x, y, w, h);
+			g.setColor(new Color(0x3C6EB4));
+			g.fillRect(x, y, w, 24);
+			g.setColor(Color.DARK_GRAY);
+			for (int line = 40; line < h; line += 16) {
+				g.drawString("The quick brown fox jumps over the lazy dog " + r.nextInt(), x + 6, y + line);
+			}
+		}
+		// A photo-like area that doesn't compress well.
+		int pw = width / 4, ph = height / 4;
+		for (int y = 0; y < ph; y++) {
+			for (int x = 0; x < pw; x++) {
+				int v = (x * 255 / pw + r.nextInt(16)) & 0xFF;
+				bi.setRGB(width - pw + x, y, v << 16 | (y * 255 / ph) << 8 | (255 - v));
+			}
+		}
+		g.dispose();
+		return bi;
+	}
+}
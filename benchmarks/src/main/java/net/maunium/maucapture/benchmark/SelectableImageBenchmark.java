@@ -0,0 +1,69 @@
+package net.maunium.maucapture.benchmark;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.maunium.maucapture.swing.JSelectableImage;
+
+/**
+ * Measures painting the region selection view with a selection in the middle, as done on every mouse drag while
+ * selecting a capture or crop area.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SelectableImageBenchmark {
+	@Param({"1920x1080", "3840x2160"})
+	public String resolution;
+	@Param({"0.5", "1"})
+	public double zoom;
+
+	private JSelectableImage component;
+	private BufferedImage screen;
+	private Graphics2D g;
+
+	@Setup
+	public void setup() {
+		String[] parts = resolution.split("x");
+		int width = Integer.parseInt(parts[0]), height = Integer.parseInt(parts[1]);
+		component = new JSelectableImage(Screenshots.create(width, height));
+		component.setZoom(zoom);
+		component.xMin = width / 4;
+		component.yMin = height / 4;
+		component.xMax = width * 3 / 4;
+		component.yMax = height * 3 / 4;
+		screen = new BufferedImage(component.getWidth(), component.getHeight(), BufferedImage.TYPE_INT_RGB);
+		g = screen.createGraphics();
+	}
+
+	@TearDown
+	public void tearDown() {
+		g.dispose();
+	}
+
+	@Benchmark
+	public BufferedImage paintComponent() {
+		component.paintComponent(g);
+		return screen;
+	}
+}
@@ -0,0 +1,83 @@
+package net.maunium.maucapture.benchmark;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.maunium.maucapture.annotation.Annotation;
+import net.maunium.maucapture.annotation.ArrowAnnotation;
+import net.maunium.maucapture.annotation.OvalAnnotation;
+import net.maunium.maucapture.annotation.RectangleAnnotation;
+import net.maunium.maucapture.annotation.Scene;
+
+/**
+ * Measures rasterizing a single shape annotation of about a quarter of a 1080p screen with the editor's rendering
+ * settings.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ShapeBenchmark {
+	@Param({"arrow", "rectangle", "filled-rectangle", "oval", "filled-oval"})
+	public String shape;
+	@Param({"3", "10", "30"})
+	public int size;
+
+	private BufferedImage image;
+	private Graphics2D g;
+	private Annotation annotation;
+
+	@Setup
+	public void setup() {
+		image = Screenshots.create(1920, 1080);
+		g = image.createGraphics();
+		Scene.prepareGraphics(g);
+		int x1 = 480, y1 = 270, x2 = 1440, y2 = 810;
+		switch (shape) {
+		case "arrow":
+			annotation = new ArrowAnnotation(Color.RED, size, x1, y1, x2, y2);
+			break;
+		case "rectangle":
+		case "filled-rectangle":
+			annotation = new RectangleAnnotation(Color.RED, size, shape.startsWith("filled"), x1, y1, x2, y2);
+			break;
+		case "oval":
+		case "filled-oval":
+			annotation = new OvalAnnotation(Color.RED, size, shape.startsWith("filled"), x1, y1, x2, y2);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown shape " + shape);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		g.dispose();
+	}
+
+	@Benchmark
+	public BufferedImage paint() {
+		annotation.paint(g, image);
+		return image;
+	}
+}
@@ -0,0 +1,96 @@
+package net.maunium.maucapture.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Starts mauCapture repeatedly in fresh JVMs and reports how long it takes from JVM start to each startup milestone,
+ * most importantly to the first capture and to the editor being visible. Startup can't be measured inside a single
+ * JVM, so this isn't a JMH benchmark. Run it with
+ * {@code java -cp target/benchmarks.jar net.maunium.maucapture.benchmark.StartupBenchmark [runs]}.
+ * <p>
+ * A display is required. Each run uses an empty temporary home directory so the user's config isn't used or
+ * modified, and captures a generated 1080p screenshot instead of waiting for a region selection.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class StartupBenchmark {
+	private static final long TIMEOUT = 30000;
+
+	public static void main(String[] args) throws Exception {
+		int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		File dir = Files.createTempDirectory("maucapture-startup").toFile();
+		File image = new File(dir, "capture.png");
+		ImageIO.write(Screenshots.create(1920, 1080), "png", image);
+
+		Map<String, List<Long>> results = new LinkedHashMap<>();
+		for (int i = 0; i < runs; i++) {
+			JsonObject run = run(dir, image);
+			System.out.println(run);
+			for (Map.Entry<String, JsonElement> entry : run.entrySet()) {
+				results.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).add(entry.getValue().getAsLong());
+			}
+		}
+
+		JsonObject median = new JsonObject();
+		for (Map.Entry<String, List<Long>> entry : results.entrySet()) {
+			Long[] values = entry.getValue().toArray(new Long[0]);
+			Arrays.sort(values);
+			median.addProperty(entry.getKey(), values[values.length / 2]);
+		}
+		JsonObject summary = new JsonObject();
+		summary.addProperty("runs", runs);
+		summary.add("median-ms", median);
+		System.out.println(summary);
+	}
+
+	/**
+	 * Start mauCapture once and wait until it reports that the editor is visible.
+	 */
+	private static JsonObject run(File dir, File image) throws IOException, InterruptedException {
+		File report = new File(dir, "report.json");
+		report.delete();
+		File home = new File(dir, "home");
+		home.mkdirs();
+		Process p = new ProcessBuilder(
+				new File(new File(System.getProperty("java.home"), "bin"), "java").getPath(),
+				"-Duser.home=" + home.getPath(),
+				"-Dmaucapture.startup-report=" + report.getPath(),
+				"-Dmaucapture.capture-file=" + image.getPath(),
+				"-cp", System.getProperty("java.class.path"),
+				"net.maunium.maucapture.MauCapture").inheritIO().start();
+		try {
+			long deadline = System.currentTimeMillis() + TIMEOUT;
+			while (report.length() == 0) {
+				if (!p.isAlive()) {
+					throw new IOException("mauCapture exited with status " + p.exitValue() + " before the editor was visible");
+				} else if (System.currentTimeMillis() > deadline) {
+					throw new IOException("Timed out waiting for the editor to be visible");
+				}
+				Thread.sleep(10);
+			}
+			// The report is written in one go, but wait a moment in case the line isn't complete yet.
+			Thread.sleep(10);
+			String line = new String(Files.readAllBytes(report.toPath()), StandardCharsets.UTF_8).trim();
+			return new JsonParser().parse(line).getAsJsonObject();
+		} finally {
+			p.destroy();
+			p.waitFor(5, TimeUnit.SECONDS);
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package net.maunium.maucapture.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.JsonObject;
+
+import net.maunium.maucapture.util.Base64JsonEntity;
+import net.maunium.maucapture.util.ByteImageSource;
+import net.maunium.maucapture.util.ImageBody;
+import net.maunium.maucapture.util.ImageEntity;
+import net.maunium.maucapture.util.ProgressReporter;
+
+/**
+ * Measures writing an already encoded screenshot through each of the upload bodies with progress reporting, into a
+ * stream that discards everything, so only the cost of building the body is measured. The Base64 JSON body is built
+ * the same way as for mauImageServer uploads.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class UploadBodyBenchmark {
+	@Param({"1920x1080", "3840x2160", "7680x4320"})
+	public String resolution;
+
+	private ByteImageSource source;
+	private JsonObject payload;
+	private final OutputStream nullStream = new OutputStream() {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	};
+
+	@Setup
+	public void setup() throws IOException {
+		String[] parts = resolution.split("x");
+		source = ByteImageSource.encode(Screenshots.create(Integer.parseInt(parts[0]), Integer.parseInt(parts[1])), "png");
+		payload = new JsonObject();
+		payload.addProperty("image-name", "abcde");
+		payload.addProperty("image-format", "png");
+		payload.addProperty("hidden", false);
+		payload.addProperty("client-name", "mauCapture benchmark");
+		payload.addProperty("username", "user");
+		payload.addProperty("auth-token", "0123456789abcdef0123456789abcdef");
+	}
+
+	@Benchmark
+	public long misBase64Json() throws IOException {
+		new Base64JsonEntity("image", source, payload, new ProgressReporter(null)).writeTo(nullStream);
+		return source.getLength();
+	}
+
+	@Benchmark
+	public long imageEntity() throws IOException {
+		new ImageEntity(source, new ProgressReporter(null)).writeTo(nullStream);
+		return source.getLength();
+	}
+
+	@Benchmark
+	public long imageBody() throws IOException {
+		new ImageBody(source, "abcde.png", new ProgressReporter(null)).writeTo(nullStream);
+		return source.getLength();
+	}
+}
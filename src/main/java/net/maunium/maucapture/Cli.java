@@ -0,0 +1,350 @@
+package net.maunium.maucapture;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import net.maunium.maucapture.uploaders.ImgurUploader;
+import net.maunium.maucapture.uploaders.MISUploader;
+import net.maunium.maucapture.uploaders.MatrixUploader;
+import net.maunium.maucapture.uploaders.Uploader;
+import net.maunium.maucapture.util.ByteImageSource;
+import net.maunium.maucapture.util.ImageConversion;
+import net.maunium.maucapture.util.ImageEncoding;
+import net.maunium.maucapture.util.SizeBudget;
+
+/**
+ * The headless command-line mode. Processes and uploads image files using the saved config, and prints one JSON
+ * object per image on its own line.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class Cli {
+	private static final String USAGE = String.join("\n",
+			"Usage: maucapture [options] <file or directory>...",
+			"       maucapture --daemon                 Stay in the background and capture when triggered.",
+			"       maucapture --trigger [command]      Send capture, show, metrics, ping or quit.",
+			"",
+			"Options:",
+			"  --upload <mis|matrix|imgur>  Upload the images using the saved config.",
+			"  --format <format>            Re-encode the images in the given format. Defaults to png, or the",
+			"                               configured upload format when uploading to mauImageServer.",
+			"  --crop <x,y,width,height>    Crop the images.",
+			"  --scale <factor>             Scale the images by the given factor.",
+			"  --fit <width>x<height>       Downscale the images to fit in the given size.",
+			"  --output <directory>         Write the processed images to the given directory.",
+			"  --workers <count>            The number of images to process in parallel. Defaults to the",
+			"                               number of processors.",
+			"  --help                       Show this help.");
+
+	private String upload, format, output;
+	private Rectangle crop;
+	private double scale = 1;
+	private int fitWidth = -1, fitHeight = -1;
+	private int workers = Runtime.getRuntime().availableProcessors();
+	private final List<File> files = new ArrayList<>();
+	private JsonObject config = new JsonObject();
+	private final Gson gson = new Gson();
+
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+		Cli cli = new Cli();
+		try {
+			cli.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+		System.exit(cli.run() ? 0 : 1);
+	}
+
+	private void parse(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (!arg.startsWith("--")) {
+				addFiles(new File(arg));
+				continue;
+			} else if (arg.equals("--help")) {
+				System.out.println(USAGE);
+				System.exit(0);
+			}
+			if (i + 1 >= args.length) {
+				throw new IllegalArgumentException("Missing value for " + arg);
+			}
+			String value = args[++i];
+			try {
+				switch (arg) {
+				case "--upload":
+					upload = value.toLowerCase(Locale.ENGLISH);
+					if (!Arrays.asList("mis", "matrix", "imgur").contains(upload)) {
+						throw new IllegalArgumentException("Unknown upload target " + value);
+					}
+					break;
+				case "--format":
+					format = value.toLowerCase(Locale.ENGLISH);
+					if (!ImageIO.getImageWritersByFormatName(format).hasNext()) {
+						throw new IllegalArgumentException("Unsupported format " + value);
+					}
+					break;
+				case "--crop":
+					String[] parts = value.split(",");
+					if (parts.length != 4) {
+						throw new IllegalArgumentException("Crop must be x,y,width,height");
+					}
+					crop = new Rectangle(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+							Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+					break;
+				case "--scale":
+					scale = Double.parseDouble(value);
+					if (scale <= 0) {
+						throw new IllegalArgumentException("Scale must be positive");
+					}
+					break;
+				case "--fit":
+					String[] size = value.toLowerCase(Locale.ENGLISH).split("x");
+					if (size.length != 2) {
+						throw new IllegalArgumentException("Fit size must be <width>x<height>");
+					}
+					fitWidth = Integer.parseInt(size[0]);
+					fitHeight = Integer.parseInt(size[1]);
+					break;
+				case "--output":
+					output = value;
+					break;
+				case "--workers":
+					workers = Math.max(1, Integer.parseInt(value));
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown option " + arg);
+				}
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid number for " + arg + ": " + value);
+			}
+		}
+		if (files.isEmpty()) {
+			throw new IllegalArgumentException("No images given");
+		} else if (upload == null && output == null) {
+			throw new IllegalArgumentException("Nothing to do, use --upload and/or --output");
+		}
+	}
+
+	private void addFiles(File file) {
+		if (file.isDirectory()) {
+			List<String> suffixes = Arrays.asList(ImageIO.getReaderFileSuffixes());
+			File[] children = file.listFiles((dir, name) -> {
+				int dot = name.lastIndexOf('.');
+				return dot > 0 && suffixes.contains(name.substring(dot + 1).toLowerCase(Locale.ENGLISH));
+			});
+			if (children != null) {
+				Arrays.sort(children);
+				files.addAll(Arrays.asList(children));
+			}
+		} else {
+			files.add(file);
+		}
+	}
+
+	/**
+	 * Process all images.
+	 *
+	 * @return Whether or not all images were processed successfully.
+	 */
+	private boolean run() {
+		try {
+			JsonObject config = MauCapture.readConfig();
+			if (config != null) {
+				this.config = config;
+				MauCapture.loadEncodingConfig(config);
+			}
+		} catch (FileNotFoundException | RuntimeException e) {
+			System.err.println("Failed to read config: " + e);
+		}
+		if (format == null) {
+			format = "mis".equals(upload) ? getConfig("upload-format", "png") : "png";
+		}
+		if (output != null) {
+			new File(output).mkdirs();
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(workers, files.size()));
+		List<Future<Boolean>> results = new ArrayList<>(files.size());
+		for (File file : files) {
+			results.add(executor.submit(() -> process(file)));
+		}
+		executor.shutdown();
+		boolean success = true;
+		for (Future<Boolean> result : results) {
+			try {
+				success &= result.get();
+			} catch (Exception e) {
+				success = false;
+			}
+		}
+		try {
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException ignored) {
+		}
+		return success;
+	}
+
+	/**
+	 * Process one image and print the result.
+	 */
+	private boolean process(File file) {
+		JsonObject result = new JsonObject();
+		JsonObject timings = new JsonObject();
+		result.addProperty("file", file.getPath());
+		long start = System.nanoTime(), time = start;
+		try {
+			BufferedImage image = ImageIO.read(file);
+			if (image == null) {
+				throw new IOException("Unsupported image file");
+			}
+			time = lap(timings, "read", time);
+
+			image = process(ImageConversion.toCompatible(image));
+			result.addProperty("width", image.getWidth());
+			result.addProperty("height", image.getHeight());
+			time = lap(timings, "process", time);
+
+			Uploader uploader = createUploader();
+			ByteImageSource encoded;
+			if (uploader != null && SizeBudget.isEnabled()) {
+				SizeBudget.Candidate candidate = SizeBudget.encode(image, format, uploader.getMaxSize());
+				encoded = candidate.getSource();
+				result.addProperty("variant", candidate.getDescription());
+			} else {
+				encoded = ByteImageSource.encode(image, format);
+			}
+			result.addProperty("format", encoded.getFormat());
+			result.addProperty("bytes", encoded.getLength());
+			ImageEncoding.Stats stats = encoded.getStats();
+			if (stats != null && stats.getPaletteSize() > 0) {
+				result.addProperty("palette-colors", stats.getPaletteSize());
+				result.addProperty("pixel-data-bytes", stats.getPixelDataSize());
+				result.addProperty("truecolor-data-bytes", stats.getTruecolorDataSize());
+			}
+			time = lap(timings, "encode", time);
+
+			if (output != null) {
+				String name = file.getName();
+				int dot = name.lastIndexOf('.');
+				File out = new File(output, (dot > 0 ? name.substring(0, dot) : name) + "." + encoded.getFormat());
+				try (OutputStream stream = new FileOutputStream(out)) {
+					encoded.writeTo(stream);
+				}
+				result.addProperty("output", out.getPath());
+				time = lap(timings, "write", time);
+			}
+			if (uploader != null) {
+				result.addProperty("url", uploader.upload(encoded));
+				lap(timings, "upload", time);
+			}
+			result.addProperty("success", true);
+		} catch (Exception e) {
+			result.addProperty("success", false);
+			result.addProperty("error", e.getMessage() != null ? e.getMessage() : e.toString());
+		}
+		timings.addProperty("total", (System.nanoTime() - start) / 1000000);
+		result.add("timings-ms", timings);
+		String line = gson.toJson(result);
+		synchronized (System.out) {
+			System.out.println(line);
+		}
+		return result.get("success").getAsBoolean();
+	}
+
+	private static long lap(JsonObject timings, String name, long since) {
+		long now = System.nanoTime();
+		timings.addProperty(name, (now - since) / 1000000);
+		return now;
+	}
+
+	/**
+	 * Crop and scale the image as requested.
+	 */
+	private BufferedImage process(BufferedImage image) {
+		if (crop != null) {
+			Rectangle area = crop.intersection(new Rectangle(0, 0, image.getWidth(), image.getHeight()));
+			if (area.isEmpty()) {
+				throw new IllegalArgumentException("Crop area is outside the image");
+			}
+			image = image.getSubimage(area.x, area.y, area.width, area.height);
+		}
+		double factor = scale;
+		if (fitWidth > 0 && fitHeight > 0) {
+			factor = Math.min(factor, Math.min((double) fitWidth / image.getWidth(), (double) fitHeight / image.getHeight()));
+		}
+		if (factor != 1) {
+			int width = Math.max(1, (int) Math.round(image.getWidth() * factor));
+			int height = Math.max(1, (int) Math.round(image.getHeight() * factor));
+			BufferedImage scaled = new BufferedImage(width, height, image.getTransparency() == Transparency.OPAQUE
+					? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+			Graphics2D g = scaled.createGraphics();
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+			g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+			g.drawImage(image, 0, 0, width, height, null);
+			g.dispose();
+			image = scaled;
+		} else if (crop != null) {
+			// Encoding a subimage works, but copying it first lets the encoder read the rows directly.
+			image = copy(image);
+		}
+		return image;
+	}
+
+	private static BufferedImage copy(BufferedImage image) {
+		BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
+		image.copyData(copy.getRaster());
+		return copy;
+	}
+
+	/**
+	 * Create an uploader without a user interface for the selected destination.
+	 */
+	private Uploader createUploader() {
+		if (upload == null) {
+			return null;
+		}
+		switch (upload) {
+		case "mis":
+			return new MISUploader(null, getConfig("address", ""), MauCapture.randomize(5), format,
+					getConfig("username", ""), getConfig("authtoken", ""), false);
+		case "matrix":
+			return new MatrixUploader(null, getConfig("matrix-url", "https://matrix.org"),
+					MauCapture.randomize(5) + "." + format, getConfig("matrix-access-token", ""));
+		case "imgur":
+			return new ImgurUploader(null);
+		default:
+			return null;
+		}
+	}
+
+	private String getConfig(String key, String def) {
+		JsonElement e = config.get(key);
+		return e != null && e.isJsonPrimitive() ? e.getAsString() : def;
+	}
+}
@@ -28,9 +28,9 @@ import net.maunium.maucapture.swing.JColorViewer;
 public class ColorSelector {
 	public static void colorSelector(MauCapture host) {
 		JDialog frame = new JDialog(host.getFrame(), "Color Selector");
-		frame.getContentPane().setPreferredSize(new Dimension(155, 165));
+		frame.getContentPane().setPreferredSize(new Dimension(155, 185));
 		frame.pack();
-		frame.setFont(MauCapture.lato);
+		frame.setFont(MauCapture.getLato());
 		frame.setLocationRelativeTo(host.getFrame());
 		frame.setLayout(null);
 		frame.setResizable(false);
@@ -45,8 +45,8 @@ public class ColorSelector {
 		Color c = host.getDrawPlate().getDrawColor();
 		JColorViewer jcv = new JColorViewer(c);
 		jcv.setLocation(120, 5);
-		jcv.setSize(30, 155);
-		jcv.setFont(MauCapture.lato);
+		jcv.setSize(30, 175);
+		jcv.setFont(MauCapture.getLato());
 
 		JTextField red = new JTextField(Integer.toString(c.getRed()));
 		JTextField green = new JTextField(Integer.toString(c.getGreen()));
@@ -80,14 +80,14 @@ public class ColorSelector {
 			}
 		};
 
-		Font latoBold = MauCapture.lato.deriveFont(Font.BOLD);
+		Font latoBold = MauCapture.getLato().deriveFont(Font.BOLD);
 		redL.setLocation(5, 5);
 		redL.setSize(60, 20);
 		redL.setFont(latoBold);
 		red.setLocation(65, 5);
 		red.setSize(50, 20);
 		red.addKeyListener(keyl);
-		red.setFont(MauCapture.lato);
+		red.setFont(MauCapture.getLato());
 
 		greenL.setLocation(5, 25);
 		greenL.setSize(60, 20);
@@ -95,7 +95,7 @@ public class ColorSelector {
 		green.setLocation(65, 25);
 		green.setSize(50, 20);
 		green.addKeyListener(keyl);
-		green.setFont(MauCapture.lato);
+		green.setFont(MauCapture.getLato());
 
 		blueL.setLocation(5, 45);
 		blueL.setSize(60, 20);
@@ -103,7 +103,7 @@ public class ColorSelector {
 		blue.setLocation(65, 45);
 		blue.setSize(50, 20);
 		blue.addKeyListener(keyl);
-		blue.setFont(MauCapture.lato);
+		blue.setFont(MauCapture.getLato());
 
 		opacityL.setLocation(5, 65);
 		opacityL.setSize(60, 20);
@@ -111,7 +111,7 @@ public class ColorSelector {
 		opacity.setLocation(65, 65);
 		opacity.setSize(50, 20);
 		opacity.addKeyListener(keyl);
-		opacity.setFont(MauCapture.lato);
+		opacity.setFont(MauCapture.getLato());
 
 		sizeL.setLocation(5, 85);
 		sizeL.setSize(60, 20);
@@ -120,24 +120,30 @@ public class ColorSelector {
 		size.setLocation(65, 85);
 		size.setSize(50, 20);
 		size.addKeyListener(keyl);
-		size.setFont(MauCapture.lato);
+		size.setFont(MauCapture.getLato());
 
 		JCheckBox fill = new JCheckBox("Fill Shapes", host.getDrawPlate().getFill());
 		fill.setLocation(5, 110);
 		fill.setSize(110, 20);
 		fill.setFont(latoBold);
 
+		JCheckBox roundEraser = new JCheckBox("Round Eraser", host.getDrawPlate().getRoundEraser());
+		roundEraser.setLocation(5, 130);
+		roundEraser.setSize(110, 20);
+		roundEraser.setFont(latoBold);
+
 		JButton done = new JButton("Done");
-		done.setLocation(5, 130);
+		done.setLocation(5, 150);
 		done.setSize(110, 30);
-		done.setFont(MauCapture.lato);
+		done.setFont(MauCapture.getLato());
 		done.addActionListener(new ActionListener() {
 			@Override
 			public void actionPerformed(ActionEvent e) {
-				host.getDrawPlate().setDrawColor(new Color(Integer.parseInt("0" + red.getText()), Integer.parseInt("0" + green.getText()),
-						Integer.parseInt("0" + blue.getText()), Integer.parseInt("0" + opacity.getText())));
-				host.getDrawPlate().setDrawSize(Integer.parseInt(size.getText()));
-				host.getDrawPlate().setFill(fill.isSelected());
+				// This also restyles the selected annotation, if any.
+				host.getDrawPlate().setStyle(new Color(Integer.parseInt("0" + red.getText()), Integer.parseInt("0" + green.getText()),
+						Integer.parseInt("0" + blue.getText()), Integer.parseInt("0" + opacity.getText())),
+						Integer.parseInt(size.getText()), fill.isSelected());
+				host.getDrawPlate().setRoundEraser(roundEraser.isSelected());
 				frame.setVisible(false);
 				frame.dispose();
 			}
@@ -155,6 +161,7 @@ public class ColorSelector {
 		frame.add(size);
 		frame.add(done);
 		frame.add(fill);
+		frame.add(roundEraser);
 		frame.add(jcv);
 		frame.setVisible(true);
 	}
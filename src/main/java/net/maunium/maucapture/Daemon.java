@@ -0,0 +1,172 @@
+package net.maunium.maucapture;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+import javax.swing.SwingUtilities;
+
+import net.maunium.maucapture.util.PrivateFiles;
+
+/**
+ * The resident daemon mode and its trigger client. The daemon keeps a warmed-up editor in memory and listens on a
+ * loopback port, so a hotkey can start a capture without starting a new JVM.
+ * <p>
+ * The port and a random token are written to {@link #tokenFile}, which only the current user can read. A request is
+ * a single line containing the token and a command, and the response is a single line starting with {@code ok} or
+ * {@code error}. The commands are {@code capture}, {@code show}, {@code metrics}, {@code ping} and {@code quit}.
+ * Since the protocol is plain text, the trigger doesn't have to be Java, e.g. in bash:
+ * {@code read port token < ~/.maucapture-daemon; echo "$token capture" > /dev/tcp/127.0.0.1/$port}
+ * <p>
+ * The client side doesn't touch any AWT or Swing classes, so it starts quickly.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class Daemon {
+	public static final File tokenFile = new File(new File(System.getProperty("user.home")), ".maucapture-daemon");
+	private static final int TIMEOUT = 2000;
+
+	private final MauCapture host;
+	private final ServerSocket server;
+	private final byte[] token;
+
+	private Daemon(MauCapture host, ServerSocket server, byte[] token) {
+		this.host = host;
+		this.server = server;
+		this.token = token;
+	}
+
+	/**
+	 * Start listening for commands in a background thread.
+	 *
+	 * @param port The port to listen on, or {@code 0} to pick a free port.
+	 */
+	public static void start(MauCapture host, int port) throws IOException {
+		ServerSocket server = new ServerSocket();
+		server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+
+		byte[] random = new byte[16];
+		new SecureRandom().nextBytes(random);
+		StringBuilder sb = new StringBuilder();
+		for (byte b : random) {
+			sb.append(String.format("%02x", b));
+		}
+		String token = sb.toString();
+
+		// Create the file as private before writing the token to it.
+		tokenFile.delete();
+		try (OutputStream out = Files.newOutputStream(PrivateFiles.create(tokenFile.toPath(), false))) {
+			out.write((server.getLocalPort() + " " + token + "\n").getBytes(StandardCharsets.UTF_8));
+		}
+		tokenFile.deleteOnExit();
+
+		Daemon daemon = new Daemon(host, server, token.getBytes(StandardCharsets.UTF_8));
+		// Not a daemon thread, since this is what keeps the JVM running while the editor is hidden.
+		Thread listener = new Thread(daemon::listen, "Daemon listener");
+		listener.start();
+		System.out.println("Listening on " + server.getLocalSocketAddress());
+	}
+
+	private void listen() {
+		while (!server.isClosed()) {
+			try (Socket socket = server.accept()) {
+				socket.setSoTimeout(TIMEOUT);
+				BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+				Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+				writer.write(handle(reader.readLine()) + "\n");
+				writer.flush();
+			} catch (IOException e) {
+				System.err.println("Failed to handle daemon request:");
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private String handle(String line) {
+		if (line == null) {
+			return "error: empty request";
+		}
+		String[] parts = line.trim().split(" ", 2);
+		if (parts.length != 2 || !MessageDigest.isEqual(parts[0].getBytes(StandardCharsets.UTF_8), token)) {
+			return "error: invalid token";
+		}
+		switch (parts[1]) {
+		case "ping":
+			return "ok";
+		case "capture":
+			// The client shouldn't wait for the capture.
+			return Screenshot.startCapture(host) ? "ok" : "error: already capturing";
+		case "show":
+			SwingUtilities.invokeLater(() -> {
+				if (host.getDrawPlate().hasImage()) {
+					host.getFrame().setVisible(true);
+					host.getFrame().toFront();
+				}
+			});
+			return "ok";
+		case "metrics":
+			MauCapture.dumpMetrics();
+			return "ok " + MauCapture.metricsFile;
+		case "quit":
+			SwingUtilities.invokeLater(host::exit);
+			return "ok";
+		default:
+			return "error: unknown command " + parts[1];
+		}
+	}
+
+	/**
+	 * Send a command to a running daemon.
+	 *
+	 * @return The response of the daemon.
+	 * @throws IOException If there is no daemon running or it couldn't be reached.
+	 */
+	public static String trigger(String command) throws IOException {
+		String[] data = new String(Files.readAllBytes(tokenFile.toPath()), StandardCharsets.UTF_8).trim().split(" ");
+		if (data.length != 2) {
+			throw new IOException("Invalid daemon token file");
+		}
+		try (Socket socket = new Socket()) {
+			socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(data[0])), TIMEOUT);
+			socket.setSoTimeout(TIMEOUT);
+			Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+			writer.write(data[1] + " " + command + "\n");
+			writer.flush();
+			String response = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))
+					.readLine();
+			return response != null ? response : "error: no response";
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid daemon token file", e);
+		}
+	}
+
+	/**
+	 * The trigger client. Sends the command given as the first argument, or {@code capture} by default, and exits
+	 * with status 0 if the daemon accepted it, 1 if it returned an error and 2 if it couldn't be reached.
+	 */
+	public static void main(String[] args) {
+		try {
+			String response = trigger(args.length > 0 ? args[0] : "capture");
+			if (!response.startsWith("ok")) {
+				System.err.println(response);
+				System.exit(1);
+			}
+		} catch (IOException e) {
+			System.err.println("Failed to reach the mauCapture daemon: " + e);
+			System.exit(2);
+		}
+	}
+}
@@ -1,14 +1,26 @@
 package net.maunium.maucapture;
 
+import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Arrays;
+import java.util.concurrent.CancellationException;
 
 import javax.imageio.ImageIO;
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
 import javax.swing.UIManager;
 
+import net.maunium.maucapture.metrics.Metrics;
+import net.maunium.maucapture.metrics.Phase;
+import net.maunium.maucapture.swing.JDrawPlate;
+import net.maunium.maucapture.util.ByteImageSource;
+import net.maunium.maucapture.util.EncodeCache;
 import net.maunium.maucapture.util.FileNameExtensionFilter;
+import net.maunium.maucapture.util.IoTask;
+import net.maunium.maucapture.util.ProgressOutputStream;
 
 /**
  * Saving and importing images.
@@ -20,8 +32,8 @@ public class FileManager {
 	public static void save(MauCapture host) {
 		defaultLAF();
 		JFileChooser file = new JFileChooser(host.getSaveLocation());
-		file.setFont(MauCapture.lato);
-		file.setFileFilter(new FileNameExtensionFilter("File types supported by ImageIO", ImageIO.getWriterFileSuffixes()));
+		file.setFont(MauCapture.getLato());
+		file.setFileFilter(new FileNameExtensionFilter("File types supported by ImageIO", MauCapture.getImageTypes()));
 		file.setAcceptAllFileFilterUsed(false);
 		int status = file.showSaveDialog(host.getFrame());
 		systemLAF();
@@ -34,18 +46,36 @@ public class FileManager {
 			} else {
 				extension = "png";
 			}
-			if (!Arrays.asList(ImageIO.getWriterFileSuffixes()).contains(extension)) {
+			if (!Arrays.asList(MauCapture.getImageTypes()).contains(extension)) {
 				extension = "png";
 			}
 
-			try {
-				ImageIO.write(host.getDrawPlate().getImage(), extension, f);
-				JOptionPane.showMessageDialog(host.getFrame(), "Screenshot saved successfully.", "File Saved", JOptionPane.INFORMATION_MESSAGE);
-			} catch (Exception e) {
-				e.printStackTrace();
-				JOptionPane.showMessageDialog(host.getFrame(), "Failed to save screenshot to given file.\nSee the console output for more details.",
-						"Save failed", JOptionPane.ERROR_MESSAGE);
-			}
+			// The scene must be rendered on the event dispatch thread, but encoding and writing can happen elsewhere.
+			JDrawPlate jdp = host.getDrawPlate();
+			BufferedImage image = jdp.export();
+			long revision = jdp.getRevision();
+			String format = extension;
+			IoTask.submit(task -> {
+				ByteImageSource encoded = EncodeCache.encode(image, revision, format);
+				task.getProgress().setLabel("Saving");
+				try (OutputStream out = new FileOutputStream(f)) {
+					encoded.writeTo(new ProgressOutputStream(out, task.getProgress(), encoded.getLength()));
+				} catch (IOException e) {
+					f.delete();
+					throw e;
+				}
+				return f;
+			}).showProgress(host.getFrame(), "Saving").whenCompleteAsync((result, error) -> {
+				if (error instanceof CancellationException) {
+					f.delete();
+				} else if (error != null) {
+					error.printStackTrace();
+					JOptionPane.showMessageDialog(host.getFrame(), "Failed to save screenshot to given file.\nSee the console output for more details.",
+							"Save failed", JOptionPane.ERROR_MESSAGE);
+				} else {
+					JOptionPane.showMessageDialog(host.getFrame(), "Screenshot saved successfully.", "File Saved", JOptionPane.INFORMATION_MESSAGE);
+				}
+			}, IoTask.EDT);
 		}
 		host.setSaveLocation(file.getCurrentDirectory().getAbsolutePath());
 	}
@@ -60,12 +90,27 @@ public class FileManager {
 		if (status == JFileChooser.APPROVE_OPTION) {
 			File f = file.getSelectedFile();
 
-			try {
-				host.open(ImageIO.read(f));
-			} catch (Exception e) {
-				e.printStackTrace();
-				JOptionPane.showMessageDialog(host.getFrame(), "Failed to read image", "Import failed", JOptionPane.ERROR_MESSAGE);
-			}
+			IoTask.<BufferedImage> submit(task -> {
+				Metrics.Timer timer = Metrics.start(Phase.DECODE);
+				try {
+					BufferedImage bi = ImageIO.read(f);
+					if (bi == null) {
+						throw new IOException("Unsupported image file " + f);
+					}
+					return bi;
+				} finally {
+					timer.stop();
+				}
+			}).showProgress(host.getFrame(), "Opening").whenCompleteAsync((bi, error) -> {
+				if (error instanceof CancellationException) {
+					return;
+				} else if (error != null) {
+					error.printStackTrace();
+					JOptionPane.showMessageDialog(host.getFrame(), "Failed to read image", "Import failed", JOptionPane.ERROR_MESSAGE);
+				} else {
+					host.open(bi);
+				}
+			}, IoTask.EDT);
 		}
 
 		host.setSaveLocation(file.getCurrentDirectory().getAbsolutePath());
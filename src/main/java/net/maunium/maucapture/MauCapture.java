@@ -4,6 +4,7 @@ import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.KeyEventDispatcher;
 import java.awt.KeyboardFocusManager;
+import java.awt.Rectangle;
 import java.awt.Toolkit;
 import java.awt.datatransfer.Clipboard;
 import java.awt.event.ActionEvent;
@@ -23,7 +24,13 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.imageio.ImageIO;
 import javax.swing.AbstractButton;
@@ -34,6 +41,7 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JToggleButton;
+import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 
 import com.google.gson.Gson;
@@ -42,12 +50,23 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.google.gson.stream.JsonWriter;
 
+import net.maunium.maucapture.metrics.Metrics;
+import net.maunium.maucapture.metrics.Phase;
 import net.maunium.maucapture.swing.JDrawPlate;
 import net.maunium.maucapture.swing.JSelectableImage;
+import net.maunium.maucapture.uploaders.ConnectionPool;
+import net.maunium.maucapture.uploaders.FanOut;
 import net.maunium.maucapture.uploaders.ImgurUploader;
 import net.maunium.maucapture.uploaders.MISUploader;
 import net.maunium.maucapture.uploaders.MatrixUploader;
+import net.maunium.maucapture.uploaders.UploadScheduler;
 import net.maunium.maucapture.uploaders.Uploader;
+import net.maunium.maucapture.util.EdtWatchdog;
+import net.maunium.maucapture.util.EncodeCache;
+import net.maunium.maucapture.util.ImageConversion;
+import net.maunium.maucapture.util.ImageEncoding;
+import net.maunium.maucapture.util.IoTask;
+import net.maunium.maucapture.util.SizeBudget;
 import net.maunium.maucapture.util.TransferableImage;
 
 /**
@@ -60,16 +79,26 @@ public class MauCapture {
 	/**
 	 * The Random instance used to generate image names
 	 */
-	private Random r = new Random(System.nanoTime());
-	public static final String[] imageTypes = ImageIO.getWriterFileSuffixes();
+	private static final Random r = new Random(System.nanoTime());
 	/**
-	 * Main font of MauCapture
+	 * The icons in the assets, loaded in the background during startup
 	 */
-	public static final Font lato = createLato();
+	private static final String[] icons = {"maucapture.png", "capture.png", "preferences.png", "mauImageServer.png",
+			"matrix.png", "imgur.png", "color.png", "arrow.png", "rectangle.png", "circle.png", "pencil.png", "text.png",
+			"eraser.png", "select.png", "crop.png"};
+	private static final Map<String, ImageIcon> iconCache = new ConcurrentHashMap<>();
 	/**
 	 * Configuration path
 	 */
 	public static final File config = new File(new File(System.getProperty("user.home")), ".maucapture.json");
+	/**
+	 * Directory for uploads that failed and are waiting to be retried
+	 */
+	public static final File uploadQueue = new File(new File(System.getProperty("user.home")), ".maucapture-queue");
+	/**
+	 * File the phase timings are written to on exit
+	 */
+	public static final File metricsFile = new File(new File(System.getProperty("user.home")), ".maucapture-metrics.json");
 	/**
 	 * Version string
 	 */
@@ -81,11 +110,11 @@ public class MauCapture {
 	/**
 	 * Non-toggle button
 	 */
-	private JButton capture, preferences, uploadMIS, uploadMatrix, uploadImgur, color;
+	private JButton capture, preferences, uploadMIS, uploadMatrix, uploadImgur, uploadAll, color;
 	/**
 	 * Togglebutton (editing)
 	 */
-	private JToggleButton arrow, rectangle, circle, pencil, text, erase, crop;
+	private JToggleButton arrow, rectangle, circle, pencil, text, erase, select, crop;
 	/**
 	 * Button panel
 	 */
@@ -98,21 +127,47 @@ public class MauCapture {
 	 * Drawing area
 	 */
 	private JDrawPlate jdp;
+	/**
+	 * Encodes the image for uploading while the user isn't editing
+	 */
+	private SpeculativeEncoder speculation;
 
 	/**
 	 * Config value
 	 */
 	private String username = "", authtoken = "", url = "", password = "",
 			saveLocation = System.getProperty("user.home"), uploadFormat = "png",
-			mxAccessToken, matrixURL = "https://matrix.org";
+			mxAccessToken, matrixURL = "https://matrix.org", captureBackend = "auto",
+			fanOutDestinations = "mis,matrix,imgur", primaryDestination = FanOut.FIRST;
 	/**
 	 * Config value
 	 */
 	private boolean savePassword = false, hideImage = false;
+	/**
+	 * Config value
+	 */
+	private int undoMemoryMB = 64;
+	/**
+	 * Whether or not this instance stays running in the background between captures
+	 */
+	private boolean daemon = false;
+	/**
+	 * Config value, the loopback port the daemon listens on, or 0 for any free port
+	 */
+	private int daemonPort = 0;
 
 	public MauCapture() {
+		jdp = new JDrawPlate(null);
+		jdp.setLocation(0, 0);
+		speculation = new SpeculativeEncoder(jdp, () -> new LinkedHashSet<>(Arrays.asList(uploadFormat, "png")));
+	}
+
+	/**
+	 * Build the main frame. This is done when the frame is first needed, so that startup doesn't have to wait for it.
+	 */
+	private void buildFrame() {
 		frame = new JFrame("mauCapture " + version);
-		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		frame.setDefaultCloseOperation(daemon ? JFrame.HIDE_ON_CLOSE : JFrame.EXIT_ON_CLOSE);
 		frame.setLocationRelativeTo(null);
 		frame.setIconImage(getIcon("maucapture.png").getImage());
 		/*
@@ -123,12 +178,12 @@ public class MauCapture {
 			@Override
 			public void componentResized(ComponentEvent evt) {
 				int width = frame.getContentPane().getWidth(), height = frame.getContentPane().getHeight();
-				if (width < 520 || height < 440) {
-					if (width < 520) {
-						width = 520;
+				if (width < 576 || height < 480) {
+					if (width < 576) {
+						width = 576;
 					}
-					if (height < 440) {
-						height = 440;
+					if (height < 480) {
+						height = 480;
 					}
 					frame.getContentPane().setPreferredSize(new Dimension(width, height));
 					frame.pack();
@@ -142,12 +197,19 @@ public class MauCapture {
 				uploadImgur.setLocation(width - 48 - 1 * 96, 0);
 				uploadMatrix.setLocation(width - 48 - 2 * 96, 0);
 				uploadMIS.setLocation(width - 48 - 3 * 96, 0);
+				uploadAll.setLocation(width - 48 - 4 * 96, 0);
 			}
 		});
 		/*
 		 * Add window listener to save config before closing.
 		 */
 		frame.addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowOpened(WindowEvent e) {
+				StartupTimer.mark("editor-visible");
+				StartupTimer.finish();
+			}
+
 			@Override
 			public void windowClosing(WindowEvent e) {
 				try {
@@ -156,6 +218,9 @@ public class MauCapture {
 					System.err.println("Failed to save config:");
 					e1.printStackTrace();
 				}
+				if (daemon) {
+					release();
+				}
 			}
 		});
 		/*
@@ -163,6 +228,12 @@ public class MauCapture {
 		 * 	CTRL+S - Save image to disk
 		 *  CTRL+C - Copy image to clipboard
 		 *  CTRL+I - Import image from disk
+		 *  CTRL+Z - Undo
+		 *  CTRL+Y - Redo
+		 *  CTRL+= - Zoom in
+		 *  CTRL+- - Zoom out
+		 *  CTRL+0 - Zoom to fit
+		 *  CTRL+1 - Zoom to 100%
 		 *  Escape - Quit MauCapture
 		 */
 		KeyboardFocusManager.getCurrentKeyboardFocusManager().addKeyEventDispatcher(new KeyEventDispatcher() {
@@ -180,28 +251,67 @@ public class MauCapture {
 					return false;
 				}
 				if (e.getKeyCode() == KeyEvent.VK_ESCAPE) {
-					frame.dispose();
-					System.exit(0);
+					if (daemon) {
+						frame.setVisible(false);
+						release();
+					} else {
+						frame.dispose();
+						System.exit(0);
+					}
+					return true;
+				}
+				if (e.getKeyCode() == KeyEvent.VK_DELETE && jdp.deleteSelection()) {
 					return true;
 				}
 				if (!e.isControlDown() || e.isAltDown() || e.isShiftDown()) {
 					return false;
 				}
-				if (e.getKeyCode() == KeyEvent.VK_S && jdp.getImage() != null) {
+				if (e.getKeyCode() == KeyEvent.VK_S && jdp.hasImage()) {
 					FileManager.save(MauCapture.this);
 				} else if (e.getKeyCode() == KeyEvent.VK_I) {
 					FileManager.load(MauCapture.this);
-				} else if (e.getKeyCode() == KeyEvent.VK_C && jdp.getImage() != null) {
-					Clipboard c = Toolkit.getDefaultToolkit().getSystemClipboard();
-					TransferableImage timg = new TransferableImage(jdp.getImage());
-					c.setContents(timg, timg);
-					JOptionPane.showMessageDialog(
-							getFrame(), "The image has been copied to your clipboard.", "Image copied",
-							JOptionPane.INFORMATION_MESSAGE);
+				} else if (e.getKeyCode() == KeyEvent.VK_Z) {
+					jdp.undo();
+				} else if (e.getKeyCode() == KeyEvent.VK_Y) {
+					jdp.redo();
+				} else if (e.getKeyCode() == KeyEvent.VK_EQUALS || e.getKeyCode() == KeyEvent.VK_PLUS
+						|| e.getKeyCode() == KeyEvent.VK_ADD) {
+					jdp.zoomIn();
+				} else if (e.getKeyCode() == KeyEvent.VK_MINUS || e.getKeyCode() == KeyEvent.VK_SUBTRACT) {
+					jdp.zoomOut();
+				} else if (e.getKeyCode() == KeyEvent.VK_0 || e.getKeyCode() == KeyEvent.VK_NUMPAD0) {
+					jdp.zoomToFit();
+				} else if (e.getKeyCode() == KeyEvent.VK_1 || e.getKeyCode() == KeyEvent.VK_NUMPAD1) {
+					jdp.setZoom(1);
+				} else if (e.getKeyCode() == KeyEvent.VK_C && jdp.hasImage()) {
+					// Encode the PNG in the background first, so that pasting doesn't encode it on the event dispatch thread.
+					BufferedImage image = jdp.export();
+					long revision = jdp.getRevision();
+					IoTask.submit(task -> EncodeCache.encode(image, revision, "png"))
+							.showProgress(getFrame(), "Copying")
+							.whenCompleteAsync((png, error) -> {
+						if (error instanceof CancellationException) {
+							return;
+						} else if (error != null) {
+							// Other applications can still paste the unencoded image.
+							error.printStackTrace();
+						}
+						Clipboard c = Toolkit.getDefaultToolkit().getSystemClipboard();
+						TransferableImage timg = new TransferableImage(image, revision);
+						Metrics.Timer timer = Metrics.start(Phase.CLIPBOARD);
+						try {
+							c.setContents(timg, timg);
+						} finally {
+							timer.stop();
+						}
+						JOptionPane.showMessageDialog(
+								getFrame(), "The image has been copied to your clipboard.", "Image copied",
+								JOptionPane.INFORMATION_MESSAGE);
+					}, IoTask.EDT);
 				} else if (e.getKeyCode() == KeyEvent.VK_U) {
-					Uploader.upload(new MISUploader(getFrame(), url, randomize(5), uploadFormat, username, authtoken, hideImage), jdp.getImage());
+					Uploader.upload(new MISUploader(getFrame(), url, randomize(5), uploadFormat, username, authtoken, hideImage), jdp.export(), jdp.getRevision());
 				} else if (e.getKeyCode() == KeyEvent.VK_M) {
-					Uploader.upload(new MatrixUploader(getFrame(), matrixURL, randomize(5) + ".png", mxAccessToken), jdp.getImage());
+					Uploader.upload(new MatrixUploader(getFrame(), matrixURL, randomize(5) + ".png", mxAccessToken), jdp.export(), jdp.getRevision());
 				} else {
 					return false;
 				}
@@ -222,13 +332,7 @@ public class MauCapture {
 		capture.setToolTipText("Take a new capture");
 		capture.setActionCommand("CAPTURE");
 		capture.addActionListener((ActionEvent e) -> {
-			frame.setVisible(false);
-			try {
-				Thread.sleep(50);
-			} catch (InterruptedException e1) {
-				e1.printStackTrace();
-			}
-			Screenshot.takeScreenshot(MauCapture.this);
+			Screenshot.startCapture(MauCapture.this);
 		});
 
 		preferences = createButton("preferences.png", 48, 48, 0, 0, "Preferences", settings, "PREFS");
@@ -238,6 +342,8 @@ public class MauCapture {
 		uploadMatrix.setText("Matrix");
 		uploadImgur = createButton("imgur.png", 96, 48, 0, 0, "Upload to Imgur", export, "IMGUR");
 		uploadImgur.setText("Imgur");
+		uploadAll = createButton("maucapture.png", 96, 48, 0, 0, "Upload to all selected destinations at once", export, "ALL");
+		uploadAll.setText("All");
 
 		color = createButton("color.png", 48, 48, 0, 0 * 48, "Change draw/text color", settings, "COLOR");
 		arrow = createToggleButton("arrow.png", 48, 48, 0, 1 * 48, "Draw an arrow", editors, "ARROW");
@@ -247,11 +353,10 @@ public class MauCapture {
 		pencil.setSelected(true);
 		text = createToggleButton("text.png", 48, 48, 0, 5 * 48, "Write text", editors, "TEXT");
 		erase = createToggleButton("eraser.png", 48, 48, 0, 6 * 48, "Eraser", editors, "ERASE");
-		crop = createToggleButton("crop.png", 48, 48, 0, 7 * 48, "Crop the image", cropListener, "CROP");
+		select = createToggleButton("select.png", 48, 48, 0, 7 * 48, "Select, move and delete drawings", editors, "SELECT");
+		crop = createToggleButton("crop.png", 48, 48, 0, 8 * 48, "Crop the image", cropListener, "CROP");
 
-		jdp = new JDrawPlate(null);
-		jdp.setLocation(0, 0);
-		jdp.setFont(lato);
+		jdp.setFont(getLato());
 
 		jsp = new JScrollPane();
 		jsp.setLocation(48, 48);
@@ -278,6 +383,7 @@ public class MauCapture {
 		top.add(uploadMIS);
 		top.add(uploadMatrix);
 		top.add(uploadImgur);
+		top.add(uploadAll);
 
 		side.add(color);
 		side.add(arrow);
@@ -286,6 +392,7 @@ public class MauCapture {
 		side.add(pencil);
 		side.add(text);
 		side.add(erase);
+		side.add(select);
 		side.add(crop);
 
 		frame.add(top);
@@ -306,18 +413,75 @@ public class MauCapture {
 		config.addProperty("upload-format", uploadFormat);
 		config.addProperty("matrix-url", matrixURL);
 		config.addProperty("matrix-access-token", mxAccessToken);
+		config.addProperty("capture-backend", captureBackend);
+		config.addProperty("undo-memory-mb", undoMemoryMB);
+		config.addProperty("png-compression", ImageEncoding.getPngCompression());
+		config.addProperty("speculative-encoding", speculation.isEnabled());
+		config.addProperty("daemon-port", daemonPort);
+		config.addProperty("fan-out-destinations", fanOutDestinations);
+		config.addProperty("primary-destination", primaryDestination);
+		config.addProperty("png-palette", ImageEncoding.isPngPalette());
+		config.addProperty("png-near-lossless", ImageEncoding.isPngNearLossless());
+		config.addProperty("size-budget", SizeBudget.isEnabled());
+		config.addProperty("size-budget-max-bytes", SizeBudget.getMaxSize());
+		config.addProperty("size-budget-min-psnr", SizeBudget.getMinQuality());
 		JsonWriter writer = new JsonWriter(new FileWriter(MauCapture.config));
 		Gson gson = new Gson();
 		gson.toJson(config, writer);
 		writer.close();
 	}
 
-	public void loadConfig() throws FileNotFoundException {
+	/**
+	 * Read the config file.
+	 *
+	 * @return The config, or {@code null} if there is no config file.
+	 */
+	public static JsonObject readConfig() throws FileNotFoundException {
 		if (!MauCapture.config.exists()) {
+			return null;
+		}
+		return new JsonParser().parse(new FileReader(MauCapture.config)).getAsJsonObject();
+	}
+
+	/**
+	 * Load the image encoding settings from the given config. These are global, so they also apply to the
+	 * command-line mode.
+	 */
+	public static void loadEncodingConfig(JsonObject config) {
+		JsonElement e;
+
+		e = config.get("png-compression");
+		if (e != null && e.isJsonPrimitive()) {
+			ImageEncoding.setPngCompression(e.getAsInt());
+		}
+		e = config.get("png-palette");
+		if (e != null && e.isJsonPrimitive()) {
+			ImageEncoding.setPngPalette(e.getAsBoolean());
+		}
+		e = config.get("png-near-lossless");
+		if (e != null && e.isJsonPrimitive()) {
+			ImageEncoding.setPngNearLossless(e.getAsBoolean());
+		}
+		e = config.get("size-budget");
+		if (e != null && e.isJsonPrimitive()) {
+			SizeBudget.setEnabled(e.getAsBoolean());
+		}
+		e = config.get("size-budget-max-bytes");
+		if (e != null && e.isJsonPrimitive()) {
+			SizeBudget.setMaxSize(e.getAsLong());
+		}
+		e = config.get("size-budget-min-psnr");
+		if (e != null && e.isJsonPrimitive()) {
+			SizeBudget.setMinQuality(e.getAsDouble());
+		}
+	}
+
+	public void loadConfig() throws FileNotFoundException {
+		JsonObject config = readConfig();
+		if (config == null) {
 			return;
 		}
-		JsonParser parser = new JsonParser();
-		JsonObject config = parser.parse(new FileReader(MauCapture.config)).getAsJsonObject();
+		loadEncodingConfig(config);
 		JsonElement e;
 
 		e = config.get("username");
@@ -356,6 +520,31 @@ public class MauCapture {
 		if (e != null && e.isJsonPrimitive()) {
 			mxAccessToken = e.getAsString();
 		}
+		e = config.get("capture-backend");
+		if (e != null && e.isJsonPrimitive()) {
+			captureBackend = e.getAsString();
+		}
+		e = config.get("undo-memory-mb");
+		if (e != null && e.isJsonPrimitive()) {
+			undoMemoryMB = e.getAsInt();
+			jdp.setUndoMemoryLimit(undoMemoryMB * 1024L * 1024L);
+		}
+		e = config.get("speculative-encoding");
+		if (e != null && e.isJsonPrimitive()) {
+			speculation.setEnabled(e.getAsBoolean());
+		}
+		e = config.get("daemon-port");
+		if (e != null && e.isJsonPrimitive()) {
+			daemonPort = e.getAsInt();
+		}
+		e = config.get("fan-out-destinations");
+		if (e != null && e.isJsonPrimitive()) {
+			fanOutDestinations = e.getAsString();
+		}
+		e = config.get("primary-destination");
+		if (e != null && e.isJsonPrimitive()) {
+			primaryDestination = e.getAsString();
+		}
 	}
 
 	/**
@@ -381,7 +570,7 @@ public class MauCapture {
 	 */
 	private <T extends AbstractButton> T configureButton(T button, int width, int height, int x, int y, String tooltip,
 														 ActionListener aclis, String actionCommand) {
-		button.setFont(lato);
+		button.setFont(getLato());
 		button.setBorderPainted(false);
 		button.setFocusPainted(false);
 		button.setSize(width, height);
@@ -396,20 +585,25 @@ public class MauCapture {
 	 * Open the given buffered image in the MauCapture Editor.
 	 */
 	public void open(BufferedImage bi) {
-		jdp.setForegroundImage(bi);
-		jdp.setBackgroundImage(bi);
-		jdp.setPreferredSize(new Dimension(bi.getWidth(), bi.getHeight()));
-		int prefWidth = 1280, prefHeight = 720;
-		if (bi.getWidth() < prefWidth) {
-			prefWidth = bi.getWidth();
-		}
-		if (bi.getHeight() < prefHeight) {
-			prefHeight = bi.getHeight();
+		Metrics.Timer timer = Metrics.start(Phase.EDITOR_OPEN);
+		try {
+			JFrame frame = getFrame();
+			bi = ImageConversion.toCompatible(bi);
+			jdp.setImage(bi);
+			int prefWidth = 1280, prefHeight = 720;
+			if (bi.getWidth() < prefWidth) {
+				prefWidth = bi.getWidth();
+			}
+			if (bi.getHeight() < prefHeight) {
+				prefHeight = bi.getHeight();
+			}
+			jsp.setSize(prefWidth, prefWidth);
+			frame.getContentPane().setPreferredSize(new Dimension(prefWidth + 50, prefHeight + 50));
+			frame.pack();
+			frame.setVisible(true);
+		} finally {
+			timer.stop();
 		}
-		jsp.setSize(prefWidth, prefWidth);
-		frame.getContentPane().setPreferredSize(new Dimension(prefWidth + 50, prefHeight + 50));
-		frame.pack();
-		frame.setVisible(true);
 	}
 
 	/**
@@ -422,6 +616,7 @@ public class MauCapture {
 		pencil.setSelected(false);
 		text.setSelected(false);
 		erase.setSelected(false);
+		select.setSelected(false);
 		JToggleButton b = (JToggleButton) evt.getSource();
 		b.setSelected(true);
 		jdp.setDrawMode(JDrawPlate.DrawMode.valueOf(evt.getActionCommand()));
@@ -432,14 +627,42 @@ public class MauCapture {
 	 */
 	private ActionListener export = (ActionEvent evt) -> {
 		if (evt.getActionCommand().equals("MIS")) {
-			Uploader.upload(new MISUploader(getFrame(), url, randomize(5), uploadFormat, username, authtoken, hideImage), jdp.getImage());
+			Uploader.upload(new MISUploader(getFrame(), url, randomize(5), uploadFormat, username, authtoken, hideImage), jdp.export(), jdp.getRevision());
 		} else if (evt.getActionCommand().equals("IMGUR")) {
-			Uploader.upload(new ImgurUploader(getFrame()), jdp.getImage());
+			Uploader.upload(new ImgurUploader(getFrame()), jdp.export(), jdp.getRevision());
 		} else if (evt.getActionCommand().equals("MATRIX")) {
-			Uploader.upload(new MatrixUploader(getFrame(), matrixURL, randomize(5) + ".png", mxAccessToken), jdp.getImage());
+			Uploader.upload(new MatrixUploader(getFrame(), matrixURL, randomize(5) + ".png", mxAccessToken), jdp.export(), jdp.getRevision());
+		} else if (evt.getActionCommand().equals("ALL")) {
+			uploadAll();
 		}
 	};
 
+	/**
+	 * Upload the current image to all destinations selected in the preferences at once.
+	 */
+	public void uploadAll() {
+		Map<String, Uploader> uploaders = new LinkedHashMap<>();
+		for (String destination : fanOutDestinations.split(",")) {
+			switch (destination.trim()) {
+			case "mis":
+				uploaders.put("mis", new MISUploader(null, url, randomize(5), uploadFormat, username, authtoken, hideImage));
+				break;
+			case "matrix":
+				uploaders.put("matrix", new MatrixUploader(null, matrixURL, randomize(5) + ".png", mxAccessToken));
+				break;
+			case "imgur":
+				uploaders.put("imgur", new ImgurUploader(null));
+				break;
+			}
+		}
+		if (uploaders.isEmpty()) {
+			JOptionPane.showMessageDialog(getFrame(), "No upload destinations are selected in the preferences.",
+					"Nothing to upload to", JOptionPane.ERROR_MESSAGE);
+			return;
+		}
+		FanOut.upload(getFrame(), uploaders, primaryDestination, jdp.export(), jdp.getRevision());
+	}
+
 	/**
 	 * Cropping
 	 */
@@ -461,18 +684,13 @@ public class MauCapture {
 				// Make sure the cropped area is big enough.
 				if (si.getSelectWidth() > 20 && si.getSelectHeight() > 5
 						|| si.getSelectHeight() > 20 && si.getSelectWidth() > 5) {
-					BufferedImage bi =
-							jdp.getImage().getSubimage(si.xMin, si.yMin, si.getSelectWidth(), si.getSelectHeight());
-					// Area is big enough. Set it as the image for the drawplate.
-					jdp.setForegroundImage(bi);
-					jdp.setBackgroundImage(
-							jdp.getBackgroundImage().getSubimage(
-									si.xMin, si.yMin, si.getSelectWidth(), si.getSelectHeight()));
+					// Area is big enough. Crop the image in the drawplate.
+					jdp.crop(new Rectangle(si.xMin, si.yMin, si.getSelectWidth(), si.getSelectHeight()));
+					BufferedImage bi = jdp.getScene().getBase();
 					// Deselect the crop mode button.
 					crop.setSelected(false);
 					// Exit cropping mode.
 					exitCrop();
-					jdp.setPreferredSize(new Dimension(bi.getWidth(), bi.getHeight()));
 					int prefWidth = 1280, prefHeight = 720;
 					if (bi.getWidth() < prefWidth) {
 						prefWidth = bi.getWidth();
@@ -496,8 +714,9 @@ public class MauCapture {
 
 		private void enterCrop() {
 			// Create a cropping pane with the image from the drawplate.
-			si = new JSelectableImage(jdp.getImage());
-			si.setSize(jdp.getImage().getWidth(), jdp.getImage().getHeight());
+			BufferedImage bi = jdp.export();
+			si = new JSelectableImage(bi);
+			si.setZoom(jdp.getZoom());
 			si.setLocation(48, 48);
 			// Add a mouse listener to detect when cropping is finished.
 			si.addMouseListener(siMouse);
@@ -509,6 +728,7 @@ public class MauCapture {
 			pencil.setEnabled(false);
 			text.setEnabled(false);
 			erase.setEnabled(false);
+			select.setEnabled(false);
 			jsp.setViewportView(si);
 			// Repaint the frame to make sure all changes are visible.
 			frame.repaint();
@@ -524,6 +744,7 @@ public class MauCapture {
 			pencil.setEnabled(true);
 			text.setEnabled(true);
 			erase.setEnabled(true);
+			select.setEnabled(true);
 			si = null;
 			// Repaint the frame to make sure all changes are visible.
 			frame.repaint();
@@ -544,24 +765,131 @@ public class MauCapture {
 	/**
 	 * Get an icon from the assets.
 	 */
-	private ImageIcon getIcon(String path) {
-		path = "assets/" + path;
-		URL url = MauCapture.class.getClassLoader().getResource(path);
+	private static ImageIcon getIcon(String path) {
+		ImageIcon icon = iconCache.get(path);
+		if (icon != null) {
+			return icon;
+		}
+		URL url = MauCapture.class.getClassLoader().getResource("assets/" + path);
 		if (url != null) {
-			return new ImageIcon(url);
+			icon = new ImageIcon(url);
+			iconCache.put(path, icon);
+			return icon;
 		} else {
-			System.err.println("Couldn't find file: " + path);
+			System.err.println("Couldn't find file: assets/" + path);
 		}
 		return null;
 	}
 
 	/**
-	 * Get the main frame.
+	 * Get the main font of MauCapture.
 	 */
-	public JFrame getFrame() {
+	public static Font getLato() {
+		return Resources.lato;
+	}
+
+	/**
+	 * Get the file extensions ImageIO can write.
+	 */
+	public static String[] getImageTypes() {
+		return Resources.imageTypes;
+	}
+
+	/**
+	 * Load the font, icons and image writer list in a background thread, so they're ready by the time the editor is
+	 * opened after the capture. The metrics are also registered in JMX there, since loading JMX is slow.
+	 */
+	public static void prewarm() {
+		Thread thread = new Thread(() -> {
+			getLato();
+			getImageTypes();
+			for (String icon : icons) {
+				getIcon(icon);
+			}
+			Metrics.registerMBeans();
+		}, "Startup prewarm");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Write the phase timings to {@link #metricsFile}.
+	 */
+	public static void dumpMetrics() {
+		try {
+			Metrics.dump(metricsFile);
+		} catch (IOException e) {
+			System.err.println("Failed to write metrics:");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Holds the expensive shared resources, so they're only loaded when first used.
+	 */
+	private static class Resources {
+		private static final Font lato = createLato();
+		private static final String[] imageTypes = ImageIO.getWriterFileSuffixes();
+	}
+
+	/**
+	 * Set whether or not this instance stays running in the background between captures. In daemon mode, closing the
+	 * editor only hides it.
+	 */
+	public void setDaemon(boolean daemon) {
+		this.daemon = daemon;
+		if (frame != null) {
+			frame.setDefaultCloseOperation(daemon ? JFrame.HIDE_ON_CLOSE : JFrame.EXIT_ON_CLOSE);
+		}
+	}
+
+	public boolean isDaemon() {
+		return daemon;
+	}
+
+	/**
+	 * Drop the image and everything derived from it, so an idle daemon only keeps the warmed-up editor in memory.
+	 */
+	public void release() {
+		jdp.setImage(null);
+		EncodeCache.clear();
+		// The screenshot buffers are large, so ask for them to be collected right away instead of on the next capture.
+		System.gc();
+	}
+
+	/**
+	 * Save the config and exit.
+	 */
+	public void exit() {
+		try {
+			saveConfig();
+		} catch (IOException e) {
+			System.err.println("Failed to save config:");
+			e.printStackTrace();
+		}
+		if (frame != null) {
+			frame.dispose();
+		}
+		System.exit(0);
+	}
+
+	/**
+	 * Get the main frame, building it if it hasn't been built yet.
+	 */
+	public synchronized JFrame getFrame() {
+		if (frame == null) {
+			buildFrame();
+		}
 		return frame;
 	}
 
+	/**
+	 * Get whether or not the main frame has been built.
+	 */
+	public synchronized boolean hasFrame() {
+		return frame != null;
+	}
+
 	/**
 	 * Get the drawing plate.
 	 */
@@ -634,19 +962,21 @@ public class MauCapture {
 	}
 
 	/**
-	 * Try to log in to the configured MIS server using the given username and password.
+	 * Try to log in to the configured MIS server using the given username and password in the background.
 	 *
-	 * @return The authentication token, or a simple error word with "{@code err:}" as the prefix.
-	 */
-	public String login(String url, String username, String password) {
-		String result = MISUploader.login(url, username, password);
-		if (!result.startsWith("err:")) {
-			authtoken = result;
-			this.username = username;
-			return "success";
-		} else {
-			return result;
-		}
+	 * @return A task completing with {@code success}, or a simple error word with "{@code err:}" as the prefix.
+	 */
+	public IoTask<String> login(String url, String username, String password) {
+		return IoTask.submit(task -> {
+			String result = MISUploader.login(url, username, password, task);
+			if (!result.startsWith("err:")) {
+				authtoken = result;
+				this.username = username;
+				return "success";
+			} else {
+				return result;
+			}
+		});
 	}
 
 	/**
@@ -686,6 +1016,17 @@ public class MauCapture {
 		this.saveLocation = saveLocation;
 	}
 
+	/**
+	 * Get the name of the capture backend to use, or {@code auto} to use the first available one.
+	 */
+	public String getCaptureBackend() {
+		return captureBackend;
+	}
+
+	public void setCaptureBackend(String captureBackend) {
+		this.captureBackend = captureBackend;
+	}
+
 	public void setUploadFormat(String uploadFormat) {
 		this.uploadFormat = uploadFormat;
 	}
@@ -694,12 +1035,34 @@ public class MauCapture {
 		return uploadFormat;
 	}
 
-	private final char[] randomizeAllowed = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789".toCharArray();
+	/**
+	 * Get the comma-separated list of destinations the upload all button uploads to.
+	 */
+	public String getFanOutDestinations() {
+		return fanOutDestinations;
+	}
+
+	public void setFanOutDestinations(String fanOutDestinations) {
+		this.fanOutDestinations = fanOutDestinations;
+	}
+
+	/**
+	 * Get the destination whose link is copied after uploading to all destinations, or {@link FanOut#FIRST}.
+	 */
+	public String getPrimaryDestination() {
+		return primaryDestination;
+	}
+
+	public void setPrimaryDestination(String primaryDestination) {
+		this.primaryDestination = primaryDestination;
+	}
+
+	private static final char[] randomizeAllowed = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789".toCharArray();
 
 	/**
 	 * Generate a random string matching the regex [a-zA-Z0-9]{{@code chars}}
 	 */
-	private String randomize(int chars) {
+	public static String randomize(int chars) {
 		StringBuffer sb = new StringBuffer();
 		for (int i = 0; i < chars; i++) {
 			sb.append(randomizeAllowed[r.nextInt(randomizeAllowed.length)]);
@@ -724,6 +1087,19 @@ public class MauCapture {
 	}
 
 	public static void main(String[] args) {
+		StartupTimer.mark("main");
+		boolean daemon = args.length > 0 && args[0].equals("--daemon");
+		if (args.length > 0 && args[0].equals("--trigger")) {
+			Daemon.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		} else if (args.length > 0 && !daemon) {
+			// Any arguments mean the headless command-line mode.
+			Cli.main(args);
+			return;
+		}
+		if (Boolean.getBoolean("maucapture.debug")) {
+			EdtWatchdog.start();
+		}
 		// Use native L&F
 		try {
 			UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -738,6 +1114,27 @@ public class MauCapture {
 			System.err.println("Failed to read config:");
 			e.printStackTrace();
 		}
+		StartupTimer.mark("config-loaded");
+		Runtime.getRuntime().addShutdownHook(new Thread(MauCapture::dumpMetrics, "Metrics dump"));
+		// Load everything the editor needs while the user is selecting the capture region.
+		prewarm();
+		// Retry uploads that didn't finish last time.
+		UploadScheduler.resume(mc);
+		if (daemon) {
+			// Wait for captures to be triggered instead of capturing right away.
+			mc.setDaemon(true);
+			try {
+				Daemon.start(mc, mc.daemonPort);
+			} catch (IOException e) {
+				System.err.println("Failed to start daemon:");
+				e.printStackTrace();
+				System.exit(1);
+			}
+			ConnectionPool.prewarm(mc.getAddress());
+			// Keep the editor ready, so triggered captures open it right away.
+			SwingUtilities.invokeLater(mc::getFrame);
+			return;
+		}
 		// Open the screen grabbing view
 		Screenshot.takeScreenshot(mc);
 	}
@@ -6,6 +6,8 @@ import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
@@ -16,6 +18,9 @@ import javax.swing.JOptionPane;
 import javax.swing.JPasswordField;
 import javax.swing.JTextField;
 
+import net.maunium.maucapture.uploaders.FanOut;
+import net.maunium.maucapture.util.IoTask;
+
 /**
  * Contains a method that opens the MIS settings dialog.
  *
@@ -28,9 +33,9 @@ public class Preferences {
 		frame.setLayout(null);
 		frame.setResizable(false);
 		frame.setLocationRelativeTo(host.getFrame());
-		frame.getContentPane().setPreferredSize(new Dimension(500, 215));
+		frame.getContentPane().setPreferredSize(new Dimension(500, 250));
 		frame.pack();
-		frame.setFont(MauCapture.lato);
+		frame.setFont(MauCapture.getLato());
 		frame.addWindowListener(new WindowAdapter() {
 			@Override
 			public void windowClosing(WindowEvent evt) {
@@ -42,48 +47,48 @@ public class Preferences {
 		JLabel addrl = new JLabel("Address");
 		addrl.setLocation(5, 5);
 		addrl.setSize(70, 30);
-		addrl.setFont(MauCapture.lato);
+		addrl.setFont(MauCapture.getLato());
 
 		JTextField addr = new JTextField(host.getAddress());
 		addr.setLocation(75, 5);
 		addr.setSize(170, 30);
-		addr.setFont(MauCapture.lato);
+		addr.setFont(MauCapture.getLato());
 
 		JLabel authtokenl = new JLabel("Auth token");
 		authtokenl.setLocation(5, 40);
 		authtokenl.setSize(70, 30);
-		authtokenl.setFont(MauCapture.lato);
+		authtokenl.setFont(MauCapture.getLato());
 
 		JTextField authtoken = new JTextField(host.getAuthToken());
 		authtoken.setLocation(75, 40);
 		authtoken.setSize(170, 30);
 		authtoken.setEditable(false);
-		authtoken.setFont(MauCapture.lato);
+		authtoken.setFont(MauCapture.getLato());
 
 		JLabel usernamel = new JLabel("Username");
 		usernamel.setLocation(255, 5);
 		usernamel.setSize(60, 30);
-		usernamel.setFont(MauCapture.lato);
+		usernamel.setFont(MauCapture.getLato());
 
 		JTextField username = new JTextField(host.getUsername());
 		username.setLocation(320, 5);
 		username.setSize(175, 30);
-		username.setFont(MauCapture.lato);
+		username.setFont(MauCapture.getLato());
 
 		JLabel passwordl = new JLabel("Password");
 		passwordl.setLocation(255, 40);
 		passwordl.setSize(60, 30);
-		passwordl.setFont(MauCapture.lato);
+		passwordl.setFont(MauCapture.getLato());
 
 		JPasswordField password = new JPasswordField(String.valueOf(host.getPassword()));
 		password.setLocation(320, 40);
 		password.setSize(175, 30);
-		password.setFont(MauCapture.lato);
+		password.setFont(MauCapture.getLato());
 
 		JCheckBox savePassword = new JCheckBox("Save password (not recommended)", host.savePassword());
 		savePassword.setLocation(5, 75);
 		savePassword.setSize(240, 30);
-		savePassword.setFont(MauCapture.lato);
+		savePassword.setFont(MauCapture.getLato());
 
 		JButton login = new JButton("Log in (get auth token)");
 		login.setLocation(255, 75);
@@ -93,70 +98,113 @@ public class Preferences {
 				JOptionPane.showMessageDialog(frame, "You must fill all the fillable fields to log in.", "Incomplete details", JOptionPane.ERROR_MESSAGE);
 				return;
 			}
-			String status = host.login(addr.getText(), username.getText(), String.valueOf(password.getPassword()));
-			switch (status) {
-			case "success":
-				if (!savePassword.isSelected()) {
-					password.setText("");
+			login.setEnabled(false);
+			host.login(addr.getText(), username.getText(), String.valueOf(password.getPassword()))
+					.showProgress(frame, "Logging in")
+					.whenCompleteAsync((status, error) -> {
+				login.setEnabled(true);
+				if (error != null) {
+					// Cancelled, the login itself reports failures as statuses.
+					return;
 				}
-				authtoken.setText(host.getAuthToken());
-				JOptionPane.showMessageDialog(frame, "Successfully logged in as " + username.getText(), "Logged in", JOptionPane.INFORMATION_MESSAGE);
-				break;
-			case "err:incorrectpassword":
-				JOptionPane.showMessageDialog(frame, "The password you entered was incorrect.", "Incorrect password", JOptionPane.ERROR_MESSAGE);
-				break;
-			case "err:servererror":
-				JOptionPane.showMessageDialog(frame, "The server encountered an internal server error.", "Internal server error",
-						JOptionPane.ERROR_MESSAGE);
-				break;
-			case "err:exception":
-				JOptionPane.showMessageDialog(frame, "Failed to contact server.", "Connection error", JOptionPane.ERROR_MESSAGE);
-				break;
-			}
+				switch (status) {
+				case "success":
+					if (!savePassword.isSelected()) {
+						password.setText("");
+					}
+					authtoken.setText(host.getAuthToken());
+					JOptionPane.showMessageDialog(frame, "Successfully logged in as " + username.getText(), "Logged in", JOptionPane.INFORMATION_MESSAGE);
+					break;
+				case "err:incorrectpassword":
+					JOptionPane.showMessageDialog(frame, "The password you entered was incorrect.", "Incorrect password", JOptionPane.ERROR_MESSAGE);
+					break;
+				case "err:servererror":
+					JOptionPane.showMessageDialog(frame, "The server encountered an internal server error.", "Internal server error",
+							JOptionPane.ERROR_MESSAGE);
+					break;
+				case "err:exception":
+					JOptionPane.showMessageDialog(frame, "Failed to contact server.", "Connection error", JOptionPane.ERROR_MESSAGE);
+					break;
+				}
+			}, IoTask.EDT);
 		});
-		login.setFont(MauCapture.lato);
+		login.setFont(MauCapture.getLato());
 
 		JLabel formatl = new JLabel("Image Upload Format");
 		formatl.setSize(130, 30);
 		formatl.setLocation(5, 110);
-		formatl.setFont(MauCapture.lato);
+		formatl.setFont(MauCapture.getLato());
 
-		JComboBox<String> format = new JComboBox<String>(MauCapture.imageTypes);
+		JComboBox<String> format = new JComboBox<String>(MauCapture.getImageTypes());
 		format.setSelectedItem(host.getUploadFormat());
 		format.setSize(110, 30);
 		format.setLocation(135, 110);
-		format.setFont(MauCapture.lato);
+		format.setFont(MauCapture.getLato());
 
 		JCheckBox hidden = new JCheckBox("Hide image from search", host.hideImage());
 		hidden.setLocation(320, 110);
 		hidden.setSize(240, 30);
-		hidden.setFont(MauCapture.lato);
+		hidden.setFont(MauCapture.getLato());
 
 
 		JLabel mxURLl = new JLabel("Matrix");
 		mxURLl.setLocation(5, 145);
 		mxURLl.setSize(60, 30);
-		mxURLl.setFont(MauCapture.lato);
+		mxURLl.setFont(MauCapture.getLato());
 
 		JTextField mxURL = new JTextField(host.getMatrixURL());
 		mxURL.setLocation(75, 145);
 		mxURL.setSize(175, 30);
-		mxURL.setFont(MauCapture.lato);
+		mxURL.setFont(MauCapture.getLato());
 
 		JLabel mxAccessTokenl = new JLabel("Token");
 		mxAccessTokenl.setLocation(255, 145);
 		mxAccessTokenl.setSize(70, 30);
-		mxAccessTokenl.setFont(MauCapture.lato);
+		mxAccessTokenl.setFont(MauCapture.getLato());
 
 		JTextField mxAccessToken = new JTextField(host.getMxAccessToken());
 		mxAccessToken.setLocation(320, 145);
 		mxAccessToken.setSize(170, 30);
-		mxAccessToken.setFont(MauCapture.lato);
+		mxAccessToken.setFont(MauCapture.getLato());
+
+
+		List<String> destinations = Arrays.asList(host.getFanOutDestinations().split(","));
+		JLabel fanOutl = new JLabel("Upload all");
+		fanOutl.setLocation(5, 180);
+		fanOutl.setSize(70, 30);
+		fanOutl.setFont(MauCapture.getLato());
+
+		JCheckBox fanOutMIS = new JCheckBox("MIS", destinations.contains("mis"));
+		fanOutMIS.setLocation(70, 180);
+		fanOutMIS.setSize(55, 30);
+		fanOutMIS.setFont(MauCapture.getLato());
+
+		JCheckBox fanOutMatrix = new JCheckBox("Matrix", destinations.contains("matrix"));
+		fanOutMatrix.setLocation(125, 180);
+		fanOutMatrix.setSize(70, 30);
+		fanOutMatrix.setFont(MauCapture.getLato());
+
+		JCheckBox fanOutImgur = new JCheckBox("Imgur", destinations.contains("imgur"));
+		fanOutImgur.setLocation(195, 180);
+		fanOutImgur.setSize(60, 30);
+		fanOutImgur.setFont(MauCapture.getLato());
+
+		JLabel primaryl = new JLabel("Copy link");
+		primaryl.setLocation(255, 180);
+		primaryl.setSize(65, 30);
+		primaryl.setFont(MauCapture.getLato());
+
+		String[] primaryValues = { FanOut.FIRST, "mis", "matrix", "imgur" };
+		JComboBox<String> primary = new JComboBox<String>(new String[] { "First to finish", "MIS", "Matrix", "Imgur" });
+		primary.setSelectedIndex(Math.max(0, Arrays.asList(primaryValues).indexOf(host.getPrimaryDestination())));
+		primary.setSize(170, 30);
+		primary.setLocation(320, 180);
+		primary.setFont(MauCapture.getLato());
 
 
 		JButton save = new JButton("Save");
 		save.setSize(240, 30);
-		save.setLocation(5, 180);
+		save.setLocation(5, 215);
 		save.addActionListener(e -> {
 			host.setAddress(addr.getText());
 			if (savePassword.isSelected()) { host.setPassword(String.valueOf(password.getPassword())); }
@@ -166,6 +214,12 @@ public class Preferences {
 			host.setUploadFormat((String) format.getSelectedItem());
 			host.setMxAccessToken(mxAccessToken.getText());
 			host.setMatrixURL(mxURL.getText());
+			StringBuilder fanOut = new StringBuilder();
+			if (fanOutMIS.isSelected()) { fanOut.append(",mis"); }
+			if (fanOutMatrix.isSelected()) { fanOut.append(",matrix"); }
+			if (fanOutImgur.isSelected()) { fanOut.append(",imgur"); }
+			host.setFanOutDestinations(fanOut.length() > 0 ? fanOut.substring(1) : "");
+			host.setPrimaryDestination(primaryValues[primary.getSelectedIndex()]);
 			try {
 				host.saveConfig();
 			} catch (IOException e1) {
@@ -174,13 +228,13 @@ public class Preferences {
 			}
 			frame.dispose();
 		});
-		save.setFont(MauCapture.lato);
+		save.setFont(MauCapture.getLato());
 
 		JButton cancel = new JButton("Cancel");
 		cancel.setSize(240, 30);
-		cancel.setLocation(255, 180);
+		cancel.setLocation(255, 215);
 		cancel.addActionListener(e -> frame.dispose());
-		cancel.setFont(MauCapture.lato);
+		cancel.setFont(MauCapture.getLato());
 
 		frame.add(addr);
 		frame.add(addrl);
@@ -199,6 +253,12 @@ public class Preferences {
 		frame.add(mxURL);
 		frame.add(mxAccessTokenl);
 		frame.add(mxAccessToken);
+		frame.add(fanOutl);
+		frame.add(fanOutMIS);
+		frame.add(fanOutMatrix);
+		frame.add(fanOutImgur);
+		frame.add(primaryl);
+		frame.add(primary);
 		frame.add(save);
 		frame.add(cancel);
 		frame.setVisible(true);
@@ -1,9 +1,32 @@
 package net.maunium.maucapture;
 
+import java.awt.Toolkit;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.swing.JFrame;
 import javax.swing.JOptionPane;
-import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+
+import net.maunium.maucapture.capture.CaptureBackend;
+import net.maunium.maucapture.capture.CommandCaptureBackend;
+import net.maunium.maucapture.capture.FileCaptureBackend;
+import net.maunium.maucapture.capture.ImageFileCaptureBackend;
+import net.maunium.maucapture.capture.RobotCaptureBackend;
+import net.maunium.maucapture.metrics.Metrics;
+import net.maunium.maucapture.metrics.Phase;
+import net.maunium.maucapture.uploaders.ConnectionPool;
 
 /**
  * Contains code for taking screenshots.
@@ -13,45 +36,144 @@ import javax.imageio.ImageIO;
  */
 public class Screenshot {
 	public static boolean takingScreenshot = false;
+	/**
+	 * Whether a capture started with {@link #startCapture(MauCapture)} is running.
+	 */
+	private static final AtomicBoolean capturing = new AtomicBoolean(false);
+
+	/**
+	 * All capture backends in the order they're tried when the backend is set to {@code auto}.
+	 */
+	private static final List<CaptureBackend> backends = Arrays.asList(
+			new RobotCaptureBackend(),
+			new CommandCaptureBackend("maim", new String[]{"maim"}, "maim", "--select", "--format", "png"),
+			new CommandCaptureBackend("grim", new String[]{"grim", "slurp"}, "sh", "-c", "grim -g \"$(slurp)\" -"),
+			new FileCaptureBackend("gnome-screenshot", "gnome-screenshot", new File("/tmp/maucapture.png"),
+					"gnome-screenshot", "-af", "/tmp/maucapture.png"),
+			new FileCaptureBackend("screencapture", "screencapture", new File("/tmp/maucapture.png"),
+					"screencapture", "-i", "/tmp/maucapture.png"));
+
+	/**
+	 * Take a screenshot in a new thread, unless one is already being taken.
+	 *
+	 * @return {@code false} if a screenshot is already being taken.
+	 */
+	public static boolean startCapture(MauCapture host) {
+		if (!capturing.compareAndSet(false, true)) {
+			return false;
+		}
+		// Capturing waits for the frame to be hidden, so it can't block the event dispatch thread.
+		new Thread(() -> {
+			try {
+				takeScreenshot(host);
+			} finally {
+				capturing.set(false);
+			}
+		}, "Capture").start();
+		return true;
+	}
 
+	/**
+	 * Hide the main frame, capture a new screenshot and open it in the editor. This must not be called from the event
+	 * dispatch thread.
+	 */
 	public static void takeScreenshot(MauCapture host) {
-		String command = "exit", fileName = "/tmp/maucapture.png";
-		switch (getOS()) {
-		case "linux":
-			command = String.format("gnome-screenshot -af %s", fileName);
-			break;
-		case "macos":
-			command = String.format("screencapture -i %s", fileName);
-			break;
-		default:
+		List<CaptureBackend> candidates = getBackends(host.getCaptureBackend());
+		if (candidates.isEmpty()) {
 			JOptionPane.showMessageDialog(null, "Your platform is not supported.", "mauCapture", JOptionPane.ERROR_MESSAGE);
 			return;
 		}
+		// Open the upload connections while the user is selecting the capture region.
+		ConnectionPool.prewarm(host.getAddress());
+		if (host.getMxAccessToken() != null && !host.getMxAccessToken().isEmpty()) {
+			ConnectionPool.prewarm(host.getMatrixURL());
+		}
 		try {
+			if (host.hasFrame()) {
+				waitUntilHidden(host.getFrame());
+			}
+			StartupTimer.mark("capture-start");
 			takingScreenshot = true;
-			final Process p = Runtime.getRuntime().exec(command);
-			p.waitFor();
+			BufferedImage bi = null;
+			for (CaptureBackend backend : candidates) {
+				try {
+					long st = System.currentTimeMillis();
+					bi = backend.capture();
+					long latency = backend.getLastLatency();
+					if (latency >= 0) {
+						Metrics.record(Phase.CAPTURE, TimeUnit.MILLISECONDS.toNanos(latency));
+					}
+					if (Boolean.getBoolean("maucapture.debug")) {
+						System.err.println("Captured with " + backend.getName() + " in " + (System.currentTimeMillis() - st)
+								+ " ms including selection" + (latency >= 0 ? ", " + latency + " ms capturing" : ""));
+					}
+					break;
+				} catch (IOException e) {
+					System.err.println("Capture backend " + backend.getName() + " failed:");
+					e.printStackTrace();
+				}
+			}
 			takingScreenshot = false;
-			File file = new File(fileName);
-			if (!file.exists()) {
+			StartupTimer.mark("captured");
+			if (bi != null) {
+				host.open(bi);
+			} else if (host.getDrawPlate().hasImage()) {
+				// Capture cancelled, go back to the previous image.
+				host.getFrame().setVisible(true);
+			} else if (!host.isDaemon()) {
 				System.exit(0);
 			}
-			host.open(ImageIO.read(file));
-			file.delete();
 		} catch (Throwable t) {
+			takingScreenshot = false;
 			t.printStackTrace();
 		}
 	}
 
-	private static String getOS() {
-		String os = System.getProperty("os.name").toLowerCase();
-		if (os.contains("windows")) {
-			return "windows";
-		} else if (os.contains("mac")) {
-			return "macos";
-		} else if (os.contains("linux")) {
-			return "linux";
+	/**
+	 * Get the available capture backends in the order they should be tried. The backend with the given name is first,
+	 * followed by the others as fallbacks. If the name is {@code auto}, all available backends are returned in the
+	 * default order.
+	 */
+	public static List<CaptureBackend> getBackends(String name) {
+		String file = System.getProperty("maucapture.capture-file");
+		if (file != null) {
+			return Collections.singletonList(new ImageFileCaptureBackend(new File(file)));
+		}
+		List<CaptureBackend> available = new ArrayList<>();
+		for (CaptureBackend backend : backends) {
+			if (backend.isAvailable()) {
+				if (backend.getName().equals(name)) {
+					available.add(0, backend);
+				} else {
+					available.add(backend);
+				}
+			}
 		}
-		return "unsupported";
+		return available;
+	}
+
+	/**
+	 * Hide the given frame and wait until it has actually disappeared from the screen.
+	 */
+	private static void waitUntilHidden(JFrame frame) throws InterruptedException, InvocationTargetException {
+		CountDownLatch hidden = new CountDownLatch(1);
+		ComponentAdapter listener = new ComponentAdapter() {
+			@Override
+			public void componentHidden(ComponentEvent e) {
+				hidden.countDown();
+			}
+		};
+		SwingUtilities.invokeAndWait(() -> {
+			if (frame.isShowing()) {
+				frame.addComponentListener(listener);
+				frame.setVisible(false);
+			} else {
+				hidden.countDown();
+			}
+		});
+		// The hidden event is delivered after the window peer has been hidden, then sync flushes the window system.
+		hidden.await(1, TimeUnit.SECONDS);
+		frame.removeComponentListener(listener);
+		Toolkit.getDefaultToolkit().sync();
 	}
 }
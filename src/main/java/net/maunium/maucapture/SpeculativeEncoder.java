@@ -0,0 +1,141 @@
+package net.maunium.maucapture;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Supplier;
+
+import javax.swing.Timer;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import net.maunium.maucapture.swing.JDrawPlate;
+import net.maunium.maucapture.util.EncodeCache;
+
+/**
+ * Encodes the image in the draw plate in the background after the user stops editing for a moment, so that uploads
+ * can start sending right away from the {@link EncodeCache}. Encoding runs on low-priority threads, and is cancelled
+ * as soon as the image is edited again.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class SpeculativeEncoder implements ChangeListener {
+	/**
+	 * How long the image must stay unchanged before it's encoded, in milliseconds.
+	 */
+	private static final int IDLE_DELAY = 750;
+	/**
+	 * The pool background encodes run in. One core is left for the user interface.
+	 */
+	private static final ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+			p -> {
+				ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+				t.setName("Background encoder " + t.getPoolIndex());
+				t.setPriority(Thread.MIN_PRIORITY);
+				t.setDaemon(true);
+				return t;
+			}, null, false);
+
+	private final JDrawPlate plate;
+	private final Supplier<Collection<String>> formats;
+	private final Timer timer;
+	private boolean enabled = true;
+	private Job job;
+
+	/**
+	 * @param formats A function returning the formats uploads are currently encoded in.
+	 */
+	public SpeculativeEncoder(JDrawPlate plate, Supplier<Collection<String>> formats) {
+		this.plate = plate;
+		this.formats = formats;
+		timer = new Timer(IDLE_DELAY, evt -> start());
+		timer.setRepeats(false);
+		plate.addChangeListener(this);
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+		if (!enabled) {
+			timer.stop();
+			cancel();
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public void stateChanged(ChangeEvent e) {
+		cancel();
+		if (enabled) {
+			timer.restart();
+		}
+	}
+
+	private void cancel() {
+		if (job != null) {
+			job.cancel();
+			job = null;
+		}
+	}
+
+	private void start() {
+		if (!enabled || !plate.hasImage()) {
+			return;
+		}
+		// The scene may only be rendered on the event dispatch thread, so export here and only encode in the pool.
+		job = new Job(plate.export(), plate.getRevision(), formats.get());
+		pool.execute(job);
+	}
+
+	/**
+	 * Encoding one revision of the image in all upload formats.
+	 */
+	private static class Job implements Runnable {
+		private final BufferedImage image;
+		private final long revision;
+		private final Collection<String> formats;
+		private boolean cancelled = false;
+		private Thread thread;
+
+		private Job(BufferedImage image, long revision, Collection<String> formats) {
+			this.image = image;
+			this.revision = revision;
+			this.formats = formats;
+		}
+
+		@Override
+		public void run() {
+			synchronized (this) {
+				if (cancelled) {
+					return;
+				}
+				thread = Thread.currentThread();
+			}
+			try {
+				for (String format : formats) {
+					EncodeCache.encode(image, revision, format);
+				}
+			} catch (IOException e) {
+				// Cancelled or failed, the upload will encode the image itself.
+			} finally {
+				synchronized (this) {
+					thread = null;
+					// Don't leave the pool thread interrupted if the job was cancelled right at the end.
+					Thread.interrupted();
+				}
+			}
+		}
+
+		private synchronized void cancel() {
+			cancelled = true;
+			if (thread != null) {
+				thread.interrupt();
+			}
+		}
+	}
+}
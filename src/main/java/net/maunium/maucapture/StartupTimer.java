@@ -0,0 +1,50 @@
+package net.maunium.maucapture;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Measures startup when the {@code maucapture.startup-report} system property is set to a file path. Each startup
+ * appends one JSON object with the milliseconds from JVM start to each milestone to the file once the editor is
+ * visible. Without the property, all methods do nothing.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class StartupTimer {
+	private static final String report = System.getProperty("maucapture.startup-report");
+	private static final long start = report != null ? ManagementFactory.getRuntimeMXBean().getStartTime() : 0;
+	private static final JsonObject marks = new JsonObject();
+	private static boolean finished = false;
+
+	/**
+	 * Record the first time the given milestone is reached.
+	 */
+	public static synchronized void mark(String milestone) {
+		if (report == null || finished || marks.has(milestone)) {
+			return;
+		}
+		marks.addProperty(milestone, System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * Append the recorded milestones to the report file. Only the first call does anything.
+	 */
+	public static synchronized void finish() {
+		if (report == null || finished) {
+			return;
+		}
+		finished = true;
+		try (OutputStream out = new FileOutputStream(report, true)) {
+			out.write((marks.toString() + "\n").getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			System.err.println("Failed to write startup report:");
+			e.printStackTrace();
+		}
+	}
+}
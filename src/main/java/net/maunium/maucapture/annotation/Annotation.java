@@ -0,0 +1,136 @@
+package net.maunium.maucapture.annotation;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * An object drawn on top of the base image, such as an arrow or a piece of text. Annotations are kept separately
+ * from the image pixels, so they can be moved, restyled and deleted after they've been drawn.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public abstract class Annotation {
+	protected Color color;
+	protected int size;
+	protected boolean fill;
+
+	private Rectangle bounds;
+	private BasicStroke stroke;
+	/**
+	 * The position of this annotation in the drawing order. Assigned by the scene when first added.
+	 */
+	long order = 0;
+
+	protected Annotation(Color color, int size, boolean fill) {
+		this.color = color;
+		this.size = size;
+		this.fill = fill;
+	}
+
+	/**
+	 * Draw this annotation.
+	 *
+	 * @param base The unmodified base image, which some annotations (e.g. the eraser) draw from.
+	 */
+	public abstract void paint(Graphics2D g, BufferedImage base);
+
+	/**
+	 * Get the area this annotation may draw on, including the stroke width.
+	 */
+	public Rectangle getBounds() {
+		if (bounds == null) {
+			bounds = computeBounds();
+		}
+		return bounds;
+	}
+
+	protected abstract Rectangle computeBounds();
+
+	/**
+	 * Replace the cached bounds, for subclasses that can update them cheaper than {@link #computeBounds()}.
+	 */
+	protected void setBounds(Rectangle bounds) {
+		this.bounds = bounds;
+	}
+
+	/**
+	 * Check if the given point is on this annotation. The default implementation only checks the bounds.
+	 */
+	public boolean hit(int x, int y) {
+		return getBounds().contains(x, y);
+	}
+
+	/**
+	 * Get whether or not this annotation can be selected by clicking on it.
+	 */
+	public boolean isSelectable() {
+		return true;
+	}
+
+	/**
+	 * Move this annotation by the given amount. This must not be called directly while the annotation is in a scene,
+	 * use {@link Scene#update(Annotation, Runnable)} instead.
+	 */
+	public abstract void translate(int dx, int dy);
+
+	/**
+	 * Change the color, size and fill of this annotation. This must not be called directly while the annotation is in
+	 * a scene, use {@link Scene#restyle(Annotation, Color, int, boolean)} instead.
+	 */
+	public void setStyle(Color color, int size, boolean fill) {
+		this.color = color;
+		this.size = size;
+		this.fill = fill;
+		stroke = null;
+		invalidate();
+	}
+
+	public Color getColor() {
+		return color;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public boolean getFill() {
+		return fill;
+	}
+
+	/**
+	 * Estimate how many bytes of memory the annotation uses, for limiting the size of the undo history.
+	 */
+	public long getMemorySize() {
+		return 128;
+	}
+
+	/**
+	 * Mark the cached bounds and shapes as outdated after a change.
+	 */
+	protected void invalidate() {
+		bounds = null;
+	}
+
+	/**
+	 * Set the color and stroke of the given Graphics2D object.
+	 */
+	protected void prepare(Graphics2D g) {
+		if (stroke == null) {
+			stroke = new BasicStroke(size, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+		}
+		g.setColor(color);
+		g.setStroke(stroke);
+	}
+
+	/**
+	 * Get the bounds of a line between the given points, grown by the given padding on each side.
+	 */
+	protected static Rectangle lineBounds(int x1, int y1, int x2, int y2, int pad) {
+		int x = Math.min(x1, x2), y = Math.min(y1, y2);
+		return new Rectangle(x - pad, y - pad, Math.abs(x2 - x1) + 2 * pad + 1, Math.abs(y2 - y1) + 2 * pad + 1);
+	}
+}
@@ -0,0 +1,63 @@
+package net.maunium.maucapture.annotation;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * A line with an arrow head at the end.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class ArrowAnnotation extends Annotation {
+	private int x1, y1, x2, y2;
+
+	public ArrowAnnotation(Color color, int size, int x1, int y1, int x2, int y2) {
+		super(color, size, false);
+		this.x1 = x1;
+		this.y1 = y1;
+		this.x2 = x2;
+		this.y2 = y2;
+	}
+
+	@Override
+	public void paint(Graphics2D g, BufferedImage base) {
+		Graphics2D g2 = (Graphics2D) g.create();
+		prepare(g2);
+		g2.drawLine(x1, y1, x2, y2);
+
+		int dx = x2 - x1, dy = y2 - y1;
+		double angle = Math.atan2(dy, dx);
+		int len = (int) Math.sqrt(dx * dx + dy * dy) + size;
+		AffineTransform at = AffineTransform.getTranslateInstance(x1, y1);
+		at.concatenate(AffineTransform.getRotateInstance(angle));
+		g2.transform(at);
+		g2.fillPolygon(new int[]{len, len - 2 * size, len - 2 * size, len}, new int[]{0, -2 * size, 2 * size, 0}, 4);
+		g2.dispose();
+	}
+
+	@Override
+	protected Rectangle computeBounds() {
+		// The arrow head extends one size past the end point and two sizes sideways.
+		return lineBounds(x1, y1, x2, y2, 3 * size + 2);
+	}
+
+	@Override
+	public boolean hit(int x, int y) {
+		double maxDist = size + 3;
+		return getBounds().contains(x, y) && Line2D.ptSegDistSq(x1, y1, x2, y2, x, y) <= maxDist * maxDist;
+	}
+
+	@Override
+	public void translate(int dx, int dy) {
+		x1 += dx;
+		y1 += dy;
+		x2 += dx;
+		y2 += dy;
+		invalidate();
+	}
+}
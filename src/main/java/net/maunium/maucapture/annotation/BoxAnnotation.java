@@ -0,0 +1,64 @@
+package net.maunium.maucapture.annotation;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.image.BufferedImage;
+
+/**
+ * An annotation whose shape is defined by a box between two corners, such as a rectangle or a circle.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public abstract class BoxAnnotation extends Annotation {
+	protected int x, y, width, height;
+
+	protected BoxAnnotation(Color color, int size, boolean fill, int x1, int y1, int x2, int y2) {
+		super(color, size, fill);
+		x = Math.min(x1, x2);
+		y = Math.min(y1, y2);
+		width = Math.max(x1, x2) - x;
+		height = Math.max(y1, y2) - y;
+	}
+
+	/**
+	 * Get the shape to draw or fill.
+	 */
+	protected abstract Shape getShape();
+
+	@Override
+	public void paint(Graphics2D g, BufferedImage base) {
+		prepare(g);
+		if (fill) {
+			g.fill(getShape());
+		} else {
+			g.draw(getShape());
+		}
+	}
+
+	@Override
+	protected Rectangle computeBounds() {
+		return lineBounds(x, y, x + width, y + height, size / 2 + 2);
+	}
+
+	@Override
+	public boolean hit(int x, int y) {
+		if (!getBounds().contains(x, y)) {
+			return false;
+		} else if (fill) {
+			return getShape().contains(x, y);
+		}
+		// Allow clicking slightly outside the outline, but not in the empty middle.
+		return new BasicStroke(size + 6).createStrokedShape(getShape()).contains(x, y);
+	}
+
+	@Override
+	public void translate(int dx, int dy) {
+		x += dx;
+		y += dy;
+		invalidate();
+	}
+}
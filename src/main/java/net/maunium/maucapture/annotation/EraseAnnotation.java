@@ -0,0 +1,255 @@
+package net.maunium.maucapture.annotation;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.WritableRaster;
+
+/**
+ * An eraser stroke, which brings back the base image along its path, hiding all annotations below it.
+ * <p>
+ * The erased pixels are copied straight from the raster of the base image into tiles as the points are added. The brush is
+ * stamped at every pixel between consecutive points, so the stroke has no gaps however fast the mouse moves, and
+ * only the pixels the previous stamp didn't cover are copied.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class EraseAnnotation extends PathAnnotation {
+	private static final int TILE_SIZE = 64;
+	/**
+	 * The estimated size of a tile, including the image and raster objects.
+	 */
+	private static final long TILE_MEMORY_SIZE = 4L * TILE_SIZE * TILE_SIZE + 512;
+
+	private final boolean round;
+	/**
+	 * The image to copy the erased pixels from, or {@code null} after the stroke is finished.
+	 */
+	private BufferedImage source;
+	private final int baseWidth, baseHeight;
+	/**
+	 * The raster of the base image if its data elements are packed RGB or ARGB ints, otherwise {@code null}.
+	 */
+	private WritableRaster packed;
+	private final boolean baseAlpha;
+	/**
+	 * A buffer for one row of the base image, or {@code null} after the stroke is finished.
+	 */
+	private int[] rowBuffer;
+
+	/**
+	 * The first and last column of the brush on each of its rows, relative to the top left corner of the brush.
+	 */
+	private final int[] maskStart, maskEnd;
+
+	/**
+	 * The erased pixels of the base image. Tiles are created the first time a pixel in them is erased.
+	 */
+	private final BufferedImage[] tiles;
+	private final int tilesX;
+	private int tileCount = 0;
+	/**
+	 * How much the annotation has been moved since it was drawn.
+	 */
+	private int offsetX = 0, offsetY = 0;
+
+	/**
+	 * Create an empty eraser stroke.
+	 *
+	 * @param round Whether to use a round brush instead of a square one.
+	 * @param base  The image to copy the erased pixels from.
+	 */
+	public EraseAnnotation(int size, boolean round, BufferedImage base) {
+		super(null, Math.max(1, size));
+		this.round = round;
+		this.source = base;
+		baseWidth = base.getWidth();
+		baseHeight = base.getHeight();
+
+		// Reading the data elements copies the ints as they are, without taking the data buffer away from the
+		// image, which would stop Java2D from caching the base image in video memory.
+		int type = base.getType();
+		if (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB) {
+			packed = base.getRaster();
+			baseAlpha = type == BufferedImage.TYPE_INT_ARGB;
+		} else {
+			packed = null;
+			baseAlpha = true;
+		}
+		rowBuffer = new int[baseWidth];
+
+		maskStart = new int[this.size];
+		maskEnd = new int[this.size];
+		double r = this.size / 2.0;
+		for (int i = 0; i < this.size; i++) {
+			if (round) {
+				double dy = i + 0.5 - r;
+				double half = Math.sqrt(Math.max(0, r * r - dy * dy));
+				maskStart[i] = (int) Math.ceil(r - half - 0.5);
+				maskEnd[i] = (int) Math.floor(r + half - 0.5);
+			} else {
+				maskStart[i] = 0;
+				maskEnd[i] = this.size - 1;
+			}
+		}
+
+		tilesX = (baseWidth + TILE_SIZE - 1) / TILE_SIZE;
+		tiles = new BufferedImage[tilesX * ((baseHeight + TILE_SIZE - 1) / TILE_SIZE)];
+	}
+
+	@Override
+	public Rectangle add(int x, int y) {
+		if (points == 0) {
+			stamp(x, y, 0, 0, false);
+		} else {
+			// Stamp the brush at every pixel along the line, so consecutive stamps differ by at most one pixel on
+			// each axis.
+			int px = xs[points - 1] - offsetX, py = ys[points - 1] - offsetY;
+			int dx = x - offsetX - px, dy = y - offsetY - py;
+			int steps = Math.max(Math.abs(dx), Math.abs(dy));
+			int lastX = px, lastY = py;
+			for (int i = 1; i <= steps; i++) {
+				int sx = px + Math.round((float) dx * i / steps), sy = py + Math.round((float) dy * i / steps);
+				stamp(sx, sy, lastX, lastY, true);
+				lastX = sx;
+				lastY = sy;
+			}
+		}
+		return super.add(x, y);
+	}
+
+	/**
+	 * Copy the pixels under the brush centered at the given point. If there was a previous stamp, the pixels it
+	 * already copied are skipped.
+	 */
+	private void stamp(int cx, int cy, int prevX, int prevY, boolean hasPrev) {
+		int half = size / 2;
+		int left = cx - half, top = cy - half, prevLeft = prevX - half, prevTop = prevY - half;
+		for (int i = 0; i < size; i++) {
+			int y = top + i;
+			if (y < 0 || y >= baseHeight || maskStart[i] > maskEnd[i]) {
+				continue;
+			}
+			int x0 = left + maskStart[i], x1 = left + maskEnd[i];
+			int j = y - prevTop;
+			if (hasPrev && j >= 0 && j < size && maskStart[j] <= maskEnd[j]) {
+				// Only copy the parts of the row that aren't covered by the previous stamp.
+				int px0 = prevLeft + maskStart[j], px1 = prevLeft + maskEnd[j];
+				copyRow(y, x0, Math.min(x1, px0 - 1));
+				copyRow(y, Math.max(x0, px1 + 1), x1);
+			} else {
+				copyRow(y, x0, x1);
+			}
+		}
+	}
+
+	/**
+	 * Copy the pixels between the given columns (inclusive) on the given row of the base image into the tiles.
+	 */
+	private void copyRow(int y, int x0, int x1) {
+		x0 = Math.max(x0, 0);
+		x1 = Math.min(x1, baseWidth - 1);
+		if (x0 > x1) {
+			return;
+		}
+		int[] src = rowBuffer;
+		int srcIndex = 0;
+		if (packed != null) {
+			packed.getDataElements(x0, y, x1 - x0 + 1, 1, src);
+		} else {
+			source.getRGB(x0, y, x1 - x0 + 1, 1, src, 0, baseWidth);
+		}
+		int ty = y / TILE_SIZE, tileRow = (y % TILE_SIZE) * TILE_SIZE;
+		while (x0 <= x1) {
+			int tx = x0 / TILE_SIZE;
+			int end = Math.min(x1, tx * TILE_SIZE + TILE_SIZE - 1);
+			int[] tile = getTile(tx, ty);
+			int dst = tileRow + x0 % TILE_SIZE;
+			int len = end - x0 + 1;
+			if (baseAlpha) {
+				System.arraycopy(src, srcIndex, tile, dst, len);
+			} else {
+				for (int k = 0; k < len; k++) {
+					tile[dst + k] = src[srcIndex + k] | 0xFF000000;
+				}
+			}
+			srcIndex += len;
+			x0 = end + 1;
+		}
+	}
+
+	private int[] getTile(int tx, int ty) {
+		int index = ty * tilesX + tx;
+		if (tiles[index] == null) {
+			tiles[index] = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+			tileCount++;
+		}
+		return ((DataBufferInt) tiles[index].getRaster().getDataBuffer()).getData();
+	}
+
+	@Override
+	public void finish() {
+		super.finish();
+		// Only the tiles are needed for drawing, so don't keep the base image alive in the undo history.
+		source = null;
+		packed = null;
+		rowBuffer = null;
+	}
+
+	@Override
+	public long getMemorySize() {
+		long size = super.getMemorySize() + 8L * tiles.length + tileCount * TILE_MEMORY_SIZE;
+		if (rowBuffer != null) {
+			size += 4L * rowBuffer.length;
+		}
+		return size;
+	}
+
+	@Override
+	public void paint(Graphics2D g, BufferedImage base) {
+		Rectangle clip = g.getClipBounds();
+		if (clip == null) {
+			clip = getBounds();
+		}
+		// Only draw the tiles that are visible.
+		int minX = Math.max(0, Math.floorDiv(clip.x - offsetX, TILE_SIZE));
+		int minY = Math.max(0, Math.floorDiv(clip.y - offsetY, TILE_SIZE));
+		int maxX = Math.min(tilesX - 1, Math.floorDiv(clip.x + clip.width - 1 - offsetX, TILE_SIZE));
+		int maxY = Math.min(tiles.length / tilesX - 1, Math.floorDiv(clip.y + clip.height - 1 - offsetY, TILE_SIZE));
+		for (int ty = minY; ty <= maxY; ty++) {
+			for (int tx = minX; tx <= maxX; tx++) {
+				BufferedImage tile = tiles[ty * tilesX + tx];
+				if (tile != null) {
+					g.drawImage(tile, tx * TILE_SIZE + offsetX, ty * TILE_SIZE + offsetY, null);
+				}
+			}
+		}
+	}
+
+	@Override
+	protected int getPadding() {
+		// The brush is centered on the point, but even sizes extend one pixel further up and left.
+		return size / 2 + 1;
+	}
+
+	/**
+	 * Get whether or not this stroke uses a round brush.
+	 */
+	public boolean isRound() {
+		return round;
+	}
+
+	@Override
+	public boolean isSelectable() {
+		return false;
+	}
+
+	@Override
+	public void translate(int dx, int dy) {
+		super.translate(dx, dy);
+		offsetX += dx;
+		offsetY += dy;
+	}
+}
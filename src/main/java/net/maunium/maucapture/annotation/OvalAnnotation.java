@@ -0,0 +1,22 @@
+package net.maunium.maucapture.annotation;
+
+import java.awt.Color;
+import java.awt.Shape;
+import java.awt.geom.Ellipse2D;
+
+/**
+ * A circle or an ellipse.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class OvalAnnotation extends BoxAnnotation {
+	public OvalAnnotation(Color color, int size, boolean fill, int x1, int y1, int x2, int y2) {
+		super(color, size, fill, x1, y1, x2, y2);
+	}
+
+	@Override
+	protected Shape getShape() {
+		return new Ellipse2D.Float(x, y, width, height);
+	}
+}
@@ -0,0 +1,130 @@
+package net.maunium.maucapture.annotation;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.util.Arrays;
+
+/**
+ * An annotation that follows the path of the mouse.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public abstract class PathAnnotation extends Annotation {
+	protected int[] xs = new int[32], ys = new int[32];
+	protected int points = 0;
+	private Path2D path;
+
+	protected PathAnnotation(Color color, int size) {
+		super(color, size, false);
+	}
+
+	/**
+	 * Add a point to the end of the path. This must not be called while the annotation is in a scene.
+	 *
+	 * @return The area that the new segment covers.
+	 */
+	public Rectangle add(int x, int y) {
+		if (points == xs.length) {
+			xs = Arrays.copyOf(xs, points * 2);
+			ys = Arrays.copyOf(ys, points * 2);
+		}
+		xs[points] = x;
+		ys[points] = y;
+		points++;
+		int prev = Math.max(0, points - 2);
+		Rectangle segment = lineBounds(xs[prev], ys[prev], x, y, getPadding());
+		// Grow the cached bounds instead of recomputing them from every point.
+		Rectangle bounds = getBounds();
+		invalidate();
+		setBounds(points == 1 ? segment : bounds.union(segment));
+		return segment;
+	}
+
+	/**
+	 * Called when the path is complete, before it's added to a scene. No points may be added after this.
+	 */
+	public void finish() {
+		xs = Arrays.copyOf(xs, Math.max(1, points));
+		ys = Arrays.copyOf(ys, Math.max(1, points));
+	}
+
+	@Override
+	public long getMemorySize() {
+		// The coordinate arrays, and the cached path with two doubles and a segment type for each point.
+		return super.getMemorySize() + 8L * xs.length + 17L * points;
+	}
+
+	/**
+	 * Get how far the drawn path may extend past the points.
+	 */
+	protected int getPadding() {
+		return size / 2 + 2;
+	}
+
+	/**
+	 * Get the path through all the points.
+	 */
+	protected Path2D getPath() {
+		if (path == null) {
+			path = new Path2D.Float(Path2D.WIND_NON_ZERO, points);
+			path.moveTo(xs[0], ys[0]);
+			for (int i = 1; i < points; i++) {
+				path.lineTo(xs[i], ys[i]);
+			}
+		}
+		return path;
+	}
+
+	public int getPointCount() {
+		return points;
+	}
+
+	@Override
+	protected Rectangle computeBounds() {
+		if (points == 0) {
+			return new Rectangle();
+		}
+		int minX = xs[0], maxX = xs[0], minY = ys[0], maxY = ys[0];
+		for (int i = 1; i < points; i++) {
+			minX = Math.min(minX, xs[i]);
+			maxX = Math.max(maxX, xs[i]);
+			minY = Math.min(minY, ys[i]);
+			maxY = Math.max(maxY, ys[i]);
+		}
+		return lineBounds(minX, minY, maxX, maxY, getPadding());
+	}
+
+	@Override
+	public boolean hit(int x, int y) {
+		if (!getBounds().contains(x, y)) {
+			return false;
+		}
+		double maxDist = size / 2.0 + 3;
+		maxDist *= maxDist;
+		for (int i = Math.min(1, points - 1); i < points; i++) {
+			int prev = Math.max(0, i - 1);
+			if (Line2D.ptSegDistSq(xs[prev], ys[prev], xs[i], ys[i], x, y) <= maxDist) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void translate(int dx, int dy) {
+		for (int i = 0; i < points; i++) {
+			xs[i] += dx;
+			ys[i] += dy;
+		}
+		invalidate();
+	}
+
+	@Override
+	protected void invalidate() {
+		super.invalidate();
+		path = null;
+	}
+}
@@ -0,0 +1,22 @@
+package net.maunium.maucapture.annotation;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.Shape;
+
+/**
+ * A rectangle.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class RectangleAnnotation extends BoxAnnotation {
+	public RectangleAnnotation(Color color, int size, boolean fill, int x1, int y1, int x2, int y2) {
+		super(color, size, fill, x1, y1, x2, y2);
+	}
+
+	@Override
+	protected Shape getShape() {
+		return new Rectangle(x, y, width, height);
+	}
+}
@@ -0,0 +1,374 @@
+package net.maunium.maucapture.annotation;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * A base image with annotations drawn on top of it. The base image is never modified; the annotations are only
+ * rasterized when painting a region of the scene or exporting the final image.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class Scene {
+	/**
+	 * The default maximum estimated size of the undo and redo history in bytes.
+	 */
+	public static final long DEFAULT_HISTORY_LIMIT = 64 * 1024 * 1024;
+	/**
+	 * The estimated size of an edit itself, not counting the annotation it keeps in memory.
+	 */
+	private static final long EDIT_SIZE = 64;
+	private static final Comparator<Annotation> drawOrder = Comparator.comparingLong(a -> a.order);
+
+	private BufferedImage base;
+	private SpatialIndex index;
+	/**
+	 * All annotations in the order they're drawn.
+	 */
+	private final List<Annotation> annotations = new ArrayList<>();
+	private final Set<Annotation> members = Collections.newSetFromMap(new IdentityHashMap<>());
+	private final List<Edit> undo = new ArrayList<>(), redo = new ArrayList<>();
+	private long historyLimit = DEFAULT_HISTORY_LIMIT;
+	private long nextOrder = 1;
+
+	public Scene(BufferedImage base) {
+		this.base = base;
+		this.index = new SpatialIndex(base.getWidth(), base.getHeight());
+	}
+
+	/**
+	 * Draw the given region of the scene.
+	 */
+	public void render(Graphics2D g, Rectangle region) {
+		region = region.intersection(getBounds());
+		if (region.isEmpty()) {
+			return;
+		}
+		g.drawImage(base, region.x, region.y, region.x + region.width, region.y + region.height,
+				region.x, region.y, region.x + region.width, region.y + region.height, null);
+		for (Annotation a : query(region)) {
+			a.paint(g, base);
+		}
+	}
+
+	/**
+	 * Draw the base image with all annotations into a new image.
+	 */
+	public BufferedImage export() {
+		int type;
+		switch (base.getType()) {
+		case BufferedImage.TYPE_INT_RGB:
+		case BufferedImage.TYPE_INT_ARGB:
+		case BufferedImage.TYPE_3BYTE_BGR:
+		case BufferedImage.TYPE_4BYTE_ABGR:
+			type = base.getType();
+			break;
+		default:
+			type = base.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+		}
+		BufferedImage out = new BufferedImage(base.getWidth(), base.getHeight(), type);
+		Graphics2D g = out.createGraphics();
+		prepareGraphics(g);
+		render(g, getBounds());
+		g.dispose();
+		return out;
+	}
+
+	/**
+	 * Set the rendering hints used when drawing annotations.
+	 */
+	public static void prepareGraphics(Graphics2D g) {
+		g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+	}
+
+	/**
+	 * Get the annotations whose bounds intersect the given area in drawing order.
+	 */
+	public List<Annotation> query(Rectangle area) {
+		List<Annotation> candidates = new ArrayList<>();
+		index.query(area, candidates);
+		candidates.sort(drawOrder);
+		List<Annotation> result = new ArrayList<>(candidates.size());
+		Annotation prev = null;
+		for (Annotation a : candidates) {
+			// Annotations spanning multiple cells are next to each other after sorting.
+			if (a != prev && a.getBounds().intersects(area)) {
+				result.add(a);
+			}
+			prev = a;
+		}
+		return result;
+	}
+
+	/**
+	 * Find the topmost selectable annotation at the given point.
+	 *
+	 * @return The annotation, or {@code null} if there is no selectable annotation at the point.
+	 */
+	public Annotation hitTest(int x, int y) {
+		List<Annotation> candidates = query(new Rectangle(x, y, 1, 1));
+		for (int i = candidates.size() - 1; i >= 0; i--) {
+			Annotation a = candidates.get(i);
+			if (a.isSelectable() && a.hit(x, y)) {
+				return a;
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Modifying
+	 */
+
+	/**
+	 * Add an annotation on top of the others.
+	 *
+	 * @return The area that changed.
+	 */
+	public Rectangle add(Annotation a) {
+		if (a.order == 0) {
+			a.order = nextOrder++;
+		}
+		record(new Edit(() -> removeAnnotation(a), () -> addAnnotation(a), a));
+		Rectangle changed = addAnnotation(a);
+		trimHistory();
+		return changed;
+	}
+
+	/**
+	 * Remove an annotation.
+	 *
+	 * @return The area that changed.
+	 */
+	public Rectangle remove(Annotation a) {
+		record(new Edit(() -> addAnnotation(a), () -> removeAnnotation(a), a));
+		Rectangle changed = removeAnnotation(a);
+		trimHistory();
+		return changed;
+	}
+
+	/**
+	 * Modify an annotation in a way that may change its bounds. The change is not added to the undo history.
+	 *
+	 * @return The area that changed.
+	 */
+	public Rectangle update(Annotation a, Runnable change) {
+		Rectangle before = a.getBounds();
+		index.remove(a, before);
+		change.run();
+		Rectangle after = a.getBounds();
+		index.insert(a, after);
+		return before.union(after);
+	}
+
+	/**
+	 * Add an already performed move to the undo history.
+	 */
+	public void moved(Annotation a, int dx, int dy) {
+		if (dx != 0 || dy != 0) {
+			record(new Edit(() -> update(a, () -> a.translate(-dx, -dy)), () -> update(a, () -> a.translate(dx, dy)),
+					null));
+			trimHistory();
+		}
+	}
+
+	/**
+	 * Change the style of an annotation.
+	 *
+	 * @return The area that changed.
+	 */
+	public Rectangle restyle(Annotation a, Color color, int size, boolean fill) {
+		Color oldColor = a.getColor();
+		int oldSize = a.getSize();
+		boolean oldFill = a.getFill();
+		record(new Edit(() -> update(a, () -> a.setStyle(oldColor, oldSize, oldFill)),
+				() -> update(a, () -> a.setStyle(color, size, fill)), null));
+		Rectangle changed = update(a, () -> a.setStyle(color, size, fill));
+		trimHistory();
+		return changed;
+	}
+
+	/**
+	 * Crop the scene to the given area. The annotations are moved so they stay in the same place on the image.
+	 */
+	public void crop(Rectangle area) {
+		BufferedImage oldBase = base;
+		BufferedImage newBase = base.getSubimage(area.x, area.y, area.width, area.height);
+		// The cropped base shares its pixels with the old one, so the edit doesn't keep another copy in memory.
+		record(new Edit(() -> setBase(oldBase, area.x, area.y), () -> setBase(newBase, -area.x, -area.y), null));
+		setBase(newBase, -area.x, -area.y);
+		trimHistory();
+	}
+
+	private Rectangle setBase(BufferedImage base, int dx, int dy) {
+		this.base = base;
+		index = new SpatialIndex(base.getWidth(), base.getHeight());
+		for (Annotation a : annotations) {
+			a.translate(dx, dy);
+			index.insert(a, a.getBounds());
+		}
+		return getBounds();
+	}
+
+	private Rectangle addAnnotation(Annotation a) {
+		int i = Collections.binarySearch(annotations, a, drawOrder);
+		annotations.add(i < 0 ? -i - 1 : i, a);
+		members.add(a);
+		index.insert(a, a.getBounds());
+		return a.getBounds();
+	}
+
+	private Rectangle removeAnnotation(Annotation a) {
+		annotations.remove(a);
+		members.remove(a);
+		index.remove(a, a.getBounds());
+		return a.getBounds();
+	}
+
+	/*
+	 * Undo and redo
+	 */
+
+	private void record(Edit edit) {
+		redo.clear();
+		undo.add(edit);
+	}
+
+	/**
+	 * Forget the oldest undo steps until the history fits in the limit. The newest step is always kept. Must be
+	 * called after the edit has been applied, since what the history keeps in memory depends on what is in the
+	 * scene.
+	 */
+	private void trimHistory() {
+		int drop = 0;
+		while (drop < undo.size() - 1 && getHistorySize(drop) > historyLimit) {
+			drop++;
+		}
+		undo.subList(0, drop).clear();
+	}
+
+	/**
+	 * Estimate the memory that only the history keeps alive, i.e. the edits themselves and the annotations they
+	 * refer to that aren't in the scene. Annotations in the scene cost nothing extra, since forgetting the edits
+	 * wouldn't free them.
+	 *
+	 * @param from The index of the oldest undo step to count.
+	 */
+	private long getHistorySize(int from) {
+		Set<Annotation> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+		long size = 0;
+		for (List<Edit> edits : Arrays.asList(undo.subList(from, undo.size()), redo)) {
+			for (Edit e : edits) {
+				size += EDIT_SIZE;
+				if (e.annotation != null && !members.contains(e.annotation) && counted.add(e.annotation)) {
+					size += e.annotation.getMemorySize();
+				}
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Set the maximum estimated size of the undo and redo history in bytes. When it's exceeded, the oldest undo
+	 * steps are forgotten.
+	 */
+	public void setHistoryLimit(long historyLimit) {
+		this.historyLimit = historyLimit;
+		trimHistory();
+	}
+
+	/**
+	 * Get the estimated size of the undo and redo history in bytes.
+	 */
+	public long getHistorySize() {
+		return getHistorySize(0);
+	}
+
+	/**
+	 * Undo the newest change.
+	 *
+	 * @return The area that changed, or {@code null} if there was nothing to undo.
+	 */
+	public Rectangle undo() {
+		if (undo.isEmpty()) {
+			return null;
+		}
+		Edit edit = undo.remove(undo.size() - 1);
+		redo.add(edit);
+		Rectangle changed = edit.undo.get();
+		trimHistory();
+		return changed;
+	}
+
+	/**
+	 * Redo the newest undone change.
+	 *
+	 * @return The area that changed, or {@code null} if there was nothing to redo.
+	 */
+	public Rectangle redo() {
+		if (redo.isEmpty()) {
+			return null;
+		}
+		Edit edit = redo.remove(redo.size() - 1);
+		undo.add(edit);
+		Rectangle changed = edit.redo.get();
+		trimHistory();
+		return changed;
+	}
+
+	/*
+	 * Getters
+	 */
+
+	public BufferedImage getBase() {
+		return base;
+	}
+
+	public int getWidth() {
+		return base.getWidth();
+	}
+
+	public int getHeight() {
+		return base.getHeight();
+	}
+
+	public Rectangle getBounds() {
+		return new Rectangle(0, 0, base.getWidth(), base.getHeight());
+	}
+
+	/**
+	 * Get all annotations in drawing order.
+	 */
+	public List<Annotation> getAnnotations() {
+		return Collections.unmodifiableList(annotations);
+	}
+
+	/**
+	 * A change that can be undone and redone. Both functions return the area that changed.
+	 */
+	private static class Edit {
+		private final Supplier<Rectangle> undo, redo;
+		/**
+		 * The annotation the edit adds or removes, which the history keeps in memory while it's not in the scene.
+		 */
+		private final Annotation annotation;
+
+		private Edit(Supplier<Rectangle> undo, Supplier<Rectangle> redo, Annotation annotation) {
+			this.undo = undo;
+			this.redo = redo;
+			this.annotation = annotation;
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package net.maunium.maucapture.annotation;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A uniform grid over the image that maps each cell to the annotations whose bounds overlap it, so finding the
+ * annotations in an area doesn't require going through all of them.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+class SpatialIndex {
+	/**
+	 * The width and height of a grid cell in pixels.
+	 */
+	static final int CELL_SIZE = 128;
+
+	private final int columns, rows;
+	private final List<Annotation>[] cells;
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	SpatialIndex(int width, int height) {
+		columns = Math.max(1, (width + CELL_SIZE - 1) / CELL_SIZE);
+		rows = Math.max(1, (height + CELL_SIZE - 1) / CELL_SIZE);
+		cells = new List[columns * rows];
+	}
+
+	/**
+	 * Add an annotation to every cell its bounds overlap. Parts outside the grid are put in the nearest edge
+	 * cells.
+	 */
+	void insert(Annotation a, Rectangle bounds) {
+		int minX = column(bounds.x), maxX = column(bounds.x + bounds.width - 1);
+		int minY = row(bounds.y), maxY = row(bounds.y + bounds.height - 1);
+		for (int y = minY; y <= maxY; y++) {
+			for (int x = minX; x <= maxX; x++) {
+				int i = y * columns + x;
+				if (cells[i] == null) {
+					cells[i] = new ArrayList<>(4);
+				}
+				cells[i].add(a);
+			}
+		}
+	}
+
+	/**
+	 * Remove an annotation. The bounds must be the same ones it was inserted with.
+	 */
+	void remove(Annotation a, Rectangle bounds) {
+		int minX = column(bounds.x), maxX = column(bounds.x + bounds.width - 1);
+		int minY = row(bounds.y), maxY = row(bounds.y + bounds.height - 1);
+		for (int y = minY; y <= maxY; y++) {
+			for (int x = minX; x <= maxX; x++) {
+				List<Annotation> cell = cells[y * columns + x];
+				if (cell != null) {
+					cell.remove(a);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Add all annotations whose cells overlap the given area to the given list. Annotations that span several cells
+	 * are added once per cell, so the caller must remove duplicates and check the exact bounds.
+	 */
+	void query(Rectangle area, List<Annotation> out) {
+		int minX = column(area.x), maxX = column(area.x + area.width - 1);
+		int minY = row(area.y), maxY = row(area.y + area.height - 1);
+		for (int y = minY; y <= maxY; y++) {
+			for (int x = minX; x <= maxX; x++) {
+				List<Annotation> cell = cells[y * columns + x];
+				if (cell != null) {
+					out.addAll(cell);
+				}
+			}
+		}
+	}
+
+	private int column(int x) {
+		return Math.max(0, Math.min(columns - 1, Math.floorDiv(x, CELL_SIZE)));
+	}
+
+	private int row(int y) {
+		return Math.max(0, Math.min(rows - 1, Math.floorDiv(y, CELL_SIZE)));
+	}
+}
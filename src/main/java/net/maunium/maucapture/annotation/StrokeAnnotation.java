@@ -0,0 +1,31 @@
+package net.maunium.maucapture.annotation;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * A freehand line.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class StrokeAnnotation extends PathAnnotation {
+	public StrokeAnnotation(Color color, int size) {
+		super(color, size);
+	}
+
+	@Override
+	public void paint(Graphics2D g, BufferedImage base) {
+		if (points == 0) {
+			return;
+		}
+		prepare(g);
+		if (points == 1) {
+			// A zero-length line is drawn as a dot.
+			g.drawLine(xs[0], ys[0], xs[0], ys[0]);
+		} else {
+			g.draw(getPath());
+		}
+	}
+}
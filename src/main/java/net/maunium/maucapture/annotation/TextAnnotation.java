@@ -0,0 +1,102 @@
+package net.maunium.maucapture.annotation;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * A line of text.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class TextAnnotation extends Annotation {
+	/**
+	 * The render context used for measuring text. This matches the text antialiasing used when painting.
+	 */
+	private static final FontRenderContext frc = new FontRenderContext(null, true, false);
+
+	private final StringBuilder text = new StringBuilder();
+	private Font font;
+	private int x, y;
+
+	/**
+	 * Create an empty text annotation.
+	 *
+	 * @param x The X coordinate of the start of the text.
+	 * @param y The Y coordinate of the baseline of the text.
+	 */
+	public TextAnnotation(Color color, int size, Font font, int x, int y) {
+		super(color, size, false);
+		this.font = font;
+		this.x = x;
+		this.y = y;
+	}
+
+	/**
+	 * Add a character to the end of the text. This must not be called directly while the annotation is in a scene,
+	 * use {@link Scene#update(Annotation, Runnable)} instead.
+	 */
+	public void append(char c) {
+		text.append(c);
+		invalidate();
+	}
+
+	public String getText() {
+		return text.toString();
+	}
+
+	public boolean isEmpty() {
+		return text.length() == 0;
+	}
+
+	public Font getFont() {
+		return font;
+	}
+
+	public void setFont(Font font) {
+		this.font = font;
+		invalidate();
+	}
+
+	@Override
+	public long getMemorySize() {
+		return super.getMemorySize() + 2L * text.capacity();
+	}
+
+	/**
+	 * Set the style of the text. The size is the point size of the font.
+	 */
+	@Override
+	public void setStyle(Color color, int size, boolean fill) {
+		font = font.deriveFont((float) size);
+		super.setStyle(color, size, fill);
+	}
+
+	@Override
+	public void paint(Graphics2D g, BufferedImage base) {
+		g.setColor(color);
+		g.setFont(font);
+		g.drawString(text.toString(), x, y);
+	}
+
+	@Override
+	protected Rectangle computeBounds() {
+		double width = font.getStringBounds(text.toString(), frc).getWidth();
+		Rectangle2D max = font.getMaxCharBounds(frc);
+		// Glyphs may overhang their advance slightly, so pad the bounds a bit.
+		return new Rectangle(x - 2, (int) Math.floor(y + max.getY()) - 2, (int) Math.ceil(width + max.getWidth()) + 4,
+				(int) Math.ceil(max.getHeight()) + 4);
+	}
+
+	@Override
+	public void translate(int dx, int dy) {
+		x += dx;
+		y += dy;
+		invalidate();
+	}
+}
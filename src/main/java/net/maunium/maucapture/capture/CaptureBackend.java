@@ -0,0 +1,37 @@
+package net.maunium.maucapture.capture;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * A way to let the user select a region of the screen and capture it.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public interface CaptureBackend {
+	/**
+	 * Get the name of this backend, as used in the {@code capture-backend} config option.
+	 */
+	String getName();
+
+	/**
+	 * Get whether or not this backend can be used on this system.
+	 */
+	boolean isAvailable();
+
+	/**
+	 * Let the user select a region and capture it.
+	 *
+	 * @return The captured image, or {@code null} if the user cancelled the capture.
+	 * @throws IOException If capturing failed.
+	 */
+	BufferedImage capture() throws IOException;
+
+	/**
+	 * Get how long the last capture took in milliseconds, not counting the time the user spent selecting the region.
+	 *
+	 * @return The time, or {@code -1} if the backend can't tell capturing and selecting apart.
+	 */
+	long getLastLatency();
+}
@@ -0,0 +1,109 @@
+package net.maunium.maucapture.capture;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.imageio.ImageIO;
+
+import net.maunium.maucapture.metrics.Metrics;
+import net.maunium.maucapture.metrics.Phase;
+import net.maunium.maucapture.util.ExposedByteArrayOutputStream;
+
+/**
+ * A backend that runs an external screenshot tool which writes the captured image to its standard output, so no
+ * temporary file is needed.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class CommandCaptureBackend implements CaptureBackend {
+	private final String name;
+	private final String[] executables, command;
+
+	/**
+	 * Create a command backend.
+	 *
+	 * @param name        The name of the backend.
+	 * @param executables The executables that must all be in the {@code PATH} for the backend to be available.
+	 * @param command     The command to run.
+	 */
+	public CommandCaptureBackend(String name, String[] executables, String... command) {
+		this.name = name;
+		this.executables = executables;
+		this.command = command;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public boolean isAvailable() {
+		for (String executable : executables) {
+			if (!isInPath(executable)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public BufferedImage capture() throws IOException {
+		Process p = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+		// Read the whole image before decoding, so decoding isn't timed while the user is still selecting the region.
+		ExposedByteArrayOutputStream data = new ExposedByteArrayOutputStream();
+		try (InputStream in = p.getInputStream()) {
+			byte[] buf = new byte[8192];
+			int n;
+			while ((n = in.read(buf)) != -1) {
+				data.write(buf, 0, n);
+			}
+		}
+		BufferedImage bi = null;
+		if (data.size() > 0) {
+			Metrics.Timer timer = Metrics.start(Phase.DECODE);
+			try {
+				bi = ImageIO.read(new ByteArrayInputStream(data.getBuffer(), 0, data.size()));
+			} finally {
+				timer.stop();
+			}
+		}
+		try {
+			// Tools exit with a non-zero status when the selection is cancelled.
+			if (p.waitFor() != 0) {
+				bi = null;
+			}
+		} catch (InterruptedException e) {
+			p.destroy();
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for " + name, e);
+		}
+		return bi;
+	}
+
+	@Override
+	public long getLastLatency() {
+		// The tool captures the screen while the user is selecting, so there's no way to time just the capture.
+		return -1;
+	}
+
+	/**
+	 * Check if the given executable can be found in the {@code PATH}.
+	 */
+	static boolean isInPath(String executable) {
+		String path = System.getenv("PATH");
+		if (path == null) {
+			return false;
+		}
+		for (String dir : path.split(File.pathSeparator)) {
+			if (new File(dir, executable).canExecute()) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,76 @@
+package net.maunium.maucapture.capture;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import net.maunium.maucapture.metrics.Metrics;
+import net.maunium.maucapture.metrics.Phase;
+
+/**
+ * A backend that runs an external screenshot tool which saves the captured image to a temporary file.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class FileCaptureBackend implements CaptureBackend {
+	private final String name, executable;
+	private final String[] command;
+	private final File file;
+
+	/**
+	 * Create a file backend.
+	 *
+	 * @param name       The name of the backend.
+	 * @param executable The executable that must be in the {@code PATH} for the backend to be available.
+	 * @param file       The file the tool saves the image to.
+	 * @param command    The command to run.
+	 */
+	public FileCaptureBackend(String name, String executable, File file, String... command) {
+		this.name = name;
+		this.executable = executable;
+		this.file = file;
+		this.command = command;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public boolean isAvailable() {
+		return CommandCaptureBackend.isInPath(executable);
+	}
+
+	@Override
+	public BufferedImage capture() throws IOException {
+		file.delete();
+		Process p = new ProcessBuilder(command).inheritIO().start();
+		try {
+			p.waitFor();
+		} catch (InterruptedException e) {
+			p.destroy();
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for " + executable, e);
+		}
+		if (!file.exists()) {
+			return null;
+		}
+		Metrics.Timer timer = Metrics.start(Phase.DECODE);
+		try {
+			return ImageIO.read(file);
+		} finally {
+			timer.stop();
+			file.delete();
+		}
+	}
+
+	@Override
+	public long getLastLatency() {
+		// The tool captures the screen while the user is selecting, so there's no way to time just the capture.
+		return -1;
+	}
+}
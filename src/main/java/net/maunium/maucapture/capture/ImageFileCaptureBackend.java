@@ -0,0 +1,57 @@
+package net.maunium.maucapture.capture;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import net.maunium.maucapture.metrics.Metrics;
+import net.maunium.maucapture.metrics.Phase;
+
+/**
+ * A backend that "captures" an existing image file without any user interaction. Used by the startup benchmark
+ * through the {@code maucapture.capture-file} system property.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class ImageFileCaptureBackend implements CaptureBackend {
+	private final File file;
+	private long lastLatency = 0;
+
+	public ImageFileCaptureBackend(File file) {
+		this.file = file;
+	}
+
+	@Override
+	public String getName() {
+		return "file";
+	}
+
+	@Override
+	public boolean isAvailable() {
+		return file.isFile();
+	}
+
+	@Override
+	public BufferedImage capture() throws IOException {
+		long st = System.currentTimeMillis();
+		Metrics.Timer timer = Metrics.start(Phase.DECODE);
+		try {
+			BufferedImage bi = ImageIO.read(file);
+			if (bi == null) {
+				throw new IOException("Unsupported image file " + file);
+			}
+			return bi;
+		} finally {
+			timer.stop();
+			lastLatency = System.currentTimeMillis() - st;
+		}
+	}
+
+	@Override
+	public long getLastLatency() {
+		return lastLatency;
+	}
+}
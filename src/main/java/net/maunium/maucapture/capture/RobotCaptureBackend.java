@@ -0,0 +1,128 @@
+package net.maunium.maucapture.capture;
+
+import java.awt.AWTException;
+import java.awt.GraphicsDevice;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+import java.awt.Robot;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
+
+import net.maunium.maucapture.swing.JSelectableImage;
+
+/**
+ * A backend that captures the screen in-process with {@link Robot} and lets the user select the region on a
+ * full-screen overlay showing the captured image.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class RobotCaptureBackend implements CaptureBackend {
+	private long lastLatency = 0;
+
+	@Override
+	public String getName() {
+		return "robot";
+	}
+
+	@Override
+	public boolean isAvailable() {
+		// Wayland compositors don't let X11 clients read the screen.
+		return !GraphicsEnvironment.isHeadless() && !"wayland".equalsIgnoreCase(System.getenv("XDG_SESSION_TYPE"));
+	}
+
+	@Override
+	public BufferedImage capture() throws IOException {
+		Rectangle bounds = getScreenBounds();
+		long st = System.currentTimeMillis();
+		BufferedImage screen;
+		try {
+			screen = new Robot().createScreenCapture(bounds);
+		} catch (AWTException | SecurityException e) {
+			throw new IOException("Failed to capture screen", e);
+		}
+		lastLatency = System.currentTimeMillis() - st;
+		return select(screen, bounds);
+	}
+
+	/**
+	 * Get the area covered by all screens. It doesn't necessarily contain the origin, e.g. if the only screen to the
+	 * left of the primary one is captured.
+	 */
+	static Rectangle getScreenBounds() {
+		Rectangle bounds = null;
+		for (GraphicsDevice gd : GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices()) {
+			Rectangle screen = gd.getDefaultConfiguration().getBounds();
+			bounds = bounds == null ? screen : bounds.union(screen);
+		}
+		return bounds;
+	}
+
+	/**
+	 * Show the captured screen on top of everything and wait for the user to select a region.
+	 */
+	private BufferedImage select(BufferedImage screen, Rectangle bounds) throws IOException {
+		CompletableFuture<BufferedImage> result = new CompletableFuture<>();
+		try {
+			SwingUtilities.invokeAndWait(() -> {
+				JFrame overlay = new JFrame("mauCapture");
+				overlay.setUndecorated(true);
+				overlay.setAlwaysOnTop(true);
+				overlay.setBounds(bounds);
+				JSelectableImage si = new JSelectableImage(screen);
+				si.setSize(bounds.width, bounds.height);
+				si.addMouseListener(new MouseAdapter() {
+					@Override
+					public void mouseReleased(MouseEvent e) {
+						if (si.getSelectWidth() > 0 && si.getSelectHeight() > 0) {
+							result.complete(copy(screen.getSubimage(si.xMin, si.yMin, si.getSelectWidth(), si.getSelectHeight())));
+						}
+					}
+				});
+				overlay.addKeyListener(new KeyAdapter() {
+					@Override
+					public void keyPressed(KeyEvent e) {
+						if (e.getKeyCode() == KeyEvent.VK_ESCAPE) {
+							result.complete(null);
+						}
+					}
+				});
+				result.whenComplete((bi, t) -> SwingUtilities.invokeLater(overlay::dispose));
+				overlay.add(si);
+				overlay.setVisible(true);
+				overlay.requestFocus();
+			});
+			return result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			result.complete(null);
+			throw new IOException("Interrupted while waiting for selection", e);
+		} catch (InvocationTargetException | ExecutionException e) {
+			throw new IOException("Failed to show selection overlay", e.getCause());
+		}
+	}
+
+	/**
+	 * Copy the selected region into a new image, so the capture of the whole desktop isn't kept in memory with it.
+	 */
+	private static BufferedImage copy(BufferedImage region) {
+		BufferedImage copy = new BufferedImage(region.getWidth(), region.getHeight(), region.getType());
+		region.copyData(copy.getRaster());
+		return copy;
+	}
+
+	@Override
+	public long getLastLatency() {
+		return lastLatency;
+	}
+}
@@ -0,0 +1,98 @@
+package net.maunium.maucapture.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of durations. Values are counted in logarithmic buckets with four buckets per power of two
+ * microseconds, so percentiles are accurate to within about 20%, while the mean and maximum are exact.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class Histogram implements HistogramMXBean {
+	private static final int SUB_BUCKETS = 4, MAX_EXPONENT = 40;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(1 + SUB_BUCKETS * (MAX_EXPONENT + 1));
+	private final AtomicLong count = new AtomicLong(), sum = new AtomicLong(), max = new AtomicLong();
+
+	/**
+	 * Add a duration to the histogram.
+	 */
+	public void record(long nanos) {
+		long micros = Math.max(0, nanos / 1000);
+		buckets.incrementAndGet(bucket(micros));
+		count.incrementAndGet();
+		sum.addAndGet(micros);
+		long prev;
+		while (micros > (prev = max.get()) && !max.compareAndSet(prev, micros)) {
+		}
+	}
+
+	private static int bucket(long micros) {
+		if (micros < 1) {
+			return 0;
+		}
+		int exp = Math.min(63 - Long.numberOfLeadingZeros(micros), MAX_EXPONENT);
+		// The two bits after the highest one bit pick the sub-bucket.
+		int sub = (int) ((exp >= 2 ? micros >> (exp - 2) : micros << (2 - exp)) & (SUB_BUCKETS - 1));
+		return 1 + exp * SUB_BUCKETS + sub;
+	}
+
+	private static double upperBound(int bucket) {
+		if (bucket == 0) {
+			return 1;
+		}
+		int exp = (bucket - 1) / SUB_BUCKETS, sub = (bucket - 1) % SUB_BUCKETS;
+		return (double) (SUB_BUCKETS + sub + 1) * (1L << exp) / SUB_BUCKETS;
+	}
+
+	/**
+	 * Get the duration that the given fraction of the recorded durations are shorter than, in milliseconds.
+	 */
+	public double getPercentileMillis(double fraction) {
+		long total = count.get();
+		if (total == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(fraction * total)), seen = 0;
+		for (int i = 0; i < buckets.length(); i++) {
+			seen += buckets.get(i);
+			if (seen >= target) {
+				return Math.min(upperBound(i), max.get()) / 1000;
+			}
+		}
+		return max.get() / 1000.0;
+	}
+
+	@Override
+	public long getCount() {
+		return count.get();
+	}
+
+	@Override
+	public double getMeanMillis() {
+		long n = count.get();
+		return n == 0 ? 0 : sum.get() / 1000.0 / n;
+	}
+
+	@Override
+	public double getP50Millis() {
+		return getPercentileMillis(0.5);
+	}
+
+	@Override
+	public double getP95Millis() {
+		return getPercentileMillis(0.95);
+	}
+
+	@Override
+	public double getP99Millis() {
+		return getPercentileMillis(0.99);
+	}
+
+	@Override
+	public double getMaxMillis() {
+		return max.get() / 1000.0;
+	}
+}
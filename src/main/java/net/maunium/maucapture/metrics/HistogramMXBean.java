@@ -0,0 +1,21 @@
+package net.maunium.maucapture.metrics;
+
+/**
+ * The statistics of one {@link Phase} as exposed over JMX.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public interface HistogramMXBean {
+	long getCount();
+
+	double getMeanMillis();
+
+	double getP50Millis();
+
+	double getP95Millis();
+
+	double getP99Millis();
+
+	double getMaxMillis();
+}
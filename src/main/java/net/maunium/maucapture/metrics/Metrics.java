@@ -0,0 +1,144 @@
+package net.maunium.maucapture.metrics;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+
+/**
+ * Records how long each {@link Phase} takes in histograms. Each recorded duration is also emitted as a Flight
+ * Recorder event when the JVM supports it, the histograms can be exposed over JMX, and they can be dumped to a JSON
+ * file.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class Metrics {
+	private static final Map<Phase, Histogram> histograms = new EnumMap<>(Phase.class);
+	private static final boolean jfr = isFlightRecorderAvailable();
+
+	static {
+		for (Phase phase : Phase.values()) {
+			histograms.put(phase, new Histogram());
+		}
+	}
+
+	private static boolean isFlightRecorderAvailable() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			return true;
+		} catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+
+	/**
+	 * A running measurement of one phase. Stopping it records the time since it was started.
+	 */
+	public static class Timer {
+		private final Phase phase;
+		private final long start = System.nanoTime();
+		private final Object event;
+		private boolean closed = false;
+
+		private Timer(Phase phase) {
+			this.phase = phase;
+			this.event = jfr ? PhaseEvent.start() : null;
+		}
+
+		/**
+		 * Record the time since the timer was started. Only the first call has any effect.
+		 */
+		public void stop() {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			long nanos = System.nanoTime() - start;
+			histograms.get(phase).record(nanos);
+			if (jfr) {
+				PhaseEvent.finish(event, phase, nanos);
+			}
+		}
+	}
+
+	/**
+	 * Start timing a phase. Stop the timer in a {@code finally} block.
+	 */
+	public static Timer start(Phase phase) {
+		return new Timer(phase);
+	}
+
+	/**
+	 * Record a duration that was measured elsewhere.
+	 */
+	public static void record(Phase phase, long nanos) {
+		histograms.get(phase).record(nanos);
+		if (jfr) {
+			PhaseEvent.finish(null, phase, nanos);
+		}
+	}
+
+	public static Histogram get(Phase phase) {
+		return histograms.get(phase);
+	}
+
+	/**
+	 * Register the histograms in the platform MBean server as {@code net.maunium.maucapture:type=Metrics,phase=<id>}.
+	 */
+	public static void registerMBeans() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (Map.Entry<Phase, Histogram> entry : histograms.entrySet()) {
+			try {
+				ObjectName name = new ObjectName("net.maunium.maucapture:type=Metrics,phase=" + entry.getKey().getId());
+				if (!server.isRegistered(name)) {
+					server.registerMBean(entry.getValue(), name);
+				}
+			} catch (JMException e) {
+				System.err.println("Failed to register metrics MBean for " + entry.getKey().getId() + ":");
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Get the statistics of all phases that have been recorded at least once.
+	 */
+	public static JsonObject toJson() {
+		JsonObject json = new JsonObject();
+		for (Map.Entry<Phase, Histogram> entry : histograms.entrySet()) {
+			Histogram h = entry.getValue();
+			if (h.getCount() == 0) {
+				continue;
+			}
+			JsonObject stats = new JsonObject();
+			stats.addProperty("count", h.getCount());
+			stats.addProperty("mean-ms", h.getMeanMillis());
+			stats.addProperty("p50-ms", h.getP50Millis());
+			stats.addProperty("p95-ms", h.getP95Millis());
+			stats.addProperty("p99-ms", h.getP99Millis());
+			stats.addProperty("max-ms", h.getMaxMillis());
+			json.add(entry.getKey().getId(), stats);
+		}
+		return json;
+	}
+
+	/**
+	 * Write the statistics of all recorded phases to the given file as JSON.
+	 */
+	public static void dump(File file) throws IOException {
+		try (Writer writer = new FileWriter(file)) {
+			new GsonBuilder().setPrettyPrinting().create().toJson(toJson(), writer);
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package net.maunium.maucapture.metrics;
+
+/**
+ * The phases of getting from a capture to a link that are timed by {@link Metrics}.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public enum Phase {
+	/**
+	 * Capturing the screen, not counting the time the user spends selecting the region. Only recorded for backends
+	 * that can tell the two apart.
+	 */
+	CAPTURE("capture"),
+	/**
+	 * Decoding an image captured by an external tool or opened from a file.
+	 */
+	DECODE("decode"),
+	/**
+	 * Opening an image in the editor until the frame is shown.
+	 */
+	EDITOR_OPEN("editor-open"),
+	/**
+	 * Waiting for an image to be encoded before uploading it, including waiting for a background encode of the same
+	 * image to finish. Saving, copying and speculative encodes aren't counted, and neither are encodes that overlap
+	 * with sending.
+	 */
+	ENCODE("encode"),
+	/**
+	 * Opening a connection to a server, including the TLS handshake.
+	 */
+	CONNECT("connect"),
+	/**
+	 * Sending a request to a server. When the image is encoded while it's being sent, this includes encoding.
+	 */
+	TRANSFER("transfer"),
+	/**
+	 * Waiting for the response of a server after the request was sent.
+	 */
+	RESPONSE("server-response"),
+	/**
+	 * Putting a link or an image on the clipboard.
+	 */
+	CLIPBOARD("clipboard"),
+	/**
+	 * The whole upload, from pressing the upload button to the link being on the clipboard.
+	 */
+	TIME_TO_LINK("time-to-link");
+
+	private final String id;
+
+	Phase(String id) {
+		this.id = id;
+	}
+
+	/**
+	 * Get the name of the phase as used in metric dumps, JMX and Flight Recorder events.
+	 */
+	public String getId() {
+		return id;
+	}
+}
@@ -0,0 +1,45 @@
+package net.maunium.maucapture.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The Flight Recorder event for one timed {@link Phase}. Only loaded by {@link Metrics} when the JVM supports Flight
+ * Recorder.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+@Name("net.maunium.maucapture.Phase")
+@Label("mauCapture Phase")
+@Category("mauCapture")
+@Description("One phase of capturing, editing or uploading an image")
+@StackTrace(false)
+class PhaseEvent extends Event {
+	@Label("Phase")
+	String phase;
+	@Label("Measured Time")
+	@Description("The time counted in the metrics, which may exclude waiting for the user")
+	@Timespan(Timespan.NANOSECONDS)
+	long measured;
+
+	static Object start() {
+		PhaseEvent event = new PhaseEvent();
+		event.begin();
+		return event;
+	}
+
+	static void finish(Object e, Phase phase, long nanos) {
+		PhaseEvent event = e != null ? (PhaseEvent) e : new PhaseEvent();
+		if (event.shouldCommit()) {
+			event.phase = phase.getId();
+			event.measured = nanos;
+			event.commit();
+		}
+	}
+}
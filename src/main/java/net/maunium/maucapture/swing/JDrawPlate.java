@@ -1,36 +1,114 @@
 package net.maunium.maucapture.swing;
 
+import java.awt.AlphaComposite;
 import java.awt.BasicStroke;
 import java.awt.Color;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.ComponentListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
-import java.awt.geom.AffineTransform;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
 import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 import javax.swing.JComponent;
+import javax.swing.JViewport;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import net.maunium.maucapture.annotation.Annotation;
+import net.maunium.maucapture.annotation.ArrowAnnotation;
+import net.maunium.maucapture.annotation.EraseAnnotation;
+import net.maunium.maucapture.annotation.OvalAnnotation;
+import net.maunium.maucapture.annotation.PathAnnotation;
+import net.maunium.maucapture.annotation.RectangleAnnotation;
+import net.maunium.maucapture.annotation.Scene;
+import net.maunium.maucapture.annotation.StrokeAnnotation;
+import net.maunium.maucapture.annotation.TextAnnotation;
 
 /**
- * JDrawPlate is an image viewer with basic editing capabilities.
+ * JDrawPlate is an image viewer with basic editing capabilities. Everything drawn is kept as an annotation on top of
+ * the unmodified image, so it can be selected, moved, restyled and deleted later.
  *
  * @author tulir
  * @since 2.0.0
  */
-public class JDrawPlate extends JComponent implements MouseListener, MouseMotionListener {
+public class JDrawPlate extends JComponent implements MouseListener, MouseMotionListener, MouseWheelListener {
 	private static final long serialVersionUID = 1L;
-	private BufferedImage bi, original;
+	private static final int MAX_DIRTY_AREAS = 8;
+	public static final double MIN_ZOOM = 0.25, MAX_ZOOM = 8;
+	private static final double[] ZOOM_STEPS = {0.25, 1 / 3.0, 0.5, 2 / 3.0, 0.75, 1, 1.5, 2, 3, 4, 6, 8};
+	private static final BasicStroke selectionStroke =
+			new BasicStroke(1, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10, new float[]{4, 4}, 0);
+	private Scene scene;
+	private long historyLimit = Scene.DEFAULT_HISTORY_LIMIT;
 
 	private Color color;
 	private int size;
-	private boolean fill = false;
+	private boolean fill = false, roundEraser = false;
 
 	private DrawMode drawMode = DrawMode.FREE;
 
-	private Point clickStart, clickEnd;
+	private Point clickStart;
+	/**
+	 * The annotation that is currently being drawn and not yet part of the scene.
+	 */
+	private Annotation current;
+	/**
+	 * The text annotation that typed characters are added to.
+	 */
+	private TextAnnotation text;
+	/**
+	 * The annotation selected in {@link DrawMode#SELECT} mode.
+	 */
+	private Annotation selected;
+	private int movedX, movedY;
+	/**
+	 * A copy of the rendered scene in video memory, and the areas of it that are out of date.
+	 */
+	private VolatileImage buffer;
+	private final List<Rectangle> dirty = new ArrayList<>();
+	/**
+	 * Downscaled copies of the scene used when zoomed out.
+	 */
+	private MipmapPyramid pyramid;
+	/**
+	 * A number that changes every time the scene is modified, and the exported image of that revision.
+	 */
+	private long revision = 0;
+	private BufferedImage exported;
+	private long exportedRevision = -1;
+
+	private double zoom = 1;
+	/**
+	 * Whether or not the zoom level follows the size of the viewport.
+	 */
+	private boolean fit = false;
+	private final ComponentListener viewportListener = new ComponentAdapter() {
+		@Override
+		public void componentResized(ComponentEvent e) {
+			if (fit && scene != null) {
+				zoomAround(getFitZoom(), null);
+			}
+		}
+	};
 
 	/*
 	 * Constructing
@@ -49,13 +127,12 @@ public class JDrawPlate extends JComponent implements MouseListener, MouseMotion
 	}
 
 	public JDrawPlate(BufferedImage bi, Color drawColor, int drawSize) {
-		this.bi = bi;
-		// The original image used for erasing changes.
-		original = deepCopy(bi);
+		setImage(bi);
 		color = drawColor;
 		size = drawSize;
 		addMouseListener(this);
 		addMouseMotionListener(this);
+		addMouseWheelListener(this);
 	}
 
 	/*
@@ -64,186 +141,580 @@ public class JDrawPlate extends JComponent implements MouseListener, MouseMotion
 
 	@Override
 	public void paintComponent(Graphics g) {
-		if (bi != null) {
-			// Draw the image itself.
-			g.drawImage(bi, 0, 0, bi.getWidth(), bi.getHeight(), null);
-		} else {
+		if (scene == null) {
 			// Image is null, draw a white background.
 			g.setColor(Color.WHITE);
 			g.fillRect(0, 0, getWidth(), getHeight());
+			return;
+		}
+		Graphics2D g2 = (Graphics2D) g.create();
+		Rectangle clip = g.getClipBounds();
+		if (clip == null) {
+			clip = new Rectangle(0, 0, getWidth(), getHeight());
+		}
+		if (zoom <= 0.5) {
+			// Far zoomed out, so scale down the prebuilt smaller copies instead of the full image.
+			pyramid.paint(g2, zoom, clip);
+		} else {
+			Rectangle area = toImage(clip);
+			if (zoom != 1) {
+				// Enlarged pixels should stay sharp, but slightly shrunk images look better smoothed.
+				g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, zoom < 1
+						? RenderingHints.VALUE_INTERPOLATION_BILINEAR
+						: RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+			}
+			if (!area.isEmpty() && !paintBuffer(g2, area)) {
+				// The back buffer isn't available, so only rasterize the part of the scene that needs to be repainted.
+				Graphics2D gs = (Graphics2D) g2.create();
+				gs.scale(zoom, zoom);
+				Scene.prepareGraphics(gs);
+				scene.render(gs, area);
+				gs.dispose();
+			}
+		}
+
+		if (current != null) {
+			Graphics2D gs = (Graphics2D) g2.create();
+			gs.scale(zoom, zoom);
+			Scene.prepareGraphics(gs);
+			current.paint(gs, scene.getBase());
+			gs.dispose();
+		}
+		if (selected != null) {
+			// The outline is drawn in screen pixels, so it looks the same at every zoom level.
+			Rectangle b = toView(selected.getBounds());
+			g2.setStroke(selectionStroke);
+			g2.setColor(Color.GRAY);
+			g2.drawRect(b.x, b.y, b.width - 1, b.height - 1);
+		}
+		g2.dispose();
+	}
+
+	/**
+	 * Copy the given area of the scene from the back buffer to the matching zoomed area, after bringing the changed
+	 * parts of the back buffer up to date.
+	 *
+	 * @return Whether or not the area was painted. If not, the caller must render the scene directly.
+	 */
+	private boolean paintBuffer(Graphics2D g, Rectangle area) {
+		GraphicsConfiguration gc = getGraphicsConfiguration();
+		if (gc == null) {
+			return false;
+		}
+		int width = scene.getWidth(), height = scene.getHeight();
+		try {
+			do {
+				if (buffer == null || buffer.getWidth() != width || buffer.getHeight() != height) {
+					createBuffer(gc, width, height);
+				}
+				if (buffer == null) {
+					return false;
+				}
+				int status = buffer.validate(gc);
+				if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+					createBuffer(gc, width, height);
+				} else if (status == VolatileImage.IMAGE_RESTORED) {
+					// The contents were lost, e.g. because the screen mode changed.
+					dirty.clear();
+					dirty.add(scene.getBounds());
+				}
+				refreshBuffer();
+				g.drawImage(buffer, (int) Math.round(area.x * zoom), (int) Math.round(area.y * zoom),
+						(int) Math.round((area.x + area.width) * zoom), (int) Math.round((area.y + area.height) * zoom),
+						area.x, area.y, area.x + area.width, area.y + area.height, null);
+			} while (buffer.contentsLost());
+		} catch (OutOfMemoryError e) {
+			// The image is too big for a back buffer.
+			releaseBuffer();
+			return false;
+		}
+		return true;
+	}
+
+	private void createBuffer(GraphicsConfiguration gc, int width, int height) {
+		releaseBuffer();
+		buffer = gc.createCompatibleVolatileImage(width, height, scene.getBase().getTransparency());
+		dirty.clear();
+		dirty.add(scene.getBounds());
+	}
+
+	private void releaseBuffer() {
+		if (buffer != null) {
+			buffer.flush();
+			buffer = null;
+		}
+	}
+
+	/**
+	 * Render the changed areas of the scene into the back buffer.
+	 */
+	private void refreshBuffer() {
+		if (dirty.isEmpty()) {
+			return;
+		}
+		Graphics2D g = buffer.createGraphics();
+		for (Rectangle area : dirty) {
+			g.setClip(area);
+			if (buffer.getTransparency() != Transparency.OPAQUE) {
+				g.setComposite(AlphaComposite.Clear);
+				g.fill(area);
+				g.setComposite(AlphaComposite.SrcOver);
+			}
+			Scene.prepareGraphics(g);
+			scene.render(g, area);
+		}
+		g.dispose();
+		dirty.clear();
+	}
+
+	/**
+	 * Mark an area of the scene as changed and repaint it.
+	 */
+	private void damage(Rectangle area) {
+		revision++;
+		fireStateChanged();
+		area = area.intersection(scene.getBounds());
+		if (area.isEmpty()) {
+			return;
 		}
+		// Merge overlapping areas, and everything if there are too many separate areas.
+		for (Iterator<Rectangle> it = dirty.iterator(); it.hasNext(); ) {
+			Rectangle r = it.next();
+			if (r.intersects(area)) {
+				area = area.union(r);
+				it.remove();
+			}
+		}
+		if (dirty.size() >= MAX_DIRTY_AREAS) {
+			for (Rectangle r : dirty) {
+				area = area.union(r);
+			}
+			dirty.clear();
+		}
+		dirty.add(area);
+		pyramid.invalidate(area);
+		repaint(toView(area));
+	}
 
-		// Draw preview of circles/squares/arrows
-		if (clickStart == null || clickEnd == null) { return; }
-		Graphics2D g2 = (Graphics2D) g;
-		prepareGraphics(g2);
+	/**
+	 * Mark the whole scene as changed and repaint everything.
+	 */
+	private void damageAll() {
+		revision++;
+		fireStateChanged();
+		dirty.clear();
+		if (scene != null) {
+			dirty.add(scene.getBounds());
+			pyramid = new MipmapPyramid(scene);
+		} else {
+			releaseBuffer();
+			pyramid = null;
+			exported = null;
+		}
+		repaint();
+	}
+
+	/**
+	 * Create the circle/square/arrow between the click start and the given point.
+	 */
+	private Annotation createShape(int x, int y) {
 		switch (drawMode) {
 		case CIRCLE:
-			drawCircle(g);
-			break;
+			return new OvalAnnotation(color, size, fill, clickStart.x, clickStart.y, x, y);
 		case SQUARE:
-			drawRect(g);
-			break;
+			return new RectangleAnnotation(color, size, fill, clickStart.x, clickStart.y, x, y);
 		case ARROW:
-			drawArrow(g2);
+			return new ArrowAnnotation(color, size, clickStart.x, clickStart.y, x, y);
 		default:
-			break;
+			return null;
 		}
 	}
 
 	/**
-	 * This handles mouse dragging/clicking for free drawing and erasing.
-	 *
-	 * @param x The X coordinate of the mouse.
-	 * @param y The Y coordinate of the mouse.
+	 * Replace the annotation that is being drawn and repaint the area of both the old and new one.
+	 */
+	private void setCurrent(Annotation a) {
+		Rectangle damage = current != null ? current.getBounds() : null;
+		if (a != null) {
+			damage = damage != null ? damage.union(a.getBounds()) : a.getBounds();
+		}
+		current = a;
+		if (damage != null) {
+			repaint(toView(damage));
+		}
+	}
+
+	/**
+	 * Change the selected annotation.
+	 */
+	private void select(Annotation a) {
+		if (selected != null) {
+			repaint(toView(selected.getBounds()));
+		}
+		selected = a;
+		if (selected != null) {
+			repaint(toView(selected.getBounds()));
+		}
+	}
+
+	/**
+	 * Stop adding typed characters to the previous text annotation.
+	 */
+	private void endText() {
+		text = null;
+	}
+
+	public void writeChar(char c) {
+		if (drawMode != DrawMode.TEXT || Character.isISOControl(c) || text == null) { return; }
+
+		if (text.isEmpty()) {
+			// Everything typed after one click is a single annotation.
+			text.append(c);
+			damage(scene.add(text));
+		} else {
+			damage(scene.update(text, () -> text.append(c)));
+		}
+	}
+
+	/*
+	 * Key and mouse handlers
 	 */
-	public void mouse(int x, int y) {
-		Graphics2D g = bi.createGraphics();
-		prepareGraphics(g);
+
+	@Override
+	public void mousePressed(MouseEvent e) {
+		if (scene == null) {
+			return;
+		}
+		int x = toImage(e.getX()), y = toImage(e.getY());
 		switch (drawMode) {
 		case FREE:
-			if (clickStart != null) {
-				g.drawLine(clickStart.x, clickStart.y, x, y);
-			} else {
-				clickStart = new Point(x, y);
-				g.drawLine(clickStart.x, clickStart.y, x, y);
-			}
+			current = new StrokeAnnotation(color, size);
+			repaint(toView(((PathAnnotation) current).add(x, y)));
+			break;
+		case ERASE:
+			current = new EraseAnnotation(size, roundEraser, scene.getBase());
+			repaint(toView(((PathAnnotation) current).add(x, y)));
+			break;
+		case SELECT:
+			select(scene.hitTest(x, y));
 			clickStart = new Point(x, y);
+			movedX = movedY = 0;
 			break;
+		case TEXT:
+			text = new TextAnnotation(color, size, getTextFont(), x, y);
+			break;
+		default:
+			clickStart = new Point(x, y);
+		}
+	}
+
+	@Override
+	public void mouseDragged(MouseEvent e) {
+		if (scene == null) {
+			return;
+		}
+		int x = toImage(e.getX()), y = toImage(e.getY());
+		switch (drawMode) {
+		case FREE:
 		case ERASE:
-			x -= size / 2.0;
-			y -= size / 2.0;
-			g.setPaintMode();
-			BufferedImage sub = null;
-
-			int width = size;
-			int height = size;
-
-			if (x < 0) {
-				width += x;
-				x = 0;
-			} else if (x + size > bi.getWidth()) {
-				width = bi.getWidth() - x;
-				x = bi.getWidth() - width;
+			if (current != null) {
+				repaint(toView(((PathAnnotation) current).add(x, y)));
 			}
-			if (y < 0) {
-				height += y;
-				y = 0;
-			} else if (y + size > bi.getHeight()) {
-				height = bi.getHeight() - y;
-				y = bi.getHeight() - height;
-			}
-			if (width < 1 || height < 1 || width > bi.getWidth() - 1 || height > bi.getHeight() - 1) { return; }
-			if (original != null) {
-				sub = original.getSubimage(x, y, width, height);
-				g.drawImage(sub, x, y, new Color(255, 255, 255, 255), null);
-			} else {
-				g.setColor(new Color(0, 0, 0, 0));
-				g.fillRect(x, y, width, height);
+			break;
+		case SELECT:
+			if (selected != null && clickStart != null) {
+				int dx = x - clickStart.x, dy = y - clickStart.y;
+				damage(scene.update(selected, () -> selected.translate(dx, dy)));
+				movedX += dx;
+				movedY += dy;
+				clickStart = new Point(x, y);
 			}
 			break;
+		case TEXT:
+			break;
 		default:
+			if (clickStart != null) {
+				setCurrent(createShape(x, y));
+			}
+		}
+	}
+
+	@Override
+	public void mouseReleased(MouseEvent e) {
+		if (scene == null) {
+			return;
+		}
+		int x = toImage(e.getX()), y = toImage(e.getY());
+		switch (drawMode) {
+		case SELECT:
+			if (selected != null) {
+				scene.moved(selected, movedX, movedY);
+			}
 			break;
+		case TEXT:
+			return;
+		case ARROW:
+		case CIRCLE:
+		case SQUARE:
+			if (clickStart != null) {
+				setCurrent(createShape(x, y));
+			}
+		default:
+			if (current != null) {
+				if (current instanceof PathAnnotation) {
+					((PathAnnotation) current).finish();
+				}
+				// The annotation looks the same in the back buffer as it did as a preview.
+				damage(scene.add(current));
+				current = null;
+			}
+		}
+		clickStart = null;
+	}
+
+	/*
+	 * Editing
+	 */
+
+	/**
+	 * Undo the last edit.
+	 */
+	public void undo() {
+		if (scene != null) {
+			afterHistoryChange(scene.undo());
 		}
-		this.repaint();
 	}
 
-	private void drawCircle(Graphics g) {
-		int xs = Math.min(clickStart.x, clickEnd.x);
-		int width = Math.max(clickStart.x, clickEnd.x) - xs;
-		int ys = Math.min(clickStart.y, clickEnd.y);
-		int height = Math.max(clickStart.y, clickEnd.y) - ys;
-		if (fill) { g.fillOval(xs, ys, width, height); } else { g.drawOval(xs, ys, width, height); }
+	/**
+	 * Redo the last undone edit.
+	 */
+	public void redo() {
+		if (scene != null) {
+			afterHistoryChange(scene.redo());
+		}
+	}
+
+	private void afterHistoryChange(Rectangle changed) {
+		if (changed == null) {
+			return;
+		}
+		endText();
+		select(null);
+		if (!getPreferredSize().equals(getZoomedSize())) {
+			// The undone or redone edit was a crop.
+			updateSize();
+		} else {
+			damage(changed);
+		}
 	}
 
-	private void drawRect(Graphics g) {
-		int xs = Math.min(clickStart.x, clickEnd.x);
-		int width = Math.max(clickStart.x, clickEnd.x) - xs;
-		int ys = Math.min(clickStart.y, clickEnd.y);
-		int height = Math.max(clickStart.y, clickEnd.y) - ys;
-		if (fill) { g.fillRect(xs, ys, width, height); } else { g.drawRect(xs, ys, width, height); }
+	/**
+	 * Delete the selected annotation.
+	 *
+	 * @return Whether or not there was a selected annotation.
+	 */
+	public boolean deleteSelection() {
+		if (selected == null) {
+			return false;
+		}
+		damage(scene.remove(selected));
+		selected = null;
+		return true;
 	}
 
-	private void drawArrow(Graphics2D g) {
-		g.drawLine(clickStart.x, clickStart.y, clickEnd.x, clickEnd.y);
+	/**
+	 * Crop the image to the given area. Annotations stay editable.
+	 */
+	public void crop(Rectangle area) {
+		if (scene == null) {
+			return;
+		}
+		endText();
+		select(null);
+		scene.crop(area);
+		updateSize();
+	}
 
-		int dx = clickEnd.x - clickStart.x, dy = clickEnd.y - clickStart.y;
-		double angle = Math.atan2(dy, dx);
-		int len = (int) Math.sqrt(dx * dx + dy * dy) + size;
-		AffineTransform at = AffineTransform.getTranslateInstance(clickStart.x, clickStart.y);
-		at.concatenate(AffineTransform.getRotateInstance(angle));
-		g.transform(at);
-		g.fillPolygon(new int[]{len, len - 2 * size, len - 2 * size, len}, new int[]{0, -2 * size, 2 * size, 0}, 4);
+	private void updateSize() {
+		if (fit) {
+			zoom = getFitZoom();
+		}
+		Dimension size = getZoomedSize();
+		setPreferredSize(size);
+		setSize(size);
+		revalidate();
+		damageAll();
 	}
 
-	private static BufferedImage deepCopy(BufferedImage bi) {
-		if (bi == null) { return null; }
-		BufferedImage b = new BufferedImage(bi.getWidth(), bi.getHeight(), BufferedImage.TYPE_INT_ARGB);
-		Graphics g = b.getGraphics();
-		g.drawImage(bi, 0, 0, null);
-		g.dispose();
-		return b;
+	/*
+	 * Zooming
+	 */
+
+	/**
+	 * Set the zoom level. This turns off fitting the image to the window.
+	 */
+	public void setZoom(double zoom) {
+		fit = false;
+		zoomAround(zoom, null);
 	}
 
-	public void writeChar(char c) {
-		if (drawMode != DrawMode.TEXT || Character.isISOControl(c) || clickStart == null) { return; }
+	/**
+	 * Zoom in to the next zoom step.
+	 */
+	public void zoomIn() {
+		setZoom(nextZoomStep(true));
+	}
 
-		String draw = Character.toString(c);
-		Graphics2D g = (Graphics2D) bi.getGraphics();
-		prepareGraphics(g);
-		g.drawString(draw, clickStart.x, clickStart.y);
-		clickStart.setLocation(clickStart.x + g.getFontMetrics().stringWidth(draw), clickStart.y);
+	/**
+	 * Zoom out to the previous zoom step.
+	 */
+	public void zoomOut() {
+		setZoom(nextZoomStep(false));
+	}
+
+	/**
+	 * Zoom so the whole image fits in the scroll pane, and keep it fitted when the scroll pane is resized.
+	 */
+	public void zoomToFit() {
+		fit = true;
+		zoomAround(getFitZoom(), null);
+	}
+
+	public double getZoom() {
+		return zoom;
+	}
+
+	public boolean isZoomFit() {
+		return fit;
+	}
+
+	private double nextZoomStep(boolean in) {
+		if (in) {
+			for (double step : ZOOM_STEPS) {
+				if (step > zoom + 0.001) {
+					return step;
+				}
+			}
+			return MAX_ZOOM;
+		}
+		for (int i = ZOOM_STEPS.length - 1; i >= 0; i--) {
+			if (ZOOM_STEPS[i] < zoom - 0.001) {
+				return ZOOM_STEPS[i];
+			}
+		}
+		return MIN_ZOOM;
+	}
+
+	/**
+	 * Get the zoom level at which the whole image fits in the viewport, without enlarging it past 100%.
+	 */
+	private double getFitZoom() {
+		Container parent = getParent();
+		if (scene == null || !(parent instanceof JViewport)) {
+			return 1;
+		}
+		Dimension extent = ((JViewport) parent).getExtentSize();
+		if (extent.width <= 0 || extent.height <= 0) {
+			return zoom;
+		}
+		return Math.min(1, Math.min((double) extent.width / scene.getWidth(), (double) extent.height / scene.getHeight()));
+	}
+
+	/**
+	 * Change the zoom level while keeping the image point under the given point of this component in place.
+	 *
+	 * @param anchor The point to keep in place, or {@code null} to use the center of the viewport.
+	 */
+	private void zoomAround(double newZoom, Point anchor) {
+		if (!fit) {
+			newZoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, newZoom));
+		}
+		if (scene == null || newZoom == zoom) {
+			zoom = newZoom;
+			return;
+		}
+		Container parent = getParent();
+		JViewport viewport = parent instanceof JViewport ? (JViewport) parent : null;
+		Point view = viewport != null ? viewport.getViewPosition() : new Point();
+		if (anchor == null) {
+			Rectangle visible = getVisibleRect();
+			anchor = new Point(visible.x + visible.width / 2, visible.y + visible.height / 2);
+		}
+		double imageX = anchor.x / zoom, imageY = anchor.y / zoom;
+		zoom = newZoom;
+		Dimension size = getZoomedSize();
+		setPreferredSize(size);
+		setSize(size);
+		if (viewport != null) {
+			Dimension extent = viewport.getExtentSize();
+			int x = (int) Math.round(imageX * zoom) - (anchor.x - view.x);
+			int y = (int) Math.round(imageY * zoom) - (anchor.y - view.y);
+			viewport.setViewPosition(new Point(Math.max(0, Math.min(x, size.width - extent.width)),
+					Math.max(0, Math.min(y, size.height - extent.height))));
+		}
+		revalidate();
 		repaint();
 	}
 
-	/*
-	 * Key and mouse handlers
+	private Dimension getZoomedSize() {
+		return new Dimension((int) Math.ceil(scene.getWidth() * zoom), (int) Math.ceil(scene.getHeight() * zoom));
+	}
+
+	/**
+	 * Convert a coordinate of this component to an image coordinate.
 	 */
+	private int toImage(int coordinate) {
+		return (int) Math.floor(coordinate / zoom);
+	}
 
-	@Override
-	public void mousePressed(MouseEvent e) {
-		if (drawMode == DrawMode.FREE || drawMode == DrawMode.ERASE) {
-			mouse(e.getX(), e.getY());
-		} else {
-			clickStart = new Point(e.getX(), e.getY());
+	/**
+	 * Get the area of the image that is visible in the given area of this component.
+	 */
+	private Rectangle toImage(Rectangle r) {
+		int x0 = (int) Math.floor(r.x / zoom), y0 = (int) Math.floor(r.y / zoom);
+		int x1 = (int) Math.ceil((r.x + r.width) / zoom), y1 = (int) Math.ceil((r.y + r.height) / zoom);
+		return new Rectangle(x0, y0, x1 - x0, y1 - y0).intersection(scene.getBounds());
+	}
+
+	/**
+	 * Get the area of this component that shows the given area of the image, including pixels partially affected by
+	 * smoothing.
+	 */
+	private Rectangle toView(Rectangle r) {
+		if (zoom == 1) {
+			return r;
 		}
+		int x0 = (int) Math.floor(r.x * zoom) - 1, y0 = (int) Math.floor(r.y * zoom) - 1;
+		int x1 = (int) Math.ceil((r.x + r.width) * zoom) + 1, y1 = (int) Math.ceil((r.y + r.height) * zoom) + 1;
+		return new Rectangle(x0, y0, x1 - x0, y1 - y0);
 	}
 
 	@Override
-	public void mouseDragged(MouseEvent e) {
-		if (drawMode == DrawMode.FREE || drawMode == DrawMode.ERASE) {
-			mouse(e.getX(), e.getY());
-		} else if (drawMode != DrawMode.TEXT) {
-			clickEnd = new Point(e.getX(), e.getY());
-			repaint();
+	public void mouseWheelMoved(MouseWheelEvent e) {
+		if (e.isControlDown() && scene != null) {
+			fit = false;
+			double steps = e.getPreciseWheelRotation();
+			zoomAround(zoom * Math.pow(1.1, -steps), e.getPoint());
+		} else if (getParent() != null) {
+			// Let the scroll pane handle normal scrolling.
+			getParent().dispatchEvent(SwingUtilities.convertMouseEvent(this, e, getParent()));
 		}
 	}
 
 	@Override
-	public void mouseReleased(MouseEvent e) {
-		if (drawMode == DrawMode.ARROW || drawMode == DrawMode.CIRCLE || drawMode == DrawMode.SQUARE) {
-			clickEnd = new Point(e.getX(), e.getY());
-			Graphics2D g = bi.createGraphics();
-			prepareGraphics(g);
-
-			switch (drawMode) {
-			case CIRCLE:
-				drawCircle(g);
-				break;
-			case SQUARE:
-				drawRect(g);
-				break;
-			case ARROW:
-				drawArrow(g);
-			default:
-				break;
-			}
+	public void addNotify() {
+		super.addNotify();
+		if (getParent() instanceof JViewport) {
+			getParent().addComponentListener(viewportListener);
 		}
-		if (drawMode != DrawMode.TEXT) {
-			clickStart = null;
+	}
+
+	@Override
+	public void removeNotify() {
+		if (getParent() != null) {
+			getParent().removeComponentListener(viewportListener);
 		}
-		clickEnd = null;
-		repaint();
+		super.removeNotify();
 	}
 
 	/*
@@ -251,31 +722,93 @@ public class JDrawPlate extends JComponent implements MouseListener, MouseMotion
 	 */
 
 	/**
-	 * Get the visible image.
+	 * Check whether or not there is an image open.
+	 */
+	public boolean hasImage() {
+		return scene != null;
+	}
+
+	/**
+	 * Draw the image with all annotations into an image. The image is reused until the scene changes, so it must not
+	 * be modified.
+	 *
+	 * @return The image, or {@code null} if there is no image open.
+	 */
+	public BufferedImage export() {
+		if (scene == null) {
+			return null;
+		} else if (exportedRevision != revision) {
+			exported = scene.export();
+			exportedRevision = revision;
+		}
+		return exported;
+	}
+
+	/**
+	 * Add a listener that is called every time the scene is modified.
+	 *
+	 * @see #getRevision()
+	 */
+	public void addChangeListener(ChangeListener l) {
+		listenerList.add(ChangeListener.class, l);
+	}
+
+	public void removeChangeListener(ChangeListener l) {
+		listenerList.remove(ChangeListener.class, l);
+	}
+
+	private void fireStateChanged() {
+		ChangeEvent event = new ChangeEvent(this);
+		for (ChangeListener l : listenerList.getListeners(ChangeListener.class)) {
+			l.stateChanged(event);
+		}
+	}
+
+	/**
+	 * Get the revision of the scene. The revision changes whenever the image or its annotations are modified, so
+	 * together with a format it identifies an encoded image.
+	 *
+	 * @see net.maunium.maucapture.util.EncodeCache
 	 */
-	public BufferedImage getImage() {
-		return bi;
+	public long getRevision() {
+		return revision;
 	}
 
 	/**
-	 * Get the image used as background when erasing.
+	 * Get the scene containing the unmodified image and the annotations.
 	 */
-	public BufferedImage getBackgroundImage() {
-		return original;
+	public Scene getScene() {
+		return scene;
 	}
 
 	/**
-	 * Set the visible image.
+	 * Set the maximum estimated memory use of the undo history in bytes. The oldest steps are forgotten when it's
+	 * exceeded.
 	 */
-	public void setForegroundImage(BufferedImage bi) {
-		this.bi = bi;
+	public void setUndoMemoryLimit(long historyLimit) {
+		this.historyLimit = historyLimit;
+		if (scene != null) {
+			scene.setHistoryLimit(historyLimit);
+		}
 	}
 
 	/**
-	 * Set the image used as background when erasing.
+	 * Set the image to annotate. This removes all annotations and clears the undo history.
 	 */
-	public void setBackgroundImage(BufferedImage bi) {
-		original = deepCopy(bi);
+	public void setImage(BufferedImage bi) {
+		scene = bi != null ? new Scene(bi) : null;
+		if (scene != null) {
+			scene.setHistoryLimit(historyLimit);
+		}
+		current = null;
+		selected = null;
+		clickStart = null;
+		endText();
+		if (scene != null) {
+			updateSize();
+		} else {
+			damageAll();
+		}
 	}
 
 	public Color getDrawColor() {
@@ -294,11 +827,6 @@ public class JDrawPlate extends JComponent implements MouseListener, MouseMotion
 		this.size = size;
 	}
 
-	public void setDrawMode(DrawMode dm) {
-		clickStart = null;
-		drawMode = dm;
-	}
-
 	public void setFill(boolean fill) {
 		this.fill = fill;
 	}
@@ -307,22 +835,51 @@ public class JDrawPlate extends JComponent implements MouseListener, MouseMotion
 		return fill;
 	}
 
+	/**
+	 * Set the color, size and fill used for drawing, and apply them to the selected annotation if there is one.
+	 */
+	public void setStyle(Color color, int size, boolean fill) {
+		this.color = color;
+		this.size = size;
+		this.fill = fill;
+		if (selected != null) {
+			damage(scene.restyle(selected, color, size, fill));
+			select(selected);
+		}
+	}
+
+	public boolean getRoundEraser() {
+		return roundEraser;
+	}
+
+	/**
+	 * Set whether the eraser uses a round brush instead of a square one.
+	 */
+	public void setRoundEraser(boolean roundEraser) {
+		this.roundEraser = roundEraser;
+	}
+
+	public void setDrawMode(DrawMode dm) {
+		endText();
+		select(null);
+		setCurrent(null);
+		clickStart = null;
+		drawMode = dm;
+	}
+
 	public DrawMode getDrawMode() {
 		return drawMode;
 	}
 
 	public static enum DrawMode {
-		FREE, ERASE, CIRCLE, SQUARE, ARROW, TEXT;
+		FREE, ERASE, CIRCLE, SQUARE, ARROW, TEXT, SELECT;
 	}
 
 	/**
-	 * Set the color, stroke, font and rendering hints for the given Graphics2D object.
+	 * Get the font used for new text.
 	 */
-	public void prepareGraphics(Graphics2D g) {
-		g.setColor(color);
-		g.setStroke(new BasicStroke(size, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-		g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
-		g.setFont(getFont().deriveFont(size));
+	private Font getTextFont() {
+		return getFont().deriveFont((float) size);
 	}
 
 	/*
@@ -1,7 +1,11 @@
 package net.maunium.maucapture.swing;
 
+import java.awt.BasicStroke;
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
@@ -19,6 +23,7 @@ public class JSelectableImage extends JComponent implements MouseListener, Mouse
 	private static final long serialVersionUID = 1L;
 
 	private BufferedImage bi;
+	private double zoom = 1;
 	private int clickX = 0, clickY = 0;
 	public int xMin = Integer.MIN_VALUE, yMin = Integer.MIN_VALUE, xMax = Integer.MIN_VALUE, yMax = Integer.MIN_VALUE;
 
@@ -33,19 +38,41 @@ public class JSelectableImage extends JComponent implements MouseListener, Mouse
 		addMouseMotionListener(this);
 	}
 
+	/**
+	 * Set the zoom level the image is shown at. The selection is always in image coordinates.
+	 */
+	public void setZoom(double zoom) {
+		this.zoom = zoom;
+		Dimension size = new Dimension((int) Math.ceil(bi.getWidth() * zoom), (int) Math.ceil(bi.getHeight() * zoom));
+		setPreferredSize(size);
+		setSize(size);
+		repaint();
+	}
+
 	@Override
 	public void paintComponent(Graphics g) {
-		g.drawImage(bi, 0, 0, bi.getWidth(), bi.getHeight(), null);
-		g.setColor(new Color(210, 210, 210, 150));
-		g.fillRect(0, 0, getWidth(), getHeight());
+		Graphics2D g2 = (Graphics2D) g.create();
+		if (zoom != 1) {
+			g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, zoom < 1
+					? RenderingHints.VALUE_INTERPOLATION_BILINEAR
+					: RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+			g2.scale(zoom, zoom);
+		}
+		g2.drawImage(bi, 0, 0, bi.getWidth(), bi.getHeight(), null);
+		g2.setColor(new Color(210, 210, 210, 150));
+		g2.fillRect(0, 0, bi.getWidth(), bi.getHeight());
 		if (xMin == Integer.MIN_VALUE || yMin == Integer.MIN_VALUE || xMax == Integer.MIN_VALUE || yMax == Integer.MIN_VALUE) {
+			g2.dispose();
 			return;
 		}
 		try {
-			g.drawImage(bi.getSubimage(xMin, yMin, getSelectWidth(), getSelectHeight()), xMin, yMin, getSelectWidth(), getSelectHeight(), null);
-			g.setColor(Color.RED);
-			g.drawRect(xMin, yMin, getSelectWidth(), getSelectHeight());
+			g2.drawImage(bi, xMin, yMin, xMax, yMax, xMin, yMin, xMax, yMax, null);
+			g2.setColor(Color.RED);
+			// Keep the outline one screen pixel wide.
+			g2.setStroke(new BasicStroke((float) (1 / zoom)));
+			g2.drawRect(xMin, yMin, getSelectWidth(), getSelectHeight());
 		} catch (Exception e) {}
+		g2.dispose();
 	}
 
 	public int getSelectWidth() {
@@ -58,16 +85,17 @@ public class JSelectableImage extends JComponent implements MouseListener, Mouse
 
 	@Override
 	public void mousePressed(MouseEvent e) {
-		clickX = e.getX();
-		clickY = e.getY();
+		clickX = (int) Math.floor(e.getX() / zoom);
+		clickY = (int) Math.floor(e.getY() / zoom);
 	}
 
 	@Override
 	public void mouseDragged(MouseEvent e) {
-		xMin = Math.max(0, Math.min(e.getX(), clickX));
-		xMax = Math.min(getWidth(), Math.max(e.getX(), clickX));
-		yMin = Math.max(0, Math.min(e.getY(), clickY));
-		yMax = Math.min(getHeight(), Math.max(e.getY(), clickY));
+		int x = (int) Math.floor(e.getX() / zoom), y = (int) Math.floor(e.getY() / zoom);
+		xMin = Math.max(0, Math.min(x, clickX));
+		xMax = Math.min(bi.getWidth(), Math.max(x, clickX));
+		yMin = Math.max(0, Math.min(y, clickY));
+		yMax = Math.min(bi.getHeight(), Math.max(y, clickY));
 		this.repaint();
 	}
 
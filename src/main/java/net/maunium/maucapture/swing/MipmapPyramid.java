@@ -0,0 +1,233 @@
+package net.maunium.maucapture.swing;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.BitSet;
+
+import net.maunium.maucapture.annotation.Scene;
+
+/**
+ * Downscaled copies of a rendered scene at half, quarter, etc. resolution, split into tiles. Tiles are built the first
+ * time they're painted and rebuilt after the area they cover changes, so painting a zoomed out view only costs
+ * scaling the visible tiles by at most a factor of two.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+class MipmapPyramid {
+	/**
+	 * The width and height of a tile in pixels of its own level.
+	 */
+	static final int TILE_SIZE = 256;
+
+	private final Scene scene;
+	private final int width, height;
+	private final boolean alpha;
+	/**
+	 * The levels from half resolution downwards. Level {@code k} is stored at index {@code k - 1}.
+	 */
+	private final Level[] levels;
+
+	// Buffers reused when building tiles.
+	private final BufferedImage scratch;
+	private final int[] scratchPixels, sourcePixels, tilePixels;
+
+	MipmapPyramid(Scene scene) {
+		this.scene = scene;
+		this.width = scene.getWidth();
+		this.height = scene.getHeight();
+		this.alpha = scene.getBase().getTransparency() != Transparency.OPAQUE;
+
+		int count = 1;
+		while (Math.max(width, height) >> count > TILE_SIZE) {
+			count++;
+		}
+		levels = new Level[count];
+		for (int i = 0; i < count; i++) {
+			levels[i] = new Level(i + 1);
+		}
+
+		scratch = new BufferedImage(TILE_SIZE * 2, TILE_SIZE * 2,
+				alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+		// The scratch image is never painted on screen, so it doesn't matter that taking its array stops acceleration.
+		scratchPixels = ((DataBufferInt) scratch.getRaster().getDataBuffer()).getData();
+		sourcePixels = new int[TILE_SIZE * 2 * TILE_SIZE * 2];
+		tilePixels = new int[TILE_SIZE * TILE_SIZE];
+	}
+
+	/**
+	 * Mark the tiles covering the given area of the full resolution scene as outdated.
+	 */
+	void invalidate(Rectangle area) {
+		for (Level level : levels) {
+			int span = TILE_SIZE << level.number;
+			int minX = Math.max(0, Math.floorDiv(area.x, span));
+			int minY = Math.max(0, Math.floorDiv(area.y, span));
+			int maxX = Math.min(level.tilesX - 1, Math.floorDiv(area.x + area.width - 1, span));
+			int maxY = Math.min(level.tilesY - 1, Math.floorDiv(area.y + area.height - 1, span));
+			for (int ty = minY; ty <= maxY; ty++) {
+				level.valid.clear(ty * level.tilesX + minX, ty * level.tilesX + maxX + 1);
+			}
+		}
+	}
+
+	/**
+	 * Get the number of the level that should be used for painting at the given zoom level.
+	 */
+	int levelFor(double zoom) {
+		int number = 0;
+		while (number < levels.length && zoom <= 1.0 / (2 << number)) {
+			number++;
+		}
+		return Math.max(1, number);
+	}
+
+	/**
+	 * Paint the given area at the given zoom level, which should be below one.
+	 *
+	 * @param clip The area to paint in zoomed coordinates.
+	 */
+	void paint(Graphics2D g, double zoom, Rectangle clip) {
+		Level level = levels[levelFor(zoom) - 1];
+		// The size of one pixel of the level on screen.
+		double scale = (1 << level.number) * zoom;
+		double tileSpan = TILE_SIZE * scale;
+		int minX = Math.max(0, (int) Math.floor(clip.x / tileSpan));
+		int minY = Math.max(0, (int) Math.floor(clip.y / tileSpan));
+		int maxX = Math.min(level.tilesX - 1, (int) Math.floor((clip.x + clip.width - 1) / tileSpan));
+		int maxY = Math.min(level.tilesY - 1, (int) Math.floor((clip.y + clip.height - 1) / tileSpan));
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		for (int ty = minY; ty <= maxY; ty++) {
+			for (int tx = minX; tx <= maxX; tx++) {
+				BufferedImage tile = getTile(level, tx, ty);
+				int x = tx * TILE_SIZE, y = ty * TILE_SIZE;
+				int w = level.tileWidth(tx), h = level.tileHeight(ty);
+				// Round both edges the same way, so neighboring tiles don't overlap or leave gaps.
+				g.drawImage(tile, (int) Math.round(x * scale), (int) Math.round(y * scale),
+						(int) Math.round((x + w) * scale), (int) Math.round((y + h) * scale), 0, 0, w, h, null);
+			}
+		}
+	}
+
+	/**
+	 * Get a tile, building it first if it's missing or outdated.
+	 */
+	private BufferedImage getTile(Level level, int tx, int ty) {
+		int index = ty * level.tilesX + tx;
+		if (level.tiles[index] != null && level.valid.get(index)) {
+			return level.tiles[index];
+		}
+		int w = level.tileWidth(tx), h = level.tileHeight(ty);
+		// The area of the level above that this tile is made from.
+		int srcWidth, srcHeight;
+		if (level.number == 1) {
+			Rectangle area = new Rectangle(tx * TILE_SIZE * 2, ty * TILE_SIZE * 2,
+					Math.min(TILE_SIZE * 2, width - tx * TILE_SIZE * 2),
+					Math.min(TILE_SIZE * 2, height - ty * TILE_SIZE * 2));
+			srcWidth = area.width;
+			srcHeight = area.height;
+			Graphics2D g = scratch.createGraphics();
+			if (alpha) {
+				g.setComposite(AlphaComposite.Clear);
+				g.fillRect(0, 0, srcWidth, srcHeight);
+				g.setComposite(AlphaComposite.SrcOver);
+			}
+			g.translate(-area.x, -area.y);
+			g.setClip(area);
+			Scene.prepareGraphics(g);
+			scene.render(g, area);
+			g.dispose();
+			downsample(scratchPixels, TILE_SIZE * 2, srcWidth, srcHeight, w, h);
+		} else {
+			Level above = levels[level.number - 2];
+			srcWidth = Math.min(TILE_SIZE * 2, above.width - tx * TILE_SIZE * 2);
+			srcHeight = Math.min(TILE_SIZE * 2, above.height - ty * TILE_SIZE * 2);
+			// Build the (up to) four tiles of the level above first, since building them reuses the source buffer.
+			BufferedImage[] children = new BufferedImage[4];
+			for (int qy = 0; qy < 2; qy++) {
+				for (int qx = 0; qx < 2; qx++) {
+					int ctx = tx * 2 + qx, cty = ty * 2 + qy;
+					if (ctx < above.tilesX && cty < above.tilesY) {
+						children[qy * 2 + qx] = getTile(above, ctx, cty);
+					}
+				}
+			}
+			// Then gather them into one buffer.
+			for (int qy = 0; qy < 2; qy++) {
+				for (int qx = 0; qx < 2; qx++) {
+					BufferedImage child = children[qy * 2 + qx];
+					if (child == null) {
+						continue;
+					}
+					int ctx = tx * 2 + qx, cty = ty * 2 + qy;
+					int cw = above.tileWidth(ctx), ch = above.tileHeight(cty);
+					child.getRaster().getDataElements(0, 0, cw, ch, tilePixels);
+					for (int row = 0; row < ch; row++) {
+						System.arraycopy(tilePixels, row * cw, sourcePixels,
+								(qy * TILE_SIZE + row) * TILE_SIZE * 2 + qx * TILE_SIZE, cw);
+					}
+				}
+			}
+			downsample(sourcePixels, TILE_SIZE * 2, srcWidth, srcHeight, w, h);
+		}
+		if (level.tiles[index] == null) {
+			level.tiles[index] = new BufferedImage(TILE_SIZE, TILE_SIZE,
+					alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+		}
+		// Setting the data elements copies the pixels without stopping the tile from being cached in video memory.
+		level.tiles[index].getRaster().setDataElements(0, 0, w, h, tilePixels);
+		level.valid.set(index);
+		return level.tiles[index];
+	}
+
+	/**
+	 * Average each 2x2 block of the source pixels into {@link #tilePixels}. At odd edges, the last row or column is
+	 * averaged with itself.
+	 */
+	private void downsample(int[] src, int stride, int srcWidth, int srcHeight, int width, int height) {
+		for (int y = 0; y < height; y++) {
+			int row0 = y * 2 * stride, row1 = Math.min(y * 2 + 1, srcHeight - 1) * stride;
+			for (int x = 0; x < width; x++) {
+				int x0 = x * 2, x1 = Math.min(x0 + 1, srcWidth - 1);
+				int p0 = src[row0 + x0], p1 = src[row0 + x1], p2 = src[row1 + x0], p3 = src[row1 + x1];
+				// Add the channels in pairs: 0x00FF00FF masks two channels with room for the carry.
+				int rb = (p0 & 0x00FF00FF) + (p1 & 0x00FF00FF) + (p2 & 0x00FF00FF) + (p3 & 0x00FF00FF);
+				int ag = ((p0 >>> 8) & 0x00FF00FF) + ((p1 >>> 8) & 0x00FF00FF) + ((p2 >>> 8) & 0x00FF00FF)
+						+ ((p3 >>> 8) & 0x00FF00FF);
+				tilePixels[y * width + x] = (((ag + 0x00020002) << 6) & 0xFF00FF00) | (((rb + 0x00020002) >>> 2) & 0x00FF00FF);
+			}
+		}
+	}
+
+	/**
+	 * One level of the pyramid.
+	 */
+	private class Level {
+		private final int number, width, height, tilesX, tilesY;
+		private final BufferedImage[] tiles;
+		private final BitSet valid = new BitSet();
+
+		private Level(int number) {
+			this.number = number;
+			int div = 1 << number;
+			width = Math.max(1, (MipmapPyramid.this.width + div - 1) / div);
+			height = Math.max(1, (MipmapPyramid.this.height + div - 1) / div);
+			tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+			tilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+			tiles = new BufferedImage[tilesX * tilesY];
+		}
+
+		private int tileWidth(int tx) {
+			return Math.min(TILE_SIZE, width - tx * TILE_SIZE);
+		}
+
+		private int tileHeight(int ty) {
+			return Math.min(TILE_SIZE, height - ty * TILE_SIZE);
+		}
+	}
+}
@@ -0,0 +1,208 @@
+package net.maunium.maucapture.uploaders;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+import org.apache.http.ssl.SSLContexts;
+
+import net.maunium.maucapture.MauCapture;
+import net.maunium.maucapture.metrics.Metrics;
+import net.maunium.maucapture.metrics.Phase;
+
+/**
+ * The application-wide pooled HTTP client shared by all uploaders.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class ConnectionPool {
+	/**
+	 * Maximum number of pooled connections in total and per host.
+	 */
+	private static final int MAX_TOTAL = 16, MAX_PER_ROUTE = 4;
+	/**
+	 * How long idle connections are kept alive if the server doesn't say otherwise.
+	 */
+	private static final long KEEP_ALIVE_MILLIS = 60 * 1000;
+	/**
+	 * Timeout for opening a connection when pre-warming.
+	 */
+	private static final int CONNECT_TIMEOUT_MILLIS = 10 * 1000;
+
+	private static PoolingHttpClientConnectionManager manager;
+	private static CloseableHttpClient client;
+
+	/**
+	 * Get the shared HTTP client, creating it if it doesn't exist yet.
+	 */
+	public static synchronized CloseableHttpClient getClient() {
+		if (client == null) {
+			// A single SSL context means TLS sessions are cached and resumed across connections.
+			SSLContext ssl = SSLContexts.createDefault();
+			ssl.getClientSessionContext().setSessionTimeout((int) TimeUnit.HOURS.toSeconds(1));
+			Registry<ConnectionSocketFactory> sockets = RegistryBuilder.<ConnectionSocketFactory> create()
+					.register("http", new PlainConnectionSocketFactory() {
+						@Override
+						public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress,
+								InetSocketAddress localAddress, HttpContext context) throws IOException {
+							Metrics.Timer timer = Metrics.start(Phase.CONNECT);
+							try {
+								return super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+							} finally {
+								timer.stop();
+							}
+						}
+					})
+					.register("https", new SSLConnectionSocketFactory(ssl) {
+						@Override
+						public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress,
+								InetSocketAddress localAddress, HttpContext context) throws IOException {
+							// This includes the TLS handshake.
+							Metrics.Timer timer = Metrics.start(Phase.CONNECT);
+							try {
+								return super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+							} finally {
+								timer.stop();
+							}
+						}
+					})
+					.build();
+
+			manager = new PoolingHttpClientConnectionManager(sockets);
+			manager.setMaxTotal(MAX_TOTAL);
+			manager.setDefaultMaxPerRoute(MAX_PER_ROUTE);
+			manager.setValidateAfterInactivity(2000);
+
+			client = HttpClientBuilder.create()
+					.setConnectionManager(manager)
+					.setKeepAliveStrategy(keepAlive)
+					.setRequestExecutor(requestExecutor)
+					.evictExpiredConnections()
+					.evictIdleConnections(KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS)
+					.setUserAgent("mauCapture/" + MauCapture.version)
+					.build();
+			Runtime.getRuntime().addShutdownHook(new Thread(ConnectionPool::close, "ConnectionPool shutdown"));
+		}
+		return client;
+	}
+
+	/**
+	 * Open a connection to the host of the given URL in the background, so that a later request can reuse the
+	 * already established (and TLS handshaked) socket. Invalid or empty URLs are ignored.
+	 */
+	public static void prewarm(String url) {
+		if (url == null || url.isEmpty()) {
+			return;
+		}
+		final HttpRoute route;
+		try {
+			URI uri = URI.create(url);
+			if (uri.getHost() == null) {
+				return;
+			}
+			boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+			HttpHost host = new HttpHost(uri.getHost(), uri.getPort() != -1 ? uri.getPort() : secure ? 443 : 80, uri.getScheme());
+			route = new HttpRoute(host, null, secure);
+		} catch (IllegalArgumentException e) {
+			return;
+		}
+		getClient();
+
+		Thread t = new Thread(() -> {
+			HttpClientConnection conn = null;
+			boolean reusable = false;
+			try {
+				ConnectionRequest req = manager.requestConnection(route, null);
+				conn = req.get(CONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+				if (!conn.isOpen()) {
+					HttpClientContext context = HttpClientContext.create();
+					manager.connect(conn, route, CONNECT_TIMEOUT_MILLIS, context);
+					manager.routeComplete(conn, route, context);
+				}
+				reusable = true;
+			} catch (Exception e) {
+				// Pre-warming is best-effort, the actual request will report any real errors.
+			} finally {
+				if (conn != null) {
+					manager.releaseConnection(conn, null, reusable ? KEEP_ALIVE_MILLIS : 0, TimeUnit.MILLISECONDS);
+				}
+			}
+		}, "ConnectionPool prewarm");
+		t.setDaemon(true);
+		t.start();
+	}
+
+	/**
+	 * Close the shared client and all pooled connections.
+	 */
+	public static synchronized void close() {
+		if (client != null) {
+			try {
+				client.close();
+			} catch (IOException ignored) {
+			}
+			client = null;
+			manager = null;
+		}
+	}
+
+	/**
+	 * Times sending requests and waiting for the responses separately.
+	 */
+	private static final HttpRequestExecutor requestExecutor = new HttpRequestExecutor() {
+		@Override
+		protected HttpResponse doSendRequest(HttpRequest request, HttpClientConnection conn, HttpContext context)
+				throws IOException, HttpException {
+			Metrics.Timer timer = Metrics.start(Phase.TRANSFER);
+			try {
+				return super.doSendRequest(request, conn, context);
+			} finally {
+				timer.stop();
+			}
+		}
+
+		@Override
+		protected HttpResponse doReceiveResponse(HttpRequest request, HttpClientConnection conn, HttpContext context)
+				throws IOException, HttpException {
+			Metrics.Timer timer = Metrics.start(Phase.RESPONSE);
+			try {
+				return super.doReceiveResponse(request, conn, context);
+			} finally {
+				timer.stop();
+			}
+		}
+	};
+
+	/**
+	 * Keep connections alive for as long as the server allows, but never longer than {@link #KEEP_ALIVE_MILLIS}.
+	 */
+	private static final ConnectionKeepAliveStrategy keepAlive = (response, context) -> {
+		long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+		return duration > 0 ? Math.min(duration, KEEP_ALIVE_MILLIS) : KEEP_ALIVE_MILLIS;
+	};
+}
@@ -0,0 +1,218 @@
+package net.maunium.maucapture.uploaders;
+
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Toolkit;
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.StringSelection;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JProgressBar;
+import javax.swing.JTextField;
+
+import net.maunium.maucapture.MauCapture;
+import net.maunium.maucapture.metrics.Metrics;
+import net.maunium.maucapture.metrics.Phase;
+import net.maunium.maucapture.util.EncodeCache;
+import net.maunium.maucapture.util.ImageSource;
+import net.maunium.maucapture.util.IoTask;
+
+/**
+ * Uploads one image to several destinations at once. The image is encoded once for each distinct format into a
+ * shared read-only buffer, and all uploads send from that buffer concurrently. Progress is shown in a single window,
+ * and the link of the primary destination is copied to the clipboard as soon as it's available.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class FanOut {
+	/**
+	 * The primary destination value that copies the link of whichever upload finishes first.
+	 */
+	public static final String FIRST = "first";
+
+	private final Map<String, Uploader> uploaders;
+	private final String primary;
+	private final Map<String, JProgressBar> bars = new HashMap<>();
+	private final Map<String, JTextField> addresses = new HashMap<>();
+	private final Map<String, String> urls = new LinkedHashMap<>();
+	private JDialog frame;
+	private JLabel status;
+	private long startTime;
+	private boolean copied = false, primaryFailed = false;
+	private int remaining;
+
+	private FanOut(Map<String, Uploader> uploaders, String primary) {
+		this.uploaders = uploaders;
+		this.primary = uploaders.containsKey(primary) ? primary : FIRST;
+		this.remaining = uploaders.size();
+	}
+
+	/**
+	 * Upload the given revision of an image to all the given destinations. Must be called on the event dispatch
+	 * thread.
+	 *
+	 * @param uploaders The uploaders by destination name in the order they should be shown. They must have been
+	 *                  created without a host window, since the progress is shown in the combined window.
+	 * @param primary   The name of the destination whose link should be copied, or {@link #FIRST}. If the primary
+	 *                  upload fails, the first successful link is copied instead.
+	 */
+	public static void upload(JFrame host, Map<String, Uploader> uploaders, String primary, BufferedImage image,
+							  long revision) {
+		if (uploaders.isEmpty()) {
+			return;
+		}
+		FanOut fanOut = new FanOut(uploaders, primary);
+		fanOut.show(host);
+		fanOut.start(image, revision);
+	}
+
+	private void show(JFrame host) {
+		frame = new JDialog(host, "mauCapture Uploader");
+		frame.setLayout(null);
+		frame.setResizable(false);
+		frame.setAlwaysOnTop(true);
+		frame.setFont(MauCapture.getLato());
+
+		int y = 5;
+		for (Map.Entry<String, Uploader> entry : uploaders.entrySet()) {
+			JLabel name = new JLabel(entry.getKey().equals("mis") ? "MIS"
+					: Character.toUpperCase(entry.getKey().charAt(0)) + entry.getKey().substring(1));
+			name.setSize(60, 40);
+			name.setLocation(5, y);
+			name.setFont(MauCapture.getLato().deriveFont(Font.BOLD));
+
+			JProgressBar p = new JProgressBar();
+			p.setStringPainted(true);
+			p.setString("Encoding...");
+			p.setIndeterminate(true);
+			p.setSize(380, 40);
+			p.setLocation(70, y);
+			p.setFont(MauCapture.getLato().deriveFont(Font.BOLD));
+			entry.getValue().progress.setProgressBar(p);
+			bars.put(entry.getKey(), p);
+
+			JTextField address = new JTextField("The image URL will appear here");
+			address.setEditable(false);
+			address.setSize(380, 25);
+			address.setLocation(70, y + 45);
+			address.setFont(MauCapture.getLato());
+			addresses.put(entry.getKey(), address);
+
+			frame.add(name);
+			frame.add(p);
+			frame.add(address);
+			y += 75;
+		}
+		status = new JLabel(primary.equals(FIRST) ? "The first link will be copied to your clipboard."
+				: "The " + primary + " link will be copied to your clipboard.");
+		status.setSize(445, 25);
+		status.setLocation(5, y);
+		status.setFont(MauCapture.getLato());
+		frame.add(status);
+
+		frame.getContentPane().setPreferredSize(new Dimension(455, y + 30));
+		frame.pack();
+		frame.setLocationRelativeTo(host);
+		frame.setVisible(true);
+	}
+
+	private void start(BufferedImage image, long revision) {
+		startTime = System.currentTimeMillis();
+		// Encode each format only once. The encoded buffers are never modified, so all uploads can share them.
+		IoTask.<Map<String, ImageSource>> submit(task -> {
+			Map<String, ImageSource> encoded = new HashMap<>();
+			Metrics.Timer timer = Metrics.start(Phase.ENCODE);
+			try {
+				for (Uploader u : uploaders.values()) {
+					if (!encoded.containsKey(u.getFormat())) {
+						encoded.put(u.getFormat(), EncodeCache.encode(image, revision, u.getFormat()));
+					}
+				}
+			} finally {
+				timer.stop();
+			}
+			return encoded;
+		}).whenCompleteAsync((encoded, error) -> {
+			if (error != null) {
+				Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+				for (String name : uploaders.keySet()) {
+					finished(name, null, "Failed to encode image: " + cause);
+				}
+				return;
+			}
+			for (Map.Entry<String, Uploader> entry : uploaders.entrySet()) {
+				String name = entry.getKey();
+				Uploader u = entry.getValue();
+				u.getResult().whenCompleteAsync((url, uploadError) -> finished(name, url,
+						uploadError != null ? uploadError.getMessage() : null), IoTask.EDT);
+				Uploader.upload(u, encoded.get(u.getFormat()));
+			}
+		}, IoTask.EDT);
+	}
+
+	/**
+	 * Called on the event dispatch thread when one of the uploads has succeeded or failed.
+	 *
+	 * @param url   The URL of the uploaded image, or {@code null} if the upload failed.
+	 * @param error The reason the upload failed, or {@code null} if it succeeded.
+	 */
+	private void finished(String name, String url, String error) {
+		remaining--;
+		if (url != null) {
+			urls.put(name, url);
+			addresses.get(name).setText(url);
+		} else {
+			JProgressBar p = bars.get(name);
+			p.setIndeterminate(false);
+			p.setValue(0);
+			p.setString("Upload failed");
+			addresses.get(name).setText(error);
+			primaryFailed |= name.equals(primary);
+		}
+
+		if (!copied) {
+			String link = null, from = null;
+			if (url != null && (primary.equals(FIRST) || name.equals(primary))) {
+				link = url;
+				from = name;
+			} else if (primaryFailed && !urls.isEmpty()) {
+				Map.Entry<String, String> first = urls.entrySet().iterator().next();
+				link = first.getValue();
+				from = first.getKey();
+			}
+			if (link != null) {
+				copy(link);
+				status.setText("Copied the " + from + " link to your clipboard.");
+			}
+		}
+		if (remaining == 0) {
+			frame.setTitle(String.format("mauCapture Uploader - %d of %d done in %.1f seconds", urls.size(),
+					uploaders.size(), (System.currentTimeMillis() - startTime) / 1000.0));
+			if (!copied) {
+				status.setText("All uploads failed.");
+			}
+		}
+	}
+
+	private void copy(String url) {
+		copied = true;
+		Clipboard c = Toolkit.getDefaultToolkit().getSystemClipboard();
+		StringSelection ss = new StringSelection(url);
+		Metrics.Timer timer = Metrics.start(Phase.CLIPBOARD);
+		try {
+			c.setContents(ss, ss);
+		} finally {
+			timer.stop();
+		}
+		Metrics.record(Phase.TIME_TO_LINK, TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - startTime));
+	}
+}
@@ -1,15 +1,8 @@
 package net.maunium.maucapture.uploaders;
 
-import java.awt.Toolkit;
-import java.awt.datatransfer.Clipboard;
-import java.awt.datatransfer.StringSelection;
-import java.awt.image.BufferedImage;
-import java.io.File;
 import java.io.IOException;
 
-import javax.imageio.ImageIO;
 import javax.swing.JFrame;
-import javax.swing.JOptionPane;
 
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
@@ -18,7 +11,6 @@ import org.apache.http.entity.ContentType;
 import org.apache.http.entity.mime.HttpMultipartMode;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.entity.mime.content.StringBody;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
@@ -27,7 +19,8 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
-import net.maunium.maucapture.util.ProgressFileBody;
+import net.maunium.maucapture.util.ImageBody;
+import net.maunium.maucapture.util.ImageSource;
 
 /**
  * An Uploader implementation for Imgur.
@@ -38,55 +31,56 @@ import net.maunium.maucapture.util.ProgressFileBody;
 public class ImgurUploader extends Uploader {
 	public ImgurUploader(JFrame host) {
 		super(host);
-		frame.setTitle("mauCapture Imgur Uploader");
-		p.setString("Preparing to upload to imgur.com");
+		if (frame != null) {
+			frame.setTitle("mauCapture Imgur Uploader");
+		}
+		progress.setStatus("Preparing to upload to imgur.com", true, false);
 	}
 
 	@Override
-	public void upload(BufferedImage bi) {
-		long st = System.currentTimeMillis();
-		File f = new File(System.getProperty("java.io.tmpdir") + File.separator + "maucapture_imgur.png");
-		try {
-			ImageIO.write(bi, "png", f);
-		} catch (IOException e) {
-			e.printStackTrace();
-			return;
-		}
-
-		HttpClient hc = HttpClientBuilder.create().build();
+	public String upload(ImageSource image) throws IOException {
+		HttpClient hc = ConnectionPool.getClient();
 		HttpContext context = new BasicHttpContext();
 		HttpPost post = new HttpPost("https://api.imgur.com/3/upload.json");
 		post.setHeader("Authorization", "Client-ID fc08179866ff8df");
 
-		try {
-			MultipartEntityBuilder meb = MultipartEntityBuilder.create();
-			meb.setMode(HttpMultipartMode.BROWSER_COMPATIBLE);
-			meb.addPart("image", new ProgressFileBody(f, p));
-			meb.addPart("key", new StringBody("7577ebb97fd6f62f65eae0839c2fb7e2e1d615bc", ContentType.TEXT_PLAIN));
-			post.setEntity(meb.build());
+		MultipartEntityBuilder meb = MultipartEntityBuilder.create();
+		meb.setMode(HttpMultipartMode.BROWSER_COMPATIBLE);
+		meb.addPart("image", new ImageBody(image, "image." + image.getFormat(), progress));
+		meb.addPart("key", new StringBody("7577ebb97fd6f62f65eae0839c2fb7e2e1d615bc", ContentType.TEXT_PLAIN));
+		post.setEntity(meb.build());
 
-			HttpResponse httpresp = hc.execute(post, context);
+		HttpResponse httpresp = hc.execute(post, context);
+		int status = httpresp.getStatusLine().getStatusCode();
+		if (status >= 500 || status == 429) {
+			EntityUtils.consumeQuietly(httpresp.getEntity());
+			throw new IOException("HTTP " + status);
+		}
 
-			JsonElement e = new JsonParser().parse(EntityUtils.toString(httpresp.getEntity()));
-			JsonObject main = e.getAsJsonObject();
-			JsonObject data = main.get("data").getAsJsonObject();
-			if (main.get("success").getAsBoolean()) {
-				String url = "http://i.imgur.com/" + data.get("id").getAsString() + ".png";
+		JsonElement e = new JsonParser().parse(EntityUtils.toString(httpresp.getEntity()));
+		JsonObject main = e.getAsJsonObject();
+		JsonObject data = main.get("data").getAsJsonObject();
+		if (main.get("success").getAsBoolean()) {
+			return "http://i.imgur.com/" + data.get("id").getAsString() + "." + image.getFormat();
+		} else {
+			throw new UploadException("Error message: " + data.get("error") + "\nHTTP Status code " + main.get("status").getAsInt());
+		}
+	}
 
-				Clipboard c = Toolkit.getDefaultToolkit().getSystemClipboard();
-				StringSelection ss = new StringSelection(url);
-				c.setContents(ss, ss);
+	@Override
+	public String getFormat() {
+		return "png";
+	}
 
-				p.setValue(1);
-				p.setMaximum(1);
-				p.setIndeterminate(false);
-				p.setString("All done in " + (System.currentTimeMillis() - st) / 1000 + " seconds!");
-				address.setText(url);
-			} else JOptionPane.showMessageDialog(frame, "Error message: " + data.get("error") + "\nHTTP Status code " + main.get("status").getAsInt(),
-					"Upload failed", JOptionPane.ERROR_MESSAGE);
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
-		f.delete();
+	@Override
+	public String getDestination() {
+		return "imgur";
+	}
+
+	@Override
+	public JsonObject toJson() {
+		JsonObject data = new JsonObject();
+		data.addProperty("type", "imgur");
+		return data;
 	}
 }
\ No newline at end of file
@@ -1,24 +1,22 @@
 package net.maunium.maucapture.uploaders;
 
-import java.awt.Toolkit;
-import java.awt.datatransfer.Clipboard;
-import java.awt.datatransfer.StringSelection;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.Base64;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-import javax.imageio.ImageIO;
 import javax.swing.JFrame;
-import javax.swing.JOptionPane;
 
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
+import org.apache.http.HttpEntity;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.entity.mime.MultipartEntityBuilder;
+import org.apache.http.entity.mime.content.StringBody;
 import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
@@ -29,15 +27,32 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
 import net.maunium.maucapture.MauCapture;
-import net.maunium.maucapture.util.ProgressStringEntity;
+import net.maunium.maucapture.util.Base64JsonEntity;
+import net.maunium.maucapture.util.ImageBody;
+import net.maunium.maucapture.util.ImageSource;
+import net.maunium.maucapture.util.IoTask;
 
 /**
  * An Uploader implementation for mauImageServer 2.0
+ * <p>
+ * Servers that list {@code multipart} in the {@code upload-modes} of their {@code capabilities} endpoint receive the
+ * image as raw bytes in a {@code multipart/form-data} request, streamed from the encoder. Older servers receive it as
+ * Base64 in a JSON object.
  *
  * @author tulir
  * @since 2.0.0
  */
 public class MISUploader extends Uploader {
+	/**
+	 * How long the capabilities of a server are cached.
+	 */
+	private static final long CAPABILITIES_CACHE_TIME = 60 * 60 * 1000;
+	/**
+	 * How long to wait before asking again if fetching the capabilities failed.
+	 */
+	private static final long FAILED_CAPABILITIES_CACHE_TIME = 5 * 60 * 1000;
+	private static final Map<String, CachedCapabilities> capabilities = new ConcurrentHashMap<>();
+
 	private String addr, imageName, format, username, authtoken;
 	private boolean hidden;
 
@@ -50,15 +65,27 @@ public class MISUploader extends Uploader {
 		this.username = username;
 		this.authtoken = authtoken;
 		this.hidden = hidden;
-		frame.setTitle("mauCapture MIS Uploader");
-		p.setString("Preparing to upload to " + addr);
+		if (frame != null) {
+			frame.setTitle("mauCapture MIS Uploader");
+		}
+		progress.setStatus("Preparing to upload to " + addr, true, false);
 	}
 
-	public static String login(String addr, String username, String password) {
-		HttpClient hc = HttpClientBuilder.create().build();
+	/**
+	 * Log in to a mauImageServer.
+	 *
+	 * @param task The task the login is running in, so that the request can be aborted if it's cancelled, or
+	 *             {@code null}.
+	 * @return The authentication token, or a simple error word with "{@code err:}" as the prefix.
+	 */
+	public static String login(String addr, String username, String password, IoTask<?> task) {
+		HttpClient hc = ConnectionPool.getClient();
 		HttpContext context = new BasicHttpContext();
 		if (!addr.endsWith("/")) { addr += "/"; }
 		HttpPost post = new HttpPost(addr + "auth/login");
+		if (task != null) {
+			task.onCancel(post::abort);
+		}
 		try {
 			JsonObject payload = new JsonObject();
 			payload.addProperty("username", username);
@@ -68,6 +95,8 @@ public class MISUploader extends Uploader {
 			HttpResponse httpresp = hc.execute(post, context);
 
 			if (httpresp.getStatusLine().getStatusCode() == HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+				// Consume the body so the connection goes back to the pool.
+				EntityUtils.consumeQuietly(httpresp.getEntity());
 				return "err:servererror";
 			}
 
@@ -86,56 +115,138 @@ public class MISUploader extends Uploader {
 	}
 
 	@Override
-	public void upload(BufferedImage bi) {
-		ByteArrayOutputStream os = new ByteArrayOutputStream();
-		try {
-			ImageIO.write(bi, format, os);
-		} catch (IOException e) {
-			e.printStackTrace();
+	public String upload(ImageSource image) throws IOException {
+		boolean multipart = supportsMultipart();
+		HttpResponse httpresp = insert(image, multipart);
+		int status = httpresp.getStatusLine().getStatusCode();
+		if (multipart && status == HttpStatus.SC_UNSUPPORTED_MEDIA_TYPE && image.isRepeatable()) {
+			// The server was downgraded or the capabilities were wrong, so fall back to JSON.
+			EntityUtils.consumeQuietly(httpresp.getEntity());
+			capabilities.put(addr, new CachedCapabilities(false, CAPABILITIES_CACHE_TIME));
+			httpresp = insert(image, false);
+			status = httpresp.getStatusLine().getStatusCode();
+		}
+		if (status >= 500 || status == 429) {
+			EntityUtils.consumeQuietly(httpresp.getEntity());
+			throw new IOException("HTTP " + status);
 		}
-		String image = Base64.getEncoder().encodeToString(os.toByteArray());
 
-		long st = System.currentTimeMillis();
+		JsonElement e = new JsonParser().parse(EntityUtils.toString(httpresp.getEntity()));
+		JsonObject main = e.getAsJsonObject();
+		if (main.get("success").getAsBoolean()) {
+			return addr + imageName + "." + image.getFormat();
+		} else {
+			throw new UploadException("HTTP " + status + ": " + main.get("status-humanreadable").getAsString());
+		}
+	}
 
-		HttpClient hc = HttpClientBuilder.create().build();
-		HttpContext context = new BasicHttpContext();
+	/**
+	 * Send the image to the insert endpoint.
+	 *
+	 * @param multipart Whether to send the image as raw bytes in a multipart request instead of as Base64 in JSON.
+	 */
+	private HttpResponse insert(ImageSource image, boolean multipart) throws IOException {
+		JsonObject payload = new JsonObject();
+		payload.addProperty("image-name", imageName);
+		payload.addProperty("image-format", image.getFormat());
+		payload.addProperty("hidden", hidden);
+		payload.addProperty("client-name", "mauCapture " + MauCapture.version);
+		if (username.length() > 0 && authtoken.length() > 0) {
+			payload.addProperty("username", username);
+			payload.addProperty("auth-token", authtoken);
+		}
+
+		HttpEntity entity;
+		if (multipart) {
+			MultipartEntityBuilder meb = MultipartEntityBuilder.create();
+			ContentType text = ContentType.create("text/plain", StandardCharsets.UTF_8);
+			for (Map.Entry<String, JsonElement> field : payload.entrySet()) {
+				meb.addPart(field.getKey(), new StringBody(field.getValue().getAsString(), text));
+			}
+			meb.addPart("image", new ImageBody(image, imageName + "." + image.getFormat(), progress));
+			entity = meb.build();
+		} else {
+			// The image is Base64-encoded straight into the request body as it's being sent.
+			entity = new Base64JsonEntity("image", image, payload, progress);
+		}
 		HttpPost post = new HttpPost(addr + "insert");
+		post.setEntity(entity);
+		return ConnectionPool.getClient().execute(post, new BasicHttpContext());
+	}
 
+	/**
+	 * Get whether or not the server accepts multipart uploads. The capabilities are fetched from the server and
+	 * cached for a while. If fetching them fails, JSON uploads are assumed for a few minutes.
+	 */
+	public boolean supportsMultipart() {
+		CachedCapabilities cached = capabilities.get(addr);
+		if (cached != null && System.currentTimeMillis() - cached.fetched < cached.lifetime) {
+			return cached.multipart;
+		}
+		HttpGet get = new HttpGet(addr + "capabilities");
 		try {
-			JsonObject payload = new JsonObject();
-			payload.addProperty("image", image);
-			payload.addProperty("image-name", imageName);
-			payload.addProperty("image-format", format);
-			payload.addProperty("hidden", hidden);
-			payload.addProperty("client-name", "mauCapture " + MauCapture.version);
-			if (username.length() > 0 && authtoken.length() > 0) {
-				payload.addProperty("username", username);
-				payload.addProperty("auth-token", authtoken);
+			HttpResponse httpresp = ConnectionPool.getClient().execute(get, new BasicHttpContext());
+			String body = EntityUtils.toString(httpresp.getEntity());
+			boolean multipart = false;
+			// Servers without the endpoint only support JSON uploads.
+			if (httpresp.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
+				JsonElement modes = new JsonParser().parse(body).getAsJsonObject().get("upload-modes");
+				if (modes != null && modes.isJsonArray()) {
+					for (JsonElement mode : modes.getAsJsonArray()) {
+						multipart |= mode.isJsonPrimitive() && mode.getAsString().equals("multipart");
+					}
+				}
 			}
-			post.setEntity(new ProgressStringEntity(new Gson().toJson(payload), ContentType.APPLICATION_JSON, p));
+			capabilities.put(addr, new CachedCapabilities(multipart, CAPABILITIES_CACHE_TIME));
+			return multipart;
+		} catch (Exception e) {
+			// Only cache the failure briefly, the server may just be unreachable right now.
+			System.err.println("Failed to fetch capabilities of " + addr + ": " + e);
+			capabilities.put(addr, new CachedCapabilities(false, FAILED_CAPABILITIES_CACHE_TIME));
+			return false;
+		}
+	}
 
-			HttpResponse httpresp = hc.execute(post, context);
+	@Override
+	public String getFormat() {
+		return format;
+	}
 
-			JsonElement e = new JsonParser().parse(EntityUtils.toString(httpresp.getEntity()));
-			JsonObject main = e.getAsJsonObject();
-			if (main.get("success").getAsBoolean()) {
-				String url = addr + imageName + "." + format;
-
-				Clipboard c = Toolkit.getDefaultToolkit().getSystemClipboard();
-				StringSelection ss = new StringSelection(url);
-				c.setContents(ss, ss);
-
-				p.setValue(1);
-				p.setMaximum(1);
-				p.setIndeterminate(false);
-				p.setString("All done in " + (System.currentTimeMillis() - st) / 1000 + " seconds!");
-				address.setText(url);
-			} else {
-				JOptionPane.showMessageDialog(frame, "HTTP " + httpresp.getStatusLine().getStatusCode() + ": " + main.get("status-humanreadable").getAsString(),
-						"Upload failed", JOptionPane.ERROR_MESSAGE);
-			}
-		} catch (Exception e) {
-			e.printStackTrace();
+	@Override
+	public boolean requiresLength() {
+		// Multipart uploads can be chunked, so the image can be encoded while sending.
+		return !supportsMultipart();
+	}
+
+	@Override
+	public String getDestination() {
+		return "mis:" + addr;
+	}
+
+	@Override
+	public JsonObject toJson() {
+		JsonObject data = new JsonObject();
+		data.addProperty("type", "mis");
+		data.addProperty("address", addr);
+		data.addProperty("image-name", imageName);
+		data.addProperty("image-format", format);
+		// The auth token is read from the config when the upload is resumed, so it's not stored here.
+		data.addProperty("username", username);
+		data.addProperty("logged-in", authtoken.length() > 0);
+		data.addProperty("hidden", hidden);
+		return data;
+	}
+
+	/**
+	 * The upload modes a server supports, the time when they were fetched and how long they're valid for.
+	 */
+	private static class CachedCapabilities {
+		private final boolean multipart;
+		private final long lifetime, fetched = System.currentTimeMillis();
+
+		private CachedCapabilities(boolean multipart, long lifetime) {
+			this.multipart = multipart;
+			this.lifetime = lifetime;
 		}
 	}
 }
\ No newline at end of file
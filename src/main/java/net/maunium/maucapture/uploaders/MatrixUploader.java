@@ -1,38 +1,22 @@
 package net.maunium.maucapture.uploaders;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
-import net.maunium.maucapture.MauCapture;
-import net.maunium.maucapture.util.ProgressFileBody;
-import net.maunium.maucapture.util.ProgressFileEntity;
-import net.maunium.maucapture.util.ProgressStringEntity;
+import net.maunium.maucapture.util.ImageEntity;
+import net.maunium.maucapture.util.ImageSource;
 import org.apache.http.HttpResponse;
-import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.ContentType;
-import org.apache.http.entity.FileEntity;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.entity.mime.HttpMultipartMode;
-import org.apache.http.entity.mime.MultipartEntityBuilder;
-import org.apache.http.entity.mime.content.StringBody;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
-import java.awt.*;
-import java.awt.datatransfer.Clipboard;
-import java.awt.datatransfer.StringSelection;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
-import java.io.File;
 import java.io.IOException;
-import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * An Uploader implementation for Matrix media repositories
@@ -41,8 +25,17 @@ import java.util.Base64;
  * @since 2.1.0
  */
 public class MatrixUploader extends Uploader {
+	/**
+	 * How long the upload size limit of a homeserver is cached.
+	 */
+	private static final long LIMIT_CACHE_TIME = 60 * 60 * 1000;
+	/**
+	 * How long a failure to fetch the upload size limit is cached, so that every upload doesn't try again.
+	 */
+	private static final long FAILED_LIMIT_CACHE_TIME = 5 * 60 * 1000;
+	private static final Map<String, CachedLimit> uploadLimits = new ConcurrentHashMap<>();
+
 	private String addr, fileName, accessToken;
-	private boolean hidden;
 
 	public MatrixUploader(JFrame host, String addr, String fileName, String accessToken) {
 		super(host);
@@ -52,59 +45,120 @@ public class MatrixUploader extends Uploader {
 		this.addr = addr;
 		this.fileName = fileName;
 		this.accessToken = accessToken;
-		frame.setTitle("mauCapture Matrix Uploader");
-		p.setString("Preparing to upload to " + addr);
+		if (frame != null) {
+			frame.setTitle("mauCapture Matrix Uploader");
+		}
+		progress.setStatus("Preparing to upload to " + addr, true, false);
 	}
 
 	@Override
-	public void upload(BufferedImage bi) {
-		long st = System.currentTimeMillis();
-		File f = new File(System.getProperty("java.io.tmpdir") + File.separator + "maucapture_matrix.png");
-		try {
-			ImageIO.write(bi, "png", f);
-		} catch (IOException e) {
-			e.printStackTrace();
-			return;
-		}
-
-		HttpClient hc = HttpClientBuilder.create().build();
+	public String upload(ImageSource image) throws IOException {
+		HttpClient hc = ConnectionPool.getClient();
 		HttpContext context = new BasicHttpContext();
-		HttpPost post = new HttpPost(this.addr + "/_matrix/media/r0/upload?filename=" + this.fileName);
+		// The size budget may have picked a different format than the file name says.
+		String name = fileName;
+		int dot = name.lastIndexOf('.');
+		if (dot >= 0 && !name.substring(dot + 1).equalsIgnoreCase(image.getFormat())) {
+			name = name.substring(0, dot + 1) + image.getFormat();
+		}
+		HttpPost post = new HttpPost(endpoint("_matrix/media/r0/upload?filename=" + name));
 		post.setHeader("Authorization", "Bearer " + this.accessToken);
-		post.setHeader("Content-Type", "image/png");
+		post.setEntity(new ImageEntity(image, progress));
+
+		HttpResponse httpresp = hc.execute(post, context);
+		int status = httpresp.getStatusLine().getStatusCode();
+		if (status >= 500 || status == 429) {
+			EntityUtils.consumeQuietly(httpresp.getEntity());
+			throw new IOException("HTTP " + status);
+		}
 
+		JsonElement e = new JsonParser().parse(EntityUtils.toString(httpresp.getEntity()));
+		JsonObject main = e.getAsJsonObject();
+		if (main.has("content_uri")) {
+			return main.get("content_uri").getAsString();
+		} else {
+			String error = "";
+			try {
+				error = main.get("error").getAsString();
+			} catch (Exception e2) {
+				//
+			}
+			throw new UploadException("Error message: " + error + "\nHTTP Status " + httpresp.getStatusLine().getReasonPhrase());
+		}
+	}
+
+	@Override
+	public long getMaxSize() {
+		CachedLimit cached = uploadLimits.get(addr);
+		if (cached != null && System.currentTimeMillis() - cached.fetched < cached.lifetime) {
+			return cached.limit;
+		}
+		HttpGet get = new HttpGet(endpoint("_matrix/media/r0/config"));
+		get.setHeader("Authorization", "Bearer " + this.accessToken);
 		try {
-			post.setEntity(new ProgressFileEntity(f, p));
-
-			HttpResponse httpresp = hc.execute(post, context);
-
-			JsonElement e = new JsonParser().parse(EntityUtils.toString(httpresp.getEntity()));
-			JsonObject main = e.getAsJsonObject();
-			if (main.has("content_uri")) {
-				Clipboard c = Toolkit.getDefaultToolkit().getSystemClipboard();
-				String uri = main.get("content_uri").getAsString();
-				StringSelection ss = new StringSelection(uri);
-				c.setContents(ss, ss);
-
-				p.setValue(1);
-				p.setMaximum(1);
-				p.setIndeterminate(false);
-				p.setString("All done in " + (System.currentTimeMillis() - st) / 1000 + " seconds!");
-				address.setText(uri);
-			} else {
-				String error = "";
-				try {
-					error = main.get("error").getAsString();
-				} catch (Exception e2) {
-					//
-				}
-
-				JOptionPane.showMessageDialog(frame, "Error message: " + error +"\nHTTP Status " + httpresp.getStatusLine().getReasonPhrase(),
-						"Upload failed", JOptionPane.ERROR_MESSAGE);
+			HttpResponse httpresp = ConnectionPool.getClient().execute(get, new BasicHttpContext());
+			String body = EntityUtils.toString(httpresp.getEntity());
+			if (httpresp.getStatusLine().getStatusCode() != 200) {
+				uploadLimits.put(addr, new CachedLimit(-1, FAILED_LIMIT_CACHE_TIME));
+				return -1;
 			}
+			JsonElement size = new JsonParser().parse(body).getAsJsonObject().get("m.upload.size");
+			long limit = size != null && size.isJsonPrimitive() ? size.getAsLong() : -1;
+			uploadLimits.put(addr, new CachedLimit(limit, LIMIT_CACHE_TIME));
+			return limit;
 		} catch (Exception e) {
-			e.printStackTrace();
+			// The limit is only used to pick the upload format, so don't fail the upload because of it.
+			System.err.println("Failed to fetch the upload size limit of " + addr + ": " + e);
+			uploadLimits.put(addr, new CachedLimit(-1, FAILED_LIMIT_CACHE_TIME));
+			return -1;
+		}
+	}
+
+	/**
+	 * Get the URL of the given path on the homeserver.
+	 *
+	 * @param path The path without a leading slash.
+	 */
+	private String endpoint(String path) {
+		// The address always ends with a slash.
+		return addr + path;
+	}
+
+	@Override
+	public String getFormat() {
+		return "png";
+	}
+
+	@Override
+	public boolean requiresLength() {
+		// The media repository requires a Content-Length, so the image must be encoded before sending.
+		return true;
+	}
+
+	@Override
+	public String getDestination() {
+		return "matrix:" + addr;
+	}
+
+	@Override
+	public JsonObject toJson() {
+		JsonObject data = new JsonObject();
+		data.addProperty("type", "matrix");
+		data.addProperty("address", addr);
+		// The access token is read from the config when the upload is resumed, so it's not stored here.
+		data.addProperty("file-name", fileName);
+		return data;
+	}
+
+	/**
+	 * The upload size limit of a homeserver, the time when it was fetched and how long it's valid.
+	 */
+	private static class CachedLimit {
+		private final long limit, lifetime, fetched = System.currentTimeMillis();
+
+		private CachedLimit(long limit, long lifetime) {
+			this.limit = limit;
+			this.lifetime = lifetime;
 		}
-		f.delete();
 	}
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package net.maunium.maucapture.uploaders;
+
+import java.io.IOException;
+
+/**
+ * An exception thrown when the server rejects an upload. Unlike other IOExceptions, uploads that fail with this are
+ * not retried.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class UploadException extends IOException {
+	private static final long serialVersionUID = 1L;
+
+	public UploadException(String message) {
+		super(message);
+	}
+}
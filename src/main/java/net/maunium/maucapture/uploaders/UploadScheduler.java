@@ -0,0 +1,356 @@
+package net.maunium.maucapture.uploaders;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import net.maunium.maucapture.MauCapture;
+import net.maunium.maucapture.metrics.Metrics;
+import net.maunium.maucapture.metrics.Phase;
+import net.maunium.maucapture.util.ByteImageSource;
+import net.maunium.maucapture.util.EncodeCache;
+import net.maunium.maucapture.util.FileImageSource;
+import net.maunium.maucapture.util.ImageEncoding;
+import net.maunium.maucapture.util.ImageSource;
+import net.maunium.maucapture.util.PrivateFiles;
+import net.maunium.maucapture.util.SizeBudget;
+import net.maunium.maucapture.util.StreamingImageSource;
+
+/**
+ * Runs uploads in the background with a concurrency limit for each destination. Pending uploads are stored in the
+ * upload queue directory before they're first sent, and failed uploads are retried with exponential backoff, also
+ * after a restart.
+ * <p>
+ * Uploads that encode the image while sending it are only stored if the first attempt fails, since the encoded image
+ * doesn't exist before then. If mauCapture exits during such an attempt, the upload is lost.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class UploadScheduler {
+	/**
+	 * The maximum number of simultaneous uploads to a single destination.
+	 */
+	private static final int CONCURRENCY_PER_DESTINATION = 2;
+	/**
+	 * The delay before the first retry and the maximum delay between retries.
+	 */
+	private static final long MIN_RETRY_DELAY = 2000, MAX_RETRY_DELAY = 5 * 60 * 1000;
+	/**
+	 * How long failed uploads are retried before giving up.
+	 */
+	private static final long MAX_AGE = 24 * 60 * 60 * 1000;
+
+	private static final Map<String, ThreadPoolExecutor> executors = new HashMap<>();
+	private static final Map<String, List<Job>> waiting = new HashMap<>();
+	private static final ScheduledExecutorService retries = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "Upload retry scheduler");
+		t.setDaemon(true);
+		return t;
+	});
+	private static final Random random = new Random();
+
+	/**
+	 * Upload the given image with the given uploader.
+	 *
+	 * @param revision The revision of the image for the {@link EncodeCache}, or {@code -1} to not cache it.
+	 */
+	public static void submit(Uploader u, BufferedImage bi, long revision) {
+		enqueue(new Job(u, bi, revision));
+	}
+
+	/**
+	 * Upload the given encoded image with the given uploader. The source must be repeatable, since it's sent again
+	 * if the upload is retried.
+	 */
+	public static void submit(Uploader u, ImageSource source) {
+		Job job = new Job(u, null, -1);
+		job.source = source;
+		enqueue(job);
+	}
+
+	/**
+	 * Restart all uploads that were left in the upload queue, e.g. because the network was down when mauCapture was
+	 * last closed.
+	 *
+	 * @param host The instance whose frame the upload windows belong to and whose config has the access tokens.
+	 */
+	public static void resume(MauCapture host) {
+		File[] files = MauCapture.uploadQueue.listFiles((dir, name) -> name.endsWith(".json"));
+		if (files == null) {
+			return;
+		}
+		for (File meta : files) {
+			try (Reader reader = new FileReader(meta)) {
+				JsonObject data = new JsonParser().parse(reader).getAsJsonObject();
+				File image = new File(MauCapture.uploadQueue, data.get("file").getAsString());
+				Uploader u = image.exists() ? Uploader.fromJson(host, data.getAsJsonObject("uploader")) : null;
+				if (u == null) {
+					meta.delete();
+					image.delete();
+					continue;
+				}
+				Job job = new Job(u, null, -1);
+				job.created = data.get("created").getAsLong();
+				job.meta = meta;
+				job.file = image;
+				job.source = new FileImageSource(data.get("format").getAsString(), image);
+				enqueue(job);
+			} catch (IllegalStateException e) {
+				// Keep the upload in the queue until the account is logged in again.
+				System.err.println("Not resuming queued upload " + meta + ": " + e.getMessage());
+			} catch (Exception e) {
+				System.err.println("Failed to read queued upload " + meta + ":");
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private static synchronized void enqueue(Job job) {
+		String destination = job.uploader.getDestination();
+		ThreadPoolExecutor executor = executors.get(destination);
+		if (executor == null) {
+			executor = new ThreadPoolExecutor(CONCURRENCY_PER_DESTINATION, CONCURRENCY_PER_DESTINATION, 30,
+					TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> new Thread(r, "Uploader"));
+			executor.allowCoreThreadTimeOut(true);
+			executors.put(destination, executor);
+		}
+		if (executor.getActiveCount() >= CONCURRENCY_PER_DESTINATION) {
+			job.uploader.queued();
+		}
+		executor.execute(() -> attempt(job));
+	}
+
+	private static void attempt(Job job) {
+		long st = System.currentTimeMillis();
+		ImageSource source;
+		try {
+			source = job.getSource();
+		} catch (Exception e) {
+			// Encoding the same image again would fail the same way, so there's no point in retrying.
+			e.printStackTrace();
+			job.uploader.failed("Failed to encode image: " + e);
+			job.delete();
+			return;
+		}
+		if (job.meta == null && !(source instanceof StreamingImageSource)) {
+			try {
+				job.store();
+			} catch (IOException e) {
+				System.err.println("Failed to store upload in queue:");
+				e.printStackTrace();
+			}
+		}
+		try {
+			String url = job.uploader.upload(source);
+			job.uploader.succeeded(url, st);
+			job.delete();
+			// The destination is reachable again, so there's no reason to wait before retrying other uploads.
+			retryNow(job.uploader.getDestination());
+		} catch (UploadException e) {
+			job.uploader.failed(e.getMessage());
+			job.delete();
+		} catch (IOException e) {
+			e.printStackTrace();
+			retryLater(job);
+		} catch (Exception e) {
+			e.printStackTrace();
+			job.uploader.failed("Unexpected error: " + e);
+			job.delete();
+		}
+	}
+
+	private static void retryLater(Job job) {
+		if (System.currentTimeMillis() - job.created > MAX_AGE) {
+			job.uploader.failed("Upload failed too many times, giving up.");
+			job.delete();
+			return;
+		}
+		try {
+			job.encode();
+		} catch (Exception e) {
+			// The image was being encoded while sending, and the encoding failed rather than the connection.
+			e.printStackTrace();
+			job.uploader.failed("Failed to encode image: " + e);
+			job.delete();
+			return;
+		}
+		try {
+			job.store();
+			// Don't keep the encoded image in memory while waiting.
+			job.source = new FileImageSource(job.source.getFormat(), job.file);
+		} catch (IOException e) {
+			// Keep retrying from memory even if the queue can't be written.
+			System.err.println("Failed to store upload in queue:");
+			e.printStackTrace();
+		}
+
+		long delay = Math.min(MIN_RETRY_DELAY << Math.min(job.attempts, 20), MAX_RETRY_DELAY);
+		delay += random.nextInt((int) (delay / 4) + 1);
+		job.attempts++;
+		job.uploader.retrying(delay);
+		synchronized (UploadScheduler.class) {
+			waiting.computeIfAbsent(job.uploader.getDestination(), d -> new ArrayList<>()).add(job);
+			job.retry = retries.schedule(() -> {
+				synchronized (UploadScheduler.class) {
+					List<Job> jobs = waiting.get(job.uploader.getDestination());
+					if (jobs != null) {
+						jobs.remove(job);
+					}
+				}
+				enqueue(job);
+			}, delay, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private static synchronized void retryNow(String destination) {
+		List<Job> jobs = waiting.remove(destination);
+		if (jobs == null) {
+			return;
+		}
+		for (Job job : jobs) {
+			if (job.retry.cancel(false)) {
+				enqueue(job);
+			}
+		}
+	}
+
+	/**
+	 * A single image to be uploaded.
+	 */
+	private static class Job {
+		private final Uploader uploader;
+		private final String id = System.currentTimeMillis() + "-" + Integer.toHexString(random.nextInt());
+		private BufferedImage image;
+		private final long revision;
+		private ImageSource source;
+		private File meta, file;
+		private long created = System.currentTimeMillis();
+		private int attempts = 0;
+		private ScheduledFuture<?> retry;
+
+		private Job(Uploader uploader, BufferedImage image, long revision) {
+			this.uploader = uploader;
+			this.image = image;
+			this.revision = revision;
+		}
+
+		/**
+		 * Get the encoded image to send. If the uploader allows it, the image is encoded while sending on the first
+		 * attempt.
+		 */
+		private ImageSource getSource() throws IOException {
+			String format = uploader.getFormat();
+			if (source != null) {
+				return source;
+			} else if (SizeBudget.isEnabled()) {
+				long limit = uploader.getMaxSize();
+				String options = format + "," + ImageEncoding.describeOptions(format) + ",limit=" + limit + ",max="
+						+ SizeBudget.getMaxSize() + ",psnr=" + SizeBudget.getMinQuality();
+				Metrics.Timer timer = Metrics.start(Phase.ENCODE);
+				try {
+					return source = EncodeCache.get(revision, "budget", options, () -> {
+						uploader.progress.setStatus("Finding the best format for the upload...", true, false);
+						SizeBudget.Candidate candidate = SizeBudget.encode(image, format, limit);
+						// Show the chosen variant in the progress bar while it's being sent.
+						uploader.progress.setLabel("Uploading " + candidate.getDescription());
+						return candidate.getSource();
+					});
+				} finally {
+					timer.stop();
+				}
+			}
+			String options = ImageEncoding.describeOptions(format);
+			// If the image was encoded in the background, or is still being encoded, use that.
+			if (uploader.requiresLength() || EncodeCache.contains(revision, format, options)) {
+				Metrics.Timer timer = Metrics.start(Phase.ENCODE);
+				try {
+					return source = EncodeCache.get(revision, format, options, () -> ByteImageSource.encode(image, format));
+				} finally {
+					timer.stop();
+				}
+			}
+			// Encode while sending, and keep a copy of the bytes for the cache.
+			return new StreamingImageSource(image, format, revision < 0 ? null
+					: encoded -> EncodeCache.put(revision, format, options, encoded));
+		}
+
+		/**
+		 * Encode the whole image in memory if it was being encoded while sending.
+		 */
+		private void encode() throws IOException {
+			if (source == null) {
+				String format = uploader.getFormat();
+				source = EncodeCache.get(revision, format, ImageEncoding.describeOptions(format),
+						() -> ByteImageSource.encode(image, format));
+			}
+			image = null;
+		}
+
+		/**
+		 * Store the encoded image and uploader configuration in the upload queue directory. The image must have been
+		 * encoded already.
+		 */
+		private void store() throws IOException {
+			if (meta != null) {
+				return;
+			}
+			image = null;
+			PrivateFiles.create(MauCapture.uploadQueue.toPath(), true);
+			File file = new File(MauCapture.uploadQueue, id + "." + source.getFormat());
+			this.file = file;
+			try (OutputStream out = Files.newOutputStream(PrivateFiles.create(file.toPath(), false))) {
+				source.writeTo(out);
+			}
+
+			JsonObject data = new JsonObject();
+			data.addProperty("file", file.getName());
+			data.addProperty("format", source.getFormat());
+			data.addProperty("created", created);
+			data.add("uploader", uploader.toJson());
+			File meta = new File(MauCapture.uploadQueue, id + ".json");
+			try (Writer writer = new OutputStreamWriter(Files.newOutputStream(PrivateFiles.create(meta.toPath(), false)),
+					StandardCharsets.UTF_8)) {
+				new Gson().toJson(data, writer);
+			}
+			this.meta = meta;
+		}
+
+		/**
+		 * Remove the job from the upload queue directory.
+		 */
+		private void delete() {
+			if (meta != null) {
+				meta.delete();
+				meta = null;
+			}
+			if (file != null) {
+				file.delete();
+				file = null;
+			}
+			source = null;
+			image = null;
+		}
+	}
+}
@@ -1,16 +1,31 @@
 package net.maunium.maucapture.uploaders;
 
 import java.awt.Font;
+import java.awt.Toolkit;
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.StringSelection;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.JDialog;
 import javax.swing.JFrame;
+import javax.swing.JOptionPane;
 import javax.swing.JProgressBar;
 import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+
+import com.google.gson.JsonObject;
 
 import net.maunium.maucapture.MauCapture;
+import net.maunium.maucapture.metrics.Metrics;
+import net.maunium.maucapture.metrics.Phase;
+import net.maunium.maucapture.util.EncodeCache;
+import net.maunium.maucapture.util.ImageSource;
+import net.maunium.maucapture.util.ProgressReporter;
 
 /**
  * The base for all uploaders.
@@ -22,15 +37,25 @@ public abstract class Uploader {
 	protected JDialog frame;
 	protected JProgressBar p;
 	protected JTextField address;
+	protected ProgressReporter progress;
+	private final CompletableFuture<String> result = new CompletableFuture<>();
 
+	/**
+	 * @param host The window to show the upload dialog on top of, or {@code null} to upload without any user
+	 *             interface, e.g. in headless mode.
+	 */
 	public Uploader(JFrame host) {
+		if (host == null) {
+			progress = new ProgressReporter(null);
+			return;
+		}
 		frame = new JDialog(host, "mauCapture Image Uploader");
 		frame.setLayout(null);
 		frame.setResizable(false);
 		frame.setLocationRelativeTo(host);
 		frame.setAlwaysOnTop(true);
 		frame.setSize(355, 105);
-		frame.setFont(MauCapture.lato);
+		frame.setFont(MauCapture.getLato());
 		frame.addWindowListener(new WindowAdapter() {
 			@Override
 			public void windowClosing(WindowEvent evt) {
@@ -45,13 +70,14 @@ public abstract class Uploader {
 		p.setIndeterminate(true);
 		p.setSize(340, 40);
 		p.setLocation(5, 5);
-		p.setFont(MauCapture.lato.deriveFont(Font.BOLD));
+		p.setFont(MauCapture.getLato().deriveFont(Font.BOLD));
+		progress = new ProgressReporter(p);
 
 		address = new JTextField("The image URL will appear here");
 		address.setEditable(false);
 		address.setSize(340, 25);
 		address.setLocation(5, 50);
-		address.setFont(MauCapture.lato);
+		address.setFont(MauCapture.getLato());
 
 		frame.add(p);
 		frame.add(address);
@@ -59,21 +85,181 @@ public abstract class Uploader {
 	}
 
 	/**
-	 * Upload the given BufferedImage.
+	 * Upload the given encoded image.
+	 *
+	 * @return The URL of the uploaded image.
+	 * @throws UploadException If the server rejected the upload.
+	 * @throws IOException     If the upload failed for any other reason and should be retried later.
 	 */
-	public abstract void upload(BufferedImage bi);
+	public abstract String upload(ImageSource image) throws IOException;
 
-	public static void upload(final Uploader u, final BufferedImage bi) {
-		new Thread() {
-			@Override
-			public void run() {
-				setName("Uploader");
-				try {
-					u.upload(bi);
-				} catch (Exception e1) {
-					e1.printStackTrace();
+	/**
+	 * Get the format the image should be encoded in for this uploader.
+	 */
+	public abstract String getFormat();
+
+	/**
+	 * Get whether or not the uploader needs to know the length of the encoded image before sending it. If false, the
+	 * image may be encoded while it's being sent.
+	 */
+	public boolean requiresLength() {
+		return false;
+	}
+
+	/**
+	 * Get the largest image in bytes the server accepts.
+	 *
+	 * @return The limit, or {@code -1} if the limit isn't known.
+	 */
+	public long getMaxSize() {
+		return -1;
+	}
+
+	/**
+	 * Get a key identifying the server this uploader sends images to. Uploads to the same destination share a
+	 * concurrency limit.
+	 */
+	public abstract String getDestination();
+
+	/**
+	 * Serialize the uploader configuration so that pending uploads can be stored in the upload queue. Access tokens
+	 * must not be included, they're read from the config when the upload is resumed.
+	 *
+	 * @see #fromJson(MauCapture, JsonObject)
+	 */
+	public abstract JsonObject toJson();
+
+	/**
+	 * Create an uploader from the data returned by {@link #toJson()}, using the access tokens currently in the config
+	 * of the given instance.
+	 *
+	 * @return The uploader, or {@code null} if the type is unknown.
+	 * @throws IllegalStateException If the upload needs an account that isn't logged in anymore.
+	 */
+	public static Uploader fromJson(MauCapture host, JsonObject data) {
+		String address = data.get("address") != null ? data.get("address").getAsString() : null;
+		switch (data.get("type").getAsString()) {
+		case "mis":
+			String username = data.get("username").getAsString(), authtoken = "";
+			if (data.get("logged-in").getAsBoolean()) {
+				if (!sameAddress(address, host.getAddress()) || !username.equals(host.getUsername())
+						|| host.getAuthToken().isEmpty()) {
+					throw new IllegalStateException("Not logged in as " + username + " on " + address);
 				}
+				authtoken = host.getAuthToken();
+			}
+			return new MISUploader(host.getFrame(), address, data.get("image-name").getAsString(),
+					data.get("image-format").getAsString(), username, authtoken, data.get("hidden").getAsBoolean());
+		case "matrix":
+			if (!sameAddress(address, host.getMatrixURL()) || host.getMxAccessToken() == null
+					|| host.getMxAccessToken().isEmpty()) {
+				throw new IllegalStateException("Not logged in on " + address);
+			}
+			return new MatrixUploader(host.getFrame(), address, data.get("file-name").getAsString(),
+					host.getMxAccessToken());
+		case "imgur":
+			return new ImgurUploader(host.getFrame());
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Check if two server addresses are the same, ignoring a trailing slash.
+	 */
+	private static boolean sameAddress(String a, String b) {
+		if (a == null || b == null) {
+			return false;
+		}
+		if (!a.endsWith("/")) { a += "/"; }
+		if (!b.endsWith("/")) { b += "/"; }
+		return a.equals(b);
+	}
+
+	/**
+	 * Get the result of the upload. Completed with the URL of the uploaded image when the upload succeeds, or
+	 * exceptionally with an {@link UploadException} when it fails and won't be retried.
+	 */
+	public CompletableFuture<String> getResult() {
+		return result;
+	}
+
+	/**
+	 * Called when the upload has succeeded. Copies the URL to the clipboard and shows it to the user.
+	 *
+	 * @param url       The URL of the uploaded image.
+	 * @param startTime The time when the upload was started.
+	 */
+	public void succeeded(String url, long startTime) {
+		result.complete(url);
+		if (frame == null) {
+			return;
+		}
+		progress.setStatus(String.format("All done in %.1f seconds!", (System.currentTimeMillis() - startTime) / 1000.0), false, true);
+		SwingUtilities.invokeLater(() -> {
+			Clipboard c = Toolkit.getDefaultToolkit().getSystemClipboard();
+			StringSelection ss = new StringSelection(url);
+			Metrics.Timer timer = Metrics.start(Phase.CLIPBOARD);
+			try {
+				c.setContents(ss, ss);
+			} finally {
+				timer.stop();
 			}
-		}.start();
+			Metrics.record(Phase.TIME_TO_LINK, TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - startTime));
+			address.setText(url);
+		});
+	}
+
+	/**
+	 * Called when the upload has failed and will not be retried.
+	 */
+	public void failed(String message) {
+		result.completeExceptionally(new UploadException(message));
+		progress.setStatus("Upload failed", false, false);
+		if (frame == null) {
+			System.err.println("Upload failed: " + message);
+			return;
+		}
+		// Don't block the upload thread while the dialog is open.
+		SwingUtilities.invokeLater(
+				() -> JOptionPane.showMessageDialog(frame, message, "Upload failed", JOptionPane.ERROR_MESSAGE));
+	}
+
+	/**
+	 * Called when an upload attempt has failed and the upload will be retried later.
+	 *
+	 * @param delay The number of milliseconds until the next attempt.
+	 */
+	public void retrying(long delay) {
+		progress.setStatus("Upload failed, retrying in " + Math.max(1, delay / 1000) + "s", true, false);
+	}
+
+	/**
+	 * Called when the upload is waiting for other uploads to the same destination to finish.
+	 */
+	public void queued() {
+		progress.setStatus("Waiting for other uploads to finish...", true, false);
+	}
+
+	/**
+	 * Upload the given image in the background using the {@link UploadScheduler}.
+	 */
+	public static void upload(final Uploader u, final BufferedImage bi) {
+		UploadScheduler.submit(u, bi, -1);
+	}
+
+	/**
+	 * Upload the given revision of an image in the background using the {@link UploadScheduler}. The encoded image is
+	 * shared with other saves and uploads of the same revision through the {@link EncodeCache}.
+	 */
+	public static void upload(final Uploader u, final BufferedImage bi, final long revision) {
+		UploadScheduler.submit(u, bi, revision);
+	}
+
+	/**
+	 * Upload the given already encoded image in the background using the {@link UploadScheduler}.
+	 */
+	public static void upload(final Uploader u, final ImageSource source) {
+		UploadScheduler.submit(u, source);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,101 @@
+package net.maunium.maucapture.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.util.Args;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+/**
+ * An entity that sends a JSON object with one field containing binary data as a Base64 string. The data is encoded
+ * while it's being written to the connection, so the Base64 string and the JSON document never exist in memory.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class Base64JsonEntity extends AbstractHttpEntity {
+	private final byte[] prefix, suffix;
+	private final ImageSource source;
+	private ProgressReporter progress;
+
+	/**
+	 * Create a Base64 JSON entity.
+	 *
+	 * @param field    The name of the field that contains the Base64 data. It will be the first field in the object.
+	 * @param source   The image to encode.
+	 * @param others   The rest of the fields in the JSON object.
+	 * @param progress The reporter to report progress to while writing.
+	 */
+	public Base64JsonEntity(String field, ImageSource source, JsonObject others, ProgressReporter progress) {
+		Gson gson = new Gson();
+		String rest = gson.toJson(others);
+		this.prefix = ("{" + gson.toJson(field) + ":\"").getBytes(StandardCharsets.UTF_8);
+		this.suffix = ("\"" + (others.size() > 0 ? "," + rest.substring(1) : "}")).getBytes(StandardCharsets.UTF_8);
+		this.source = source;
+		this.progress = progress;
+		setContentType(ContentType.APPLICATION_JSON.toString());
+		setChunked(source.getLength() < 0);
+	}
+
+	@Override
+	public long getContentLength() {
+		long length = source.getLength();
+		return length < 0 ? -1 : prefix.length + 4 * ((length + 2) / 3) + suffix.length;
+	}
+
+	@Override
+	public boolean isRepeatable() {
+		return source.isRepeatable();
+	}
+
+	@Override
+	public boolean isStreaming() {
+		return false;
+	}
+
+	@Override
+	public InputStream getContent() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		write(out, null);
+		return new ByteArrayInputStream(out.toByteArray());
+	}
+
+	@Override
+	public void writeTo(final OutputStream out) throws IOException {
+		Args.notNull(out, "Output stream");
+		write(out, progress);
+	}
+
+	private void write(final OutputStream out, ProgressReporter progress) throws IOException {
+		out.write(prefix);
+		// Closing the Base64 stream writes the padding, but it must not close the connection stream.
+		OutputStream b64 = Base64.getEncoder().wrap(new FilterOutputStream(out) {
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+			}
+
+			@Override
+			public void close() throws IOException {
+				flush();
+			}
+		});
+		source.writeTo(progress != null ? new ProgressOutputStream(b64, progress, source.getLength()) : b64);
+		b64.close();
+		out.write(suffix);
+		out.flush();
+		if (progress != null) {
+			progress.finish();
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package net.maunium.maucapture.util;
+
+import java.awt.image.RenderedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An ImageSource backed by an in-memory buffer.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class ByteImageSource implements ImageSource {
+	private static final int CHUNK_SIZE = 64 * 1024;
+	private final String format;
+	private final byte[] data;
+	private final int offset, length;
+	private ImageEncoding.Stats stats;
+
+	public ByteImageSource(String format, byte[] data, int offset, int length) {
+		this.format = format;
+		this.data = data;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	/**
+	 * Encode the given image into memory.
+	 */
+	public static ByteImageSource encode(RenderedImage image, String format) throws IOException {
+		ExposedByteArrayOutputStream out = new ExposedByteArrayOutputStream();
+		ImageEncoding.Stats stats = ImageEncoding.write(image, format, out);
+		ByteImageSource source = new ByteImageSource(format, out.getBuffer(), 0, out.size());
+		source.stats = stats;
+		return source;
+	}
+
+	/**
+	 * Get statistics about how the image was encoded.
+	 *
+	 * @return The statistics, or {@code null} if the image wasn't encoded with {@link #encode(RenderedImage, String)}
+	 *         or the encoder doesn't report any.
+	 */
+	public ImageEncoding.Stats getStats() {
+		return stats;
+	}
+
+	/**
+	 * Get the buffer containing the encoded image. Only the bytes from {@link #getOffset()} to the offset plus
+	 * {@link #getLength()} are part of the image, and they must not be modified.
+	 */
+	public byte[] getData() {
+		return data;
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	@Override
+	public String getFormat() {
+		return format;
+	}
+
+	@Override
+	public long getLength() {
+		return length;
+	}
+
+	@Override
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	@Override
+	public void writeTo(OutputStream out) throws IOException {
+		// Write in chunks so that progress can be tracked.
+		for (int off = 0; off < length; off += CHUNK_SIZE) {
+			out.write(data, offset + off, Math.min(CHUNK_SIZE, length - off));
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package net.maunium.maucapture.util;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * The distinct colors of an image with up to {@link #MAX_COLORS} colors, stored in an open-addressing hash table of
+ * primitive ints so that counting doesn't box every pixel.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+class ColorTable {
+	/**
+	 * The maximum number of colors in a PNG palette.
+	 */
+	static final int MAX_COLORS = 256;
+	/**
+	 * The size of the hash table. Four times the maximum number of colors keeps probe sequences short.
+	 */
+	private static final int TABLE_SIZE = MAX_COLORS * 4;
+	/**
+	 * The masks tried for near-lossless reduction. Each one drops more low bits of the color channels, but never
+	 * touches alpha.
+	 */
+	private static final int[] NEAR_LOSSLESS_MASKS = {0xFFFEFEFE, 0xFFFCFCFC};
+
+	private final int mask;
+	private final int[] keys = new int[TABLE_SIZE];
+	/**
+	 * The palette index of each key plus one, so that zero means the slot is empty.
+	 */
+	private final short[] values = new short[TABLE_SIZE];
+	private final int[] colors = new int[MAX_COLORS];
+	private int size = 0;
+
+	private ColorTable(int mask) {
+		this.mask = mask;
+	}
+
+	/**
+	 * Collect the colors of the image.
+	 *
+	 * @param nearLossless Whether to merge colors that differ only in the lowest bits if there are too many colors
+	 *                     otherwise.
+	 * @return The colors, or {@code null} if there are too many.
+	 */
+	static ColorTable of(BufferedImage image, boolean nearLossless) {
+		ColorTable table = build(image, 0xFFFFFFFF);
+		if (table == null && nearLossless) {
+			for (int i = 0; i < NEAR_LOSSLESS_MASKS.length && table == null; i++) {
+				table = build(image, NEAR_LOSSLESS_MASKS[i]);
+			}
+		}
+		return table;
+	}
+
+	private static ColorTable build(BufferedImage image, int mask) {
+		ColorTable table = new ColorTable(mask);
+		int width = image.getWidth(), height = image.getHeight();
+		int[] row = new int[width];
+		int alpha = image.getColorModel().hasAlpha() ? 0 : 0xFF000000;
+		for (int y = 0; y < height; y++) {
+			readRow(image, y, row);
+			int prev = ~row[0];
+			for (int x = 0; x < width; x++) {
+				int p = row[x] | alpha;
+				// Screenshots have long runs of the same color, so skip the lookup for repeated pixels.
+				if (p != prev) {
+					if (!table.add(p)) {
+						return null;
+					}
+					prev = p;
+				}
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * Read a row of the image as packed ARGB ints. The alpha bits are undefined for opaque images.
+	 */
+	static void readRow(BufferedImage image, int y, int[] row) {
+		int type = image.getType();
+		if (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB) {
+			// Copies the packed ints as they are, without the color model conversion of getRGB.
+			image.getRaster().getDataElements(0, y, image.getWidth(), 1, row);
+		} else {
+			image.getRGB(0, y, image.getWidth(), 1, row, 0, image.getWidth());
+		}
+	}
+
+	private static int slot(int key) {
+		return (key * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(TABLE_SIZE));
+	}
+
+	/**
+	 * Add a color to the table unless it, or a color that only differs in the masked bits, is already there.
+	 *
+	 * @return {@code false} if the table is full.
+	 */
+	private boolean add(int color) {
+		int key = color & mask;
+		for (int i = slot(key); ; i = (i + 1) & (TABLE_SIZE - 1)) {
+			if (values[i] == 0) {
+				if (size == MAX_COLORS) {
+					return false;
+				}
+				keys[i] = key;
+				// The first color seen represents all colors that map to the same key.
+				colors[size] = color;
+				values[i] = (short) ++size;
+				return true;
+			} else if (keys[i] == key) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Get the palette index of a color.
+	 *
+	 * @return The index, or {@code -1} if the color isn't in the table.
+	 */
+	int indexOf(int color) {
+		int key = color & mask;
+		for (int i = slot(key); ; i = (i + 1) & (TABLE_SIZE - 1)) {
+			if (values[i] == 0) {
+				return -1;
+			} else if (keys[i] == key) {
+				return values[i] - 1;
+			}
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Get the color with the given index as an ARGB int.
+	 */
+	int get(int index) {
+		return colors[index];
+	}
+}
@@ -0,0 +1,83 @@
+package net.maunium.maucapture.util;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * A debugging aid that logs the stack trace of the event dispatch thread whenever it doesn't process events for more
+ * than {@link #THRESHOLD} milliseconds, so that blocking work on the event dispatch thread is easy to find. Enabled
+ * with the {@code maucapture.debug} system property.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class EdtWatchdog implements Runnable {
+	/**
+	 * How long the event dispatch thread may be blocked before it's logged, in milliseconds.
+	 */
+	public static final long THRESHOLD = 100;
+	/**
+	 * How often the event dispatch thread is checked, in milliseconds.
+	 */
+	private static final long INTERVAL = 20;
+
+	private static Thread thread;
+
+	private volatile Thread edt;
+	private volatile boolean responded;
+
+	/**
+	 * Start watching the event dispatch thread if it isn't being watched already.
+	 */
+	public static synchronized void start() {
+		if (thread != null) {
+			return;
+		}
+		thread = new Thread(new EdtWatchdog(), "EDT watchdog");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (true) {
+				responded = false;
+				long posted = System.nanoTime();
+				SwingUtilities.invokeLater(() -> {
+					edt = Thread.currentThread();
+					responded = true;
+				});
+				boolean reported = false;
+				while (!responded) {
+					Thread.sleep(INTERVAL);
+					long blocked = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - posted);
+					if (!reported && blocked > THRESHOLD && !responded) {
+						reported = true;
+						report(blocked);
+					}
+				}
+				if (reported) {
+					System.err.println("Event dispatch thread unblocked after "
+							+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - posted) + " ms");
+				}
+				Thread.sleep(INTERVAL);
+			}
+		} catch (InterruptedException e) {
+			// Stop watching.
+		}
+	}
+
+	private void report(long blocked) {
+		Thread edt = this.edt;
+		StringBuilder sb = new StringBuilder("Event dispatch thread blocked for over ").append(blocked).append(" ms");
+		if (edt != null) {
+			sb.append(", currently at:");
+			for (StackTraceElement element : edt.getStackTrace()) {
+				sb.append("\n\tat ").append(element);
+			}
+		}
+		System.err.println(sb);
+	}
+}
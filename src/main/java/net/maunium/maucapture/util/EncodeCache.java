@@ -0,0 +1,162 @@
+package net.maunium.maucapture.util;
+
+import java.awt.image.RenderedImage;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A small cache of encoded images, so saving, uploading and copying the same unchanged image only encodes it once.
+ * Entries are keyed by the revision of the image, the format and the encoder options, and the least recently used
+ * entries are dropped when the total size goes over the limit.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class EncodeCache {
+	/**
+	 * The maximum total size of the cached images in bytes.
+	 */
+	private static final long MAX_SIZE = 64 * 1024 * 1024;
+
+	private static final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private static long size = 0;
+
+	/**
+	 * Get the given revision of an image encoded in the given format with the current encoder options, encoding it
+	 * if it isn't cached.
+	 *
+	 * @param revision The revision of the image, or a negative number if the image isn't versioned and shouldn't be
+	 *                 cached.
+	 */
+	public static ByteImageSource encode(RenderedImage image, long revision, String format) throws IOException {
+		return get(revision, format, ImageEncoding.describeOptions(format), () -> ByteImageSource.encode(image, format));
+	}
+
+	/**
+	 * Get a cached encoded image, or encode it with the given function and cache the result. If another thread is
+	 * already encoding the same image, this waits for it instead of encoding again.
+	 *
+	 * @param revision The revision of the image, or a negative number if the image shouldn't be cached.
+	 * @param options  A string describing all encoder options that affect the output.
+	 */
+	public static ByteImageSource get(long revision, String format, String options, Callable<ByteImageSource> encoder)
+			throws IOException {
+		if (revision < 0) {
+			try {
+				return encoder.call();
+			} catch (IOException | RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new IOException(e);
+			}
+		}
+		String key = key(revision, format, options);
+		while (true) {
+			Entry entry;
+			boolean owner = false;
+			synchronized (EncodeCache.class) {
+				entry = entries.get(key);
+				if (entry == null) {
+					entry = new Entry(new FutureTask<>(encoder));
+					entries.put(key, entry);
+					owner = true;
+				}
+			}
+			if (owner) {
+				entry.task.run();
+			}
+			try {
+				ByteImageSource source = entry.task.get();
+				if (owner) {
+					added(key, entry, source.getLength());
+				}
+				return source;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for encoder", e);
+			} catch (ExecutionException e) {
+				synchronized (EncodeCache.class) {
+					entries.remove(key, entry);
+				}
+				if (!owner) {
+					// The other encode may have failed only because it was cancelled, so try again here.
+					continue;
+				}
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				}
+				throw new IOException("Failed to encode image", e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Get whether an image has been encoded or is being encoded.
+	 */
+	public static synchronized boolean contains(long revision, String format, String options) {
+		return revision >= 0 && entries.containsKey(key(revision, format, options));
+	}
+
+	/**
+	 * Add an image that was encoded elsewhere, e.g. while it was being streamed to a server.
+	 */
+	public static void put(long revision, String format, String options, ByteImageSource source) {
+		if (revision < 0) {
+			return;
+		}
+		String key = key(revision, format, options);
+		FutureTask<ByteImageSource> task = new FutureTask<>(() -> source);
+		task.run();
+		Entry entry = new Entry(task);
+		synchronized (EncodeCache.class) {
+			if (entries.containsKey(key)) {
+				return;
+			}
+			entries.put(key, entry);
+		}
+		added(key, entry, source.getLength());
+	}
+
+	/**
+	 * Drop all cached images.
+	 */
+	public static synchronized void clear() {
+		entries.clear();
+		size = 0;
+	}
+
+	private static synchronized void added(String key, Entry entry, long length) {
+		if (entries.get(key) != entry) {
+			// Cleared while encoding.
+			return;
+		}
+		entry.size = length;
+		size += length;
+		// The map is in access order, so the least recently used entries come first.
+		for (Iterator<Entry> it = entries.values().iterator(); size > MAX_SIZE && it.hasNext(); ) {
+			Entry e = it.next();
+			if (e != entry && e.task.isDone()) {
+				size -= e.size;
+				it.remove();
+			}
+		}
+	}
+
+	private static String key(long revision, String format, String options) {
+		return revision + "/" + format.toLowerCase() + "/" + options;
+	}
+
+	private static class Entry {
+		private final FutureTask<ByteImageSource> task;
+		private long size = 0;
+
+		private Entry(FutureTask<ByteImageSource> task) {
+			this.task = task;
+		}
+	}
+}
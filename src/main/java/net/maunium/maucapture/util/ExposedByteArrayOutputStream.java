@@ -0,0 +1,23 @@
+package net.maunium.maucapture.util;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * A ByteArrayOutputStream that gives direct access to its internal buffer, so the written bytes can be used
+ * without {@link #toByteArray()} copying them.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+	public ExposedByteArrayOutputStream() {
+		super(64 * 1024);
+	}
+
+	/**
+	 * Get the internal buffer. Only the first {@link #size()} bytes are valid.
+	 */
+	public byte[] getBuffer() {
+		return buf;
+	}
+}
@@ -0,0 +1,53 @@
+package net.maunium.maucapture.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * An ImageSource backed by an already encoded image file.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class FileImageSource implements ImageSource {
+	private final String format;
+	private final File file;
+
+	public FileImageSource(String format, File file) {
+		this.format = format;
+		this.file = file;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	@Override
+	public String getFormat() {
+		return format;
+	}
+
+	@Override
+	public long getLength() {
+		return file.length();
+	}
+
+	@Override
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	@Override
+	public void writeTo(OutputStream out) throws IOException {
+		try (InputStream in = new FileInputStream(file)) {
+			byte[] buf = new byte[64 * 1024];
+			int l;
+			while ((l = in.read(buf)) != -1) {
+				out.write(buf, 0, l);
+			}
+		}
+	}
+}
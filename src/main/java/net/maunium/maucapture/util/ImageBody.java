@@ -0,0 +1,50 @@
+package net.maunium.maucapture.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.content.AbstractContentBody;
+import org.apache.http.util.Args;
+
+/**
+ * A multipart body part that writes an {@link ImageSource} and reports its progress.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class ImageBody extends AbstractContentBody {
+	private ImageSource source;
+	private String fileName;
+	private ProgressReporter progress;
+
+	public ImageBody(ImageSource source, String fileName, ProgressReporter progress) {
+		super(ContentType.create(source.getMimeType()));
+		this.source = source;
+		this.fileName = fileName;
+		this.progress = progress;
+	}
+
+	@Override
+	public String getFilename() {
+		return fileName;
+	}
+
+	@Override
+	public String getTransferEncoding() {
+		return "binary";
+	}
+
+	@Override
+	public long getContentLength() {
+		return source.getLength();
+	}
+
+	@Override
+	public void writeTo(OutputStream out) throws IOException {
+		Args.notNull(out, "Output stream");
+		source.writeTo(new ProgressOutputStream(out, progress, source.getLength()));
+		progress.finish();
+		out.flush();
+	}
+}
@@ -0,0 +1,79 @@
+package net.maunium.maucapture.util;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.stream.IntStream;
+
+/**
+ * Converts images to the pixel format of the screen, so drawing them doesn't need to go through the slow generic
+ * conversion loops of Java2D.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class ImageConversion {
+	/**
+	 * Images with more pixels than this are converted in parallel strips.
+	 */
+	private static final int PARALLEL_THRESHOLD = 2 * 1024 * 1024;
+	/**
+	 * The minimum height of a strip when converting in parallel.
+	 */
+	private static final int MIN_STRIP_HEIGHT = 64;
+
+	/**
+	 * Get a copy of the given image in the format of the default screen, or the image itself if it's already in that
+	 * format. When headless, images are converted to {@link BufferedImage#TYPE_INT_RGB} or
+	 * {@link BufferedImage#TYPE_INT_ARGB}.
+	 */
+	public static BufferedImage toCompatible(BufferedImage bi) {
+		int transparency = bi.getColorModel().getTransparency();
+		BufferedImage out;
+		if (GraphicsEnvironment.isHeadless()) {
+			int type = transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+			if (bi.getType() == type) {
+				return bi;
+			}
+			out = new BufferedImage(bi.getWidth(), bi.getHeight(), type);
+		} else {
+			GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+					.getDefaultConfiguration();
+			if (bi.getColorModel().equals(gc.getColorModel(transparency))
+					&& bi.getType() != BufferedImage.TYPE_CUSTOM) {
+				return bi;
+			}
+			out = gc.createCompatibleImage(bi.getWidth(), bi.getHeight(), transparency);
+		}
+		copy(bi, out);
+		return out;
+	}
+
+	/**
+	 * Draw the source image onto the destination image, splitting large images into horizontal strips that are
+	 * converted in parallel.
+	 */
+	private static void copy(BufferedImage src, BufferedImage dst) {
+		int width = src.getWidth(), height = src.getHeight();
+		int strips = 1;
+		if ((long) width * height > PARALLEL_THRESHOLD) {
+			strips = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), height / MIN_STRIP_HEIGHT));
+		}
+		int stripHeight = (height + strips - 1) / strips;
+		IntStream range = IntStream.range(0, strips);
+		if (strips > 1) {
+			range = range.parallel();
+		}
+		// Each strip uses its own Graphics object and writes to separate rows of the destination.
+		range.forEach(i -> {
+			int y0 = i * stripHeight, y1 = Math.min(height, y0 + stripHeight);
+			Graphics2D g = dst.createGraphics();
+			g.setComposite(AlphaComposite.Src);
+			g.drawImage(src, 0, y0, width, y1, 0, y0, width, y1, null);
+			g.dispose();
+		});
+	}
+}
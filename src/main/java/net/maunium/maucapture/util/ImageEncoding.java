@@ -0,0 +1,199 @@
+package net.maunium.maucapture.util;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+
+/**
+ * Image encoding helpers.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class ImageEncoding {
+	private static volatile int pngCompression = PngEncoder.DEFAULT_LEVEL;
+	private static volatile boolean pngPalette = true, pngNearLossless = false;
+
+	/**
+	 * Set the deflate compression level (0-9) used when encoding PNGs.
+	 */
+	public static void setPngCompression(int level) {
+		pngCompression = Math.max(0, Math.min(9, level));
+	}
+
+	public static int getPngCompression() {
+		return pngCompression;
+	}
+
+	/**
+	 * Set whether or not PNGs with at most 256 colors should be written with a palette.
+	 *
+	 * @see PngEncoder#setPalette(boolean)
+	 */
+	public static void setPngPalette(boolean palette) {
+		pngPalette = palette;
+	}
+
+	public static boolean isPngPalette() {
+		return pngPalette;
+	}
+
+	/**
+	 * Set whether or not nearly identical colors may be merged to fit PNGs in a palette.
+	 *
+	 * @see PngEncoder#setNearLossless(boolean)
+	 */
+	public static void setPngNearLossless(boolean nearLossless) {
+		pngNearLossless = nearLossless;
+	}
+
+	public static boolean isPngNearLossless() {
+		return pngNearLossless;
+	}
+
+	/**
+	 * Get a string describing the current encoder options that affect the output of the given format, for use in
+	 * cache keys.
+	 */
+	public static String describeOptions(String format) {
+		if (format.equalsIgnoreCase("png")) {
+			return "level=" + pngCompression + ",palette=" + pngPalette + ",near-lossless=" + pngNearLossless;
+		}
+		return "";
+	}
+
+	/**
+	 * Encode the given image to the given stream. Unlike {@link ImageIO#write(RenderedImage, String, OutputStream)},
+	 * this never uses a temporary file as a cache, and the encoded bytes are passed on to the stream as soon as the
+	 * encoder has finished with them. PNGs are encoded with the multi-core {@link PngEncoder}.
+	 *
+	 * @return Statistics about the encoded image, or {@code null} if the encoder doesn't report any.
+	 * @throws IOException If encoding or writing fails, or if there is no encoder for the given format.
+	 */
+	public static Stats write(RenderedImage image, String format, OutputStream out) throws IOException {
+		return write(image, format, -1, out);
+	}
+
+	/**
+	 * Encode the given image to the given stream with the given lossy compression quality.
+	 *
+	 * @param quality The quality from 0 to 1, or a negative number to use the default quality of the format. Ignored
+	 *                for formats that don't support lossy compression.
+	 * @return Statistics about the encoded image, or {@code null} if the encoder doesn't report any.
+	 * @throws IOException If encoding or writing fails, or if there is no encoder for the given format.
+	 */
+	public static Stats write(RenderedImage image, String format, float quality, OutputStream out) throws IOException {
+		if (image instanceof BufferedImage && format.equalsIgnoreCase("png")) {
+			PngEncoder encoder = new PngEncoder(pngCompression);
+			encoder.setPalette(pngPalette);
+			encoder.setNearLossless(pngNearLossless);
+			encoder.write((BufferedImage) image, out);
+			return new Stats(encoder.getPaletteSize(), encoder.getPixelDataSize(), encoder.getTruecolorDataSize());
+		}
+		if (image.getColorModel().hasAlpha() && !supportsAlpha(format)) {
+			image = flatten(image);
+		}
+		Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+		if (!writers.hasNext()) {
+			throw new IOException("No image writer found for format " + format);
+		}
+		ImageWriter writer = writers.next();
+		ImageOutputStream ios = new MemoryCacheImageOutputStream(out);
+		try {
+			writer.setOutput(ios);
+			ImageWriteParam param = writer.getDefaultWriteParam();
+			if (quality >= 0 && param.canWriteCompressed()) {
+				param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+				if (param.getCompressionType() == null) {
+					param.setCompressionType(param.getCompressionTypes()[0]);
+				}
+				if (param.isCompressionLossless()) {
+					param.setCompressionMode(ImageWriteParam.MODE_DEFAULT);
+				} else {
+					param.setCompressionQuality(quality);
+				}
+			}
+			writer.write(null, new IIOImage(image, null, null), param);
+		} finally {
+			writer.dispose();
+			// Closing the image stream flushes it, but doesn't close the underlying stream.
+			ios.close();
+		}
+		return null;
+	}
+
+	private static boolean supportsAlpha(String format) {
+		switch (format.toLowerCase()) {
+		case "jpg":
+		case "jpeg":
+		case "bmp":
+		case "wbmp":
+			return false;
+		default:
+			return true;
+		}
+	}
+
+	/**
+	 * Draw the image on a white background, for formats whose writers reject images with an alpha channel.
+	 */
+	private static BufferedImage flatten(RenderedImage image) {
+		BufferedImage out = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = out.createGraphics();
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, out.getWidth(), out.getHeight());
+		g.drawRenderedImage(image, new AffineTransform());
+		g.dispose();
+		return out;
+	}
+
+	/**
+	 * Statistics about how an image was encoded.
+	 */
+	public static class Stats {
+		private final int paletteSize;
+		private final long pixelDataSize, truecolorDataSize;
+
+		private Stats(int paletteSize, long pixelDataSize, long truecolorDataSize) {
+			this.paletteSize = paletteSize;
+			this.pixelDataSize = pixelDataSize;
+			this.truecolorDataSize = truecolorDataSize;
+		}
+
+		/**
+		 * Get the number of colors in the palette.
+		 *
+		 * @return The number of colors, or {@code -1} if the image was written in truecolor.
+		 */
+		public int getPaletteSize() {
+			return paletteSize;
+		}
+
+		/**
+		 * Get the number of bytes of filtered pixel data before compression.
+		 */
+		public long getPixelDataSize() {
+			return pixelDataSize;
+		}
+
+		/**
+		 * Get the number of bytes of filtered pixel data the image would have had in truecolor.
+		 */
+		public long getTruecolorDataSize() {
+			return truecolorDataSize;
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package net.maunium.maucapture.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.util.Args;
+
+/**
+ * An entity that writes an {@link ImageSource} as the request body and reports its progress. If the length of the
+ * source isn't known, the body is sent with chunked encoding while the image is being encoded.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class ImageEntity extends AbstractHttpEntity {
+	private ImageSource source;
+	private ProgressReporter progress;
+
+	public ImageEntity(ImageSource source, ProgressReporter progress) {
+		this.source = source;
+		this.progress = progress;
+		setContentType(source.getMimeType());
+		setChunked(source.getLength() < 0);
+	}
+
+	@Override
+	public long getContentLength() {
+		return source.getLength();
+	}
+
+	@Override
+	public boolean isRepeatable() {
+		return source.isRepeatable();
+	}
+
+	@Override
+	public boolean isStreaming() {
+		return false;
+	}
+
+	@Override
+	public InputStream getContent() throws IOException {
+		// Only used for things like logging the request, so buffering the whole image is fine.
+		ExposedByteArrayOutputStream out = new ExposedByteArrayOutputStream();
+		source.writeTo(out);
+		return new ByteArrayInputStream(out.getBuffer(), 0, out.size());
+	}
+
+	@Override
+	public void writeTo(OutputStream out) throws IOException {
+		Args.notNull(out, "Output stream");
+		source.writeTo(new ProgressOutputStream(out, progress, source.getLength()));
+		progress.finish();
+		out.flush();
+	}
+}
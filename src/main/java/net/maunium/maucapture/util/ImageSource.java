@@ -0,0 +1,40 @@
+package net.maunium.maucapture.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An encoded image that can be written to a request body.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public interface ImageSource {
+	/**
+	 * Get the image format name, e.g. {@code png}.
+	 */
+	String getFormat();
+
+	/**
+	 * Get the MIME type of the encoded image.
+	 */
+	default String getMimeType() {
+		String format = getFormat().toLowerCase();
+		return "image/" + (format.equals("jpg") ? "jpeg" : format);
+	}
+
+	/**
+	 * Get the length of the encoded image in bytes, or {@code -1} if it isn't known before writing.
+	 */
+	long getLength();
+
+	/**
+	 * Get whether or not the image can be written more than once.
+	 */
+	boolean isRepeatable();
+
+	/**
+	 * Write the encoded image to the given stream.
+	 */
+	void writeTo(OutputStream out) throws IOException;
+}
@@ -0,0 +1,182 @@
+package net.maunium.maucapture.util;
+
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Window;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JDialog;
+import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import net.maunium.maucapture.MauCapture;
+
+/**
+ * A blocking operation, such as file or network I/O, running on a shared background executor instead of the event
+ * dispatch thread. Use {@link #EDT} with the {@code *Async} methods to handle the result on the event dispatch
+ * thread.
+ * <p>
+ * Cancelling the task completes it with a {@link CancellationException} right away, interrupts the worker thread and
+ * runs the handlers added with {@link #onCancel(Runnable)}.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class IoTask<T> extends CompletableFuture<T> {
+	/**
+	 * Runs the completion stages on the event dispatch thread.
+	 */
+	public static final Executor EDT = SwingUtilities::invokeLater;
+	/**
+	 * How long a task may run before its progress window is opened, in milliseconds.
+	 */
+	private static final int PROGRESS_DELAY = 300;
+
+	private static final AtomicInteger threadCount = new AtomicInteger(0);
+	private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(4, 4, 30, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<>(), r -> {
+				Thread t = new Thread(r, "I/O worker " + threadCount.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			});
+
+	static {
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * The operation a task runs.
+	 */
+	@FunctionalInterface
+	public interface Body<T> {
+		T run(IoTask<T> task) throws Exception;
+	}
+
+	private final ProgressReporter progress = new ProgressReporter(null);
+	private final List<Runnable> cancelHandlers = new ArrayList<>();
+	private Future<?> future;
+
+	private IoTask() {
+	}
+
+	/**
+	 * Start running the given operation in the background.
+	 */
+	public static <T> IoTask<T> submit(Body<T> body) {
+		IoTask<T> task = new IoTask<>();
+		Future<?> future = executor.submit(() -> {
+			if (task.isDone()) {
+				return;
+			}
+			try {
+				task.complete(body.run(task));
+			} catch (Throwable t) {
+				task.completeExceptionally(t);
+			}
+		});
+		synchronized (task) {
+			task.future = future;
+			if (task.isCancelled()) {
+				future.cancel(true);
+			}
+		}
+		return task;
+	}
+
+	/**
+	 * Get the progress reporter the operation can report its progress to.
+	 */
+	public ProgressReporter getProgress() {
+		return progress;
+	}
+
+	/**
+	 * Add a function to run if the task is cancelled, e.g. to abort a network request that can't be interrupted. If
+	 * the task has already been cancelled, the function is run immediately.
+	 */
+	public void onCancel(Runnable handler) {
+		synchronized (this) {
+			if (!isCancelled()) {
+				cancelHandlers.add(handler);
+				return;
+			}
+		}
+		handler.run();
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		if (!super.cancel(mayInterruptIfRunning)) {
+			return false;
+		}
+		List<Runnable> handlers;
+		synchronized (this) {
+			if (future != null) {
+				future.cancel(true);
+			}
+			handlers = new ArrayList<>(cancelHandlers);
+			cancelHandlers.clear();
+		}
+		for (Runnable handler : handlers) {
+			handler.run();
+		}
+		return true;
+	}
+
+	/**
+	 * Open a small window with a progress bar and a cancel button if the task is still running after a moment. The
+	 * window closes itself when the task completes. Must be called on the event dispatch thread.
+	 *
+	 * @param parent The component the window is shown over.
+	 * @param title  The title of the window.
+	 * @return This task.
+	 */
+	public IoTask<T> showProgress(Component parent, String title) {
+		Timer timer = new Timer(PROGRESS_DELAY, evt -> {
+			if (isDone()) {
+				return;
+			}
+			Window owner = parent instanceof Window ? (Window) parent : parent != null ? SwingUtilities.getWindowAncestor(parent) : null;
+			JDialog dialog = new JDialog(owner, title);
+			dialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+			JProgressBar bar = new JProgressBar();
+			bar.setIndeterminate(true);
+			bar.setStringPainted(true);
+			bar.setString(title + "...");
+			bar.setFont(MauCapture.getLato());
+			bar.setPreferredSize(new Dimension(300, 30));
+			JButton cancel = new JButton("Cancel");
+			cancel.setFont(MauCapture.getLato());
+			cancel.addActionListener(e -> cancel(true));
+			dialog.getContentPane().setLayout(new BorderLayout(5, 5));
+			((JComponent) dialog.getContentPane()).setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+			dialog.add(bar, BorderLayout.CENTER);
+			dialog.add(cancel, BorderLayout.EAST);
+			dialog.pack();
+			dialog.setLocationRelativeTo(parent);
+			progress.setProgressBar(bar);
+			whenCompleteAsync((result, error) -> {
+				progress.setProgressBar(null);
+				dialog.dispose();
+			}, EDT);
+			dialog.setVisible(true);
+		});
+		timer.setRepeats(false);
+		timer.start();
+		return this;
+	}
+}
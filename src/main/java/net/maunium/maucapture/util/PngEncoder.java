@@ -0,0 +1,513 @@
+package net.maunium.maucapture.util;
+
+import java.awt.image.BufferedImage;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A PNG encoder that uses all cores. The image is split into horizontal strips which are filtered and compressed
+ * in parallel, and the compressed strips are joined into one zlib stream the same way pigz does it: each strip is
+ * compressed with the end of the previous strip as the preset dictionary and ends with a sync flush, and the
+ * checksums of the strips are combined.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class PngEncoder {
+	private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+	/**
+	 * The size of the deflate window, and so the maximum useful dictionary size.
+	 */
+	private static final int WINDOW_SIZE = 32 * 1024;
+	/**
+	 * The approximate amount of uncompressed data in each strip. Smaller strips split the work better, but each strip
+	 * boundary costs a few bytes and some compression.
+	 */
+	private static final int STRIP_BYTES = 512 * 1024;
+	public static final int DEFAULT_LEVEL = 6;
+
+	private static final int FILTER_NONE = 0, FILTER_SUB = 1, FILTER_UP = 2, FILTER_PAETH = 4;
+
+	private final int level;
+	private final ForkJoinPool pool;
+	private boolean palette = true, nearLossless = false;
+	private int paletteSize = -1;
+	private long truecolorDataSize, pixelDataSize;
+
+	/**
+	 * Create an encoder that runs in the fork-join pool of the calling task, or the common pool if called from
+	 * outside a fork-join pool.
+	 *
+	 * @param level The deflate compression level from 0 to 9.
+	 */
+	public PngEncoder(int level) {
+		this(level, currentPool());
+	}
+
+	/**
+	 * Get the pool the calling task is running in, or the common pool. Running nested work in the same pool keeps
+	 * e.g. low-priority background encoding from spilling onto the common pool.
+	 */
+	static ForkJoinPool currentPool() {
+		ForkJoinPool pool = ForkJoinTask.getPool();
+		return pool != null ? pool : ForkJoinPool.commonPool();
+	}
+
+	public PngEncoder(int level, ForkJoinPool pool) {
+		this.level = Math.max(0, Math.min(9, level));
+		this.pool = pool;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * Set whether or not images with at most 256 colors should be written as indexed-color PNGs. Enabled by default.
+	 */
+	public void setPalette(boolean palette) {
+		this.palette = palette;
+	}
+
+	/**
+	 * Set whether or not images with too many colors for a palette should be checked again with the lowest bits of
+	 * the color channels ignored. Merged colors differ by at most 3 in each channel. Disabled by default.
+	 */
+	public void setNearLossless(boolean nearLossless) {
+		this.nearLossless = nearLossless;
+	}
+
+	/**
+	 * Get the number of colors in the palette of the last written image.
+	 *
+	 * @return The number of colors, or {@code -1} if the last image was written in truecolor.
+	 */
+	public int getPaletteSize() {
+		return paletteSize;
+	}
+
+	/**
+	 * Get the number of bytes of filtered pixel data the last image would have had in truecolor. Together with
+	 * {@link #getPixelDataSize()}, this shows how much the palette saved before compression.
+	 */
+	public long getTruecolorDataSize() {
+		return truecolorDataSize;
+	}
+
+	/**
+	 * Get the number of bytes of filtered pixel data in the last written image.
+	 */
+	public long getPixelDataSize() {
+		return pixelDataSize;
+	}
+
+	/**
+	 * Encode the given image as PNG. Strips are written to the stream in order as soon as they're ready.
+	 */
+	public void write(BufferedImage image, OutputStream out) throws IOException {
+		int width = image.getWidth(), height = image.getHeight();
+		boolean alpha = image.getColorModel().hasAlpha();
+		if (1 + (long) width * 4 > Integer.MAX_VALUE / 4) {
+			throw new IOException("Image is too wide");
+		}
+		Layout layout = new Layout(width, alpha, palette ? ColorTable.of(image, nearLossless) : null);
+		long rowBytes = 1 + layout.stride;
+		paletteSize = layout.colors != null ? layout.colors.size() : -1;
+		truecolorDataSize = (1 + (long) width * (alpha ? 4 : 3)) * height;
+		pixelDataSize = rowBytes * height;
+		int rowsPerStrip = (int) Math.max(1, STRIP_BYTES / rowBytes);
+		int strips = (height + rowsPerStrip - 1) / rowsPerStrip;
+
+		List<ForkJoinTask<Strip>> tasks = new ArrayList<>(strips);
+		for (int i = 0; i < strips; i++) {
+			int y0 = i * rowsPerStrip, y1 = Math.min(height, y0 + rowsPerStrip);
+			boolean last = i == strips - 1;
+			tasks.add(pool.submit(() -> compressStrip(image, layout, y0, y1, last)));
+		}
+
+		DataOutputStream dos = new DataOutputStream(out);
+		dos.write(SIGNATURE);
+		byte[] ihdr = new byte[13];
+		putInt(ihdr, 0, width);
+		putInt(ihdr, 4, height);
+		ihdr[8] = (byte) layout.bitDepth;
+		ihdr[9] = (byte) (layout.colors != null ? 3 : alpha ? 6 : 2); // Color type: indexed, RGBA or RGB
+		// Compression, filter and interlace methods are all 0.
+		writeChunk(dos, "IHDR", ihdr, 0, ihdr.length);
+		if (layout.colors != null) {
+			writePalette(dos, layout.colors);
+		}
+
+		long adler = 1;
+		boolean written = false;
+		try {
+			for (int i = 0; i < strips; i++) {
+				// Joining a task from inside a fork-join pool doesn't check for interrupts, so check them here to
+				// allow cancelling background encodes.
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+				Strip strip = tasks.get(i).get();
+				byte[] data = strip.data;
+				int len = strip.length;
+				if (i == 0) {
+					// The zlib header goes before the first strip. The FCHECK bits make the header a multiple of 31.
+					int flevel = level < 2 ? 0 : level < 6 ? 1 : level == 6 ? 2 : 3;
+					int header = 0x7800 | (flevel << 6);
+					header += 31 - header % 31;
+					data = prepend(data, len, (byte) (header >> 8), (byte) header);
+					len += 2;
+				}
+				adler = combineAdler32(adler, strip.adler, strip.uncompressed);
+				if (i == strips - 1) {
+					// The combined checksum of all the uncompressed data goes after the last strip.
+					data = append(data, len, adler);
+					len += 4;
+				}
+				writeChunk(dos, "IDAT", data, 0, len);
+			}
+			written = true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while encoding", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Failed to encode image", e.getCause());
+		} finally {
+			// Don't leave the remaining strips compressing if encoding or writing to the output failed.
+			if (!written) {
+				tasks.forEach(t -> t.cancel(true));
+			}
+		}
+		writeChunk(dos, "IEND", new byte[0], 0, 0);
+		dos.flush();
+	}
+
+	/**
+	 * The compressed data of a strip and the checksum of its uncompressed data.
+	 */
+	private static class Strip {
+		private byte[] data;
+		private int length;
+		private long adler;
+		private long uncompressed;
+	}
+
+	/**
+	 * Filter and compress the rows from y0 (inclusive) to y1 (exclusive).
+	 */
+	private Strip compressStrip(BufferedImage image, Layout layout, int y0, int y1, boolean last) throws IOException {
+		int width = image.getWidth();
+		int stride = layout.stride, bpp = layout.bpp;
+		boolean unfiltered = layout.colors != null || level == 0;
+		int[] pixels = new int[width];
+		byte[] prev = new byte[stride], cur = new byte[stride];
+		byte[] filtered = new byte[(y1 - y0) * (stride + 1)];
+		byte[] scratch = new byte[stride];
+
+		// Filtering the first row needs the row above it, and the dictionary needs the filtered end of the previous
+		// strip. Both are recomputed here so that strips don't have to wait for each other.
+		int dictRows = y0 == 0 ? 0 : Math.min(y0, (WINDOW_SIZE + stride) / (stride + 1));
+		byte[] dictionary = dictRows > 0 ? new byte[dictRows * (stride + 1)] : null;
+		int start = y0 - dictRows;
+		if (start > 0) {
+			readRow(image, start - 1, pixels, prev, layout);
+		}
+		for (int y = start; y < y1; y++) {
+			readRow(image, y, pixels, cur, layout);
+			byte[] out = y < y0 ? dictionary : filtered;
+			int off = (y - (y < y0 ? start : y0)) * (stride + 1);
+			if (unfiltered) {
+				out[off] = FILTER_NONE;
+				System.arraycopy(cur, 0, out, off + 1, stride);
+			} else {
+				filterRow(cur, prev, y == 0, bpp, out, off, scratch);
+			}
+			byte[] tmp = prev;
+			prev = cur;
+			cur = tmp;
+		}
+
+		Deflater deflater = new Deflater(level, true);
+		try {
+			if (dictionary != null) {
+				int dictLen = Math.min(WINDOW_SIZE, dictionary.length);
+				deflater.setDictionary(dictionary, dictionary.length - dictLen, dictLen);
+			}
+			deflater.setInput(filtered);
+			if (last) {
+				deflater.finish();
+			}
+			byte[] out = new byte[Math.max(1024, filtered.length / 4)];
+			int len = 0;
+			while (true) {
+				if (len == out.length) {
+					out = Arrays.copyOf(out, out.length * 2);
+				}
+				int space = out.length - len;
+				// A sync flush ends the output on a byte boundary, so the next strip can be appended.
+				len += deflater.deflate(out, len, space, last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+				// When flushing, the output is complete once deflate stops filling the whole buffer.
+				if (last ? deflater.finished() : out.length - len > 0) {
+					break;
+				}
+			}
+			Adler32 adler = new Adler32();
+			adler.update(filtered, 0, filtered.length);
+			Strip strip = new Strip();
+			strip.data = out;
+			strip.length = len;
+			strip.adler = adler.getValue();
+			strip.uncompressed = filtered.length;
+			return strip;
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Read a row of the image as RGB or RGBA bytes, or as packed palette indices.
+	 */
+	private static void readRow(BufferedImage image, int y, int[] pixels, byte[] row, Layout layout)
+			throws IOException {
+		int width = image.getWidth();
+		ColorTable.readRow(image, y, pixels);
+		int i = 0;
+		if (layout.colors != null) {
+			int opaque = layout.alpha ? 0 : 0xFF000000;
+			int depth = layout.bitDepth, perByte = 8 / depth;
+			int acc = 0, count = 0, prev = ~pixels[0], index = 0;
+			for (int x = 0; x < width; x++) {
+				int p = pixels[x] | opaque;
+				if (p != prev) {
+					index = layout.colors.indexOf(p);
+					if (index < 0) {
+						// The image was changed after the palette was built.
+						throw new IOException(String.format("Color #%08X at %d,%d is not in the palette", p, x, y));
+					}
+					prev = p;
+				}
+				acc = (acc << depth) | index;
+				if (++count == perByte) {
+					row[i++] = (byte) acc;
+					acc = count = 0;
+				}
+			}
+			if (count > 0) {
+				// Pixels are packed from the most significant bit, so pad the last byte on the right.
+				row[i] = (byte) (acc << (8 - count * depth));
+			}
+		} else if (layout.bpp == 4) {
+			for (int x = 0; x < width; x++) {
+				int p = pixels[x];
+				row[i++] = (byte) (p >> 16);
+				row[i++] = (byte) (p >> 8);
+				row[i++] = (byte) p;
+				row[i++] = (byte) (p >>> 24);
+			}
+		} else {
+			for (int x = 0; x < width; x++) {
+				int p = pixels[x];
+				row[i++] = (byte) (p >> 16);
+				row[i++] = (byte) (p >> 8);
+				row[i++] = (byte) p;
+			}
+		}
+	}
+
+	/**
+	 * Pick a filter for the row and write the filter type and filtered bytes to the output.
+	 * <p>
+	 * The heuristic is tuned for screenshots: rows identical to the one above (very common in UI backgrounds) are
+	 * detected with a cheap comparison and use the up filter. Otherwise the filter with the smallest sum of absolute
+	 * values is used, but paeth is only tried at higher compression levels since it's the slowest to compute and
+	 * rarely wins on flat UI graphics.
+	 */
+	private void filterRow(byte[] cur, byte[] prev, boolean first, int bpp, byte[] out, int off, byte[] scratch) {
+		int len = cur.length;
+		if (!first && Arrays.equals(cur, prev)) {
+			out[off] = FILTER_UP;
+			Arrays.fill(out, off + 1, off + 1 + len, (byte) 0);
+			return;
+		}
+
+		// Sub filter, written directly to the output.
+		long best = 0;
+		for (int i = 0; i < len; i++) {
+			int v = (cur[i] - (i >= bpp ? cur[i - bpp] : 0)) & 0xFF;
+			out[off + 1 + i] = (byte) v;
+			best += v < 128 ? v : 256 - v;
+		}
+		int bestFilter = FILTER_SUB;
+		if (first) {
+			out[off] = FILTER_SUB;
+			return;
+		}
+
+		// Up filter, into the scratch buffer. Stop early if it's already worse than sub.
+		long sum = 0;
+		int i = 0;
+		for (; i < len && sum < best; i++) {
+			int v = (cur[i] - prev[i]) & 0xFF;
+			scratch[i] = (byte) v;
+			sum += v < 128 ? v : 256 - v;
+		}
+		if (i == len && sum < best) {
+			best = sum;
+			bestFilter = FILTER_UP;
+			System.arraycopy(scratch, 0, out, off + 1, len);
+		}
+
+		if (level >= 6) {
+			sum = 0;
+			i = 0;
+			for (; i < len && sum < best; i++) {
+				int a = i >= bpp ? cur[i - bpp] & 0xFF : 0, b = prev[i] & 0xFF, c = i >= bpp ? prev[i - bpp] & 0xFF : 0;
+				int v = (cur[i] - paeth(a, b, c)) & 0xFF;
+				scratch[i] = (byte) v;
+				sum += v < 128 ? v : 256 - v;
+			}
+			if (i == len && sum < best) {
+				bestFilter = FILTER_PAETH;
+				System.arraycopy(scratch, 0, out, off + 1, len);
+			}
+		}
+		out[off] = (byte) bestFilter;
+	}
+
+	/**
+	 * Write the PLTE chunk, and a tRNS chunk if any color is not fully opaque.
+	 */
+	private static void writePalette(DataOutputStream out, ColorTable colors) throws IOException {
+		byte[] plte = new byte[colors.size() * 3];
+		byte[] trns = new byte[colors.size()];
+		int trnsLength = 0;
+		for (int i = 0; i < colors.size(); i++) {
+			int c = colors.get(i);
+			plte[i * 3] = (byte) (c >> 16);
+			plte[i * 3 + 1] = (byte) (c >> 8);
+			plte[i * 3 + 2] = (byte) c;
+			trns[i] = (byte) (c >>> 24);
+			if (c >>> 24 != 0xFF) {
+				// Entries after the last one in tRNS are opaque.
+				trnsLength = i + 1;
+			}
+		}
+		writeChunk(out, "PLTE", plte, 0, plte.length);
+		if (trnsLength > 0) {
+			writeChunk(out, "tRNS", trns, 0, trnsLength);
+		}
+	}
+
+	/**
+	 * The way pixels are stored in the rows of an image.
+	 */
+	private static class Layout {
+		private final boolean alpha;
+		/**
+		 * The palette, or {@code null} for truecolor.
+		 */
+		private final ColorTable colors;
+		private final int bitDepth, stride;
+		/**
+		 * The number of bytes per complete pixel, which is the distance the sub and paeth filters look back.
+		 */
+		private final int bpp;
+
+		private Layout(int width, boolean alpha, ColorTable colors) {
+			this.alpha = alpha;
+			this.colors = colors;
+			if (colors != null) {
+				int n = colors.size();
+				bitDepth = n <= 2 ? 1 : n <= 4 ? 2 : n <= 16 ? 4 : 8;
+				stride = (width * bitDepth + 7) / 8;
+				bpp = 1;
+			} else {
+				bitDepth = 8;
+				bpp = alpha ? 4 : 3;
+				stride = width * bpp;
+			}
+		}
+	}
+
+	private static int paeth(int a, int b, int c) {
+		int p = a + b - c;
+		int pa = Math.abs(p - a), pb = Math.abs(p - b), pc = Math.abs(p - c);
+		if (pa <= pb && pa <= pc) {
+			return a;
+		} else if (pb <= pc) {
+			return b;
+		}
+		return c;
+	}
+
+	/**
+	 * Get the Adler-32 checksum of two pieces of data joined together from the checksums of the pieces, like
+	 * {@code adler32_combine} in zlib.
+	 *
+	 * @param len2 The length of the second piece.
+	 */
+	static long combineAdler32(long adler1, long adler2, long len2) {
+		final long base = 65521;
+		long rem = len2 % base;
+		long sum1 = adler1 & 0xFFFF;
+		long sum2 = (rem * sum1) % base;
+		sum1 += (adler2 & 0xFFFF) + base - 1;
+		sum2 += ((adler1 >> 16) & 0xFFFF) + ((adler2 >> 16) & 0xFFFF) + base - rem;
+		if (sum1 >= base) {
+			sum1 -= base;
+		}
+		if (sum1 >= base) {
+			sum1 -= base;
+		}
+		if (sum2 >= base << 1) {
+			sum2 -= base << 1;
+		}
+		if (sum2 >= base) {
+			sum2 -= base;
+		}
+		return sum1 | (sum2 << 16);
+	}
+
+	private static byte[] prepend(byte[] data, int len, byte b0, byte b1) {
+		byte[] result = new byte[len + 2];
+		result[0] = b0;
+		result[1] = b1;
+		System.arraycopy(data, 0, result, 2, len);
+		return result;
+	}
+
+	private static byte[] append(byte[] data, int len, long value) {
+		byte[] result = data.length >= len + 4 ? data : Arrays.copyOf(data, len + 4);
+		putInt(result, len, (int) value);
+		return result;
+	}
+
+	private static void putInt(byte[] buf, int off, int value) {
+		buf[off] = (byte) (value >>> 24);
+		buf[off + 1] = (byte) (value >>> 16);
+		buf[off + 2] = (byte) (value >>> 8);
+		buf[off + 3] = (byte) value;
+	}
+
+	private static void writeChunk(DataOutputStream out, String type, byte[] data, int off, int len) throws IOException {
+		byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+		CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data, off, len);
+		out.writeInt(len);
+		out.write(typeBytes);
+		out.write(data, off, len);
+		out.writeInt((int) crc.getValue());
+	}
+}
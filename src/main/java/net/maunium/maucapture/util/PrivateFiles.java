@@ -0,0 +1,55 @@
+package net.maunium.maucapture.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+
+/**
+ * Creates files that only the current user can access, e.g. for tokens and unfinished screenshots.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class PrivateFiles {
+	/**
+	 * Create a file or directory that only the owner can access, or restrict the permissions of an existing one. On
+	 * file systems with POSIX permissions, new files are created with the permissions atomically, so there's no
+	 * moment when others could open them.
+	 *
+	 * @param directory Whether to create a directory (and its missing parents) instead of a file.
+	 * @return The given path.
+	 */
+	public static Path create(Path path, boolean directory) throws IOException {
+		boolean posix = path.getFileSystem().supportedFileAttributeViews().contains("posix");
+		Set<PosixFilePermission> permissions = PosixFilePermissions.fromString(directory ? "rwx------" : "rw-------");
+		if (Files.exists(path)) {
+			if (posix) {
+				Files.setPosixFilePermissions(path, permissions);
+			}
+		} else if (posix) {
+			FileAttribute<Set<PosixFilePermission>> attribute = PosixFilePermissions.asFileAttribute(permissions);
+			if (directory) {
+				Files.createDirectories(path, attribute);
+			} else {
+				Files.createFile(path, attribute);
+			}
+		} else if (directory) {
+			Files.createDirectories(path);
+		} else {
+			Files.createFile(path);
+		}
+		if (!posix) {
+			File file = path.toFile();
+			file.setReadable(false, false);
+			file.setReadable(true, true);
+			file.setWritable(false, false);
+			file.setWritable(true, true);
+		}
+		return path;
+	}
+}
@@ -0,0 +1,40 @@
+package net.maunium.maucapture.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An output stream that reports the number of bytes written through it to a {@link ProgressReporter}.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class ProgressOutputStream extends FilterOutputStream {
+	private ProgressReporter progress;
+
+	/**
+	 * Create a progress output stream and start a new transfer in the given reporter.
+	 *
+	 * @param out      The stream to write to.
+	 * @param progress The reporter to report to.
+	 * @param total    The total number of bytes that will be written, or {@code -1} if unknown.
+	 */
+	public ProgressOutputStream(OutputStream out, ProgressReporter progress, long total) {
+		super(out);
+		this.progress = progress;
+		progress.start(total);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		out.write(b);
+		progress.add(1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		out.write(b, off, len);
+		progress.add(len);
+	}
+}
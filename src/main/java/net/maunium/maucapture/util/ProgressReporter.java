@@ -0,0 +1,169 @@
+package net.maunium.maucapture.util;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
+
+/**
+ * Reports the progress of a transfer to a progress bar. Progress can be reported from any thread as often as
+ * needed, but the progress bar is only updated on the event dispatch thread at most {@link #UPDATES_PER_SECOND}
+ * times per second.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class ProgressReporter {
+	/**
+	 * The maximum number of times per second the progress bar is updated.
+	 */
+	public static final int UPDATES_PER_SECOND = 30;
+	private static final long UPDATE_INTERVAL = 1000000000L / UPDATES_PER_SECOND;
+	/**
+	 * How much the newest sample affects the reported transfer rate.
+	 */
+	private static final double RATE_SMOOTHING = 0.3;
+
+	private volatile JProgressBar progress;
+	private volatile String label = "Uploading";
+	private final AtomicBoolean scheduled = new AtomicBoolean(false);
+	private final Runnable publisher = this::publish;
+
+	// Written by the transferring thread only.
+	private long lastSampleTime, lastSampleDone, nextUpdate;
+	private volatile long total = -1, done = 0;
+	private volatile double rate = 0;
+
+	// If status is not null, it's shown instead of the transfer progress.
+	private volatile String status;
+	private volatile boolean statusIndeterminate, statusComplete;
+
+	/**
+	 * @param progress The progress bar to update, or {@code null} to not report progress anywhere.
+	 */
+	public ProgressReporter(JProgressBar progress) {
+		this.progress = progress;
+	}
+
+	/**
+	 * Change the progress bar to update, e.g. when a progress window is only opened after the transfer has started.
+	 */
+	public void setProgressBar(JProgressBar progress) {
+		this.progress = progress;
+		schedule();
+	}
+
+	/**
+	 * Set the word shown before the transfer progress. Defaults to {@code Uploading}.
+	 */
+	public void setLabel(String label) {
+		this.label = label;
+	}
+
+	/**
+	 * Start reporting a new transfer.
+	 *
+	 * @param total The total number of bytes that will be transferred, or {@code -1} if unknown.
+	 */
+	public void start(long total) {
+		long now = System.nanoTime();
+		this.total = total;
+		this.done = 0;
+		this.rate = 0;
+		lastSampleTime = now;
+		lastSampleDone = 0;
+		nextUpdate = now;
+		status = null;
+		schedule();
+	}
+
+	/**
+	 * Add the given number of bytes to the transferred count.
+	 */
+	public void add(long bytes) {
+		long done = this.done += bytes;
+		long now = System.nanoTime();
+		if (now < nextUpdate) {
+			return;
+		}
+		double sample = (done - lastSampleDone) * 1000000000.0 / Math.max(1, now - lastSampleTime);
+		rate = rate == 0 ? sample : RATE_SMOOTHING * sample + (1 - RATE_SMOOTHING) * rate;
+		lastSampleTime = now;
+		lastSampleDone = done;
+		nextUpdate = now + UPDATE_INTERVAL;
+		schedule();
+	}
+
+	/**
+	 * Publish the final transfer progress, which may have been skipped by the rate limit.
+	 */
+	public void finish() {
+		schedule();
+	}
+
+	/**
+	 * Show the given text instead of the transfer progress.
+	 *
+	 * @param indeterminate Whether or not the progress bar should be in indeterminate mode.
+	 * @param complete      Whether or not the progress bar should be full.
+	 */
+	public void setStatus(String text, boolean indeterminate, boolean complete) {
+		statusIndeterminate = indeterminate;
+		statusComplete = complete;
+		status = text;
+		schedule();
+	}
+
+	private void schedule() {
+		if (progress != null && scheduled.compareAndSet(false, true)) {
+			SwingUtilities.invokeLater(publisher);
+		}
+	}
+
+	private void publish() {
+		scheduled.set(false);
+		JProgressBar progress = this.progress;
+		if (progress == null) {
+			return;
+		}
+		String status = this.status;
+		if (status != null) {
+			progress.setIndeterminate(statusIndeterminate);
+			progress.setMaximum(1);
+			progress.setValue(statusComplete ? 1 : 0);
+			progress.setString(status);
+			return;
+		}
+
+		long total = this.total, done = this.done;
+		double rate = this.rate;
+		StringBuilder sb = new StringBuilder(label).append(" - ");
+		if (total > 0) {
+			// JProgressBar only takes ints, so use per mille instead of bytes.
+			progress.setIndeterminate(false);
+			progress.setMaximum(1000);
+			progress.setValue((int) (done * 1000 / total));
+			sb.append(done * 100 / total).append('%');
+		} else {
+			progress.setIndeterminate(true);
+			appendBytes(sb, done);
+		}
+		if (rate > 0) {
+			appendBytes(sb.append(" - "), (long) rate).append("/s");
+			if (total > 0) {
+				sb.append(" - ").append((long) Math.ceil((total - done) / rate)).append("s left");
+			}
+		}
+		progress.setString(sb.toString());
+	}
+
+	private static StringBuilder appendBytes(StringBuilder sb, long bytes) {
+		if (bytes < 1024) {
+			return sb.append(bytes).append(" B");
+		} else if (bytes < 1024 * 1024) {
+			return sb.append(bytes / 1024).append(" KiB");
+		}
+		long tenths = bytes * 10 / (1024 * 1024);
+		return sb.append(tenths / 10).append('.').append(tenths % 10).append(" MiB");
+	}
+}
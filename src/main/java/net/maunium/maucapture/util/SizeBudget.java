@@ -0,0 +1,232 @@
+package net.maunium.maucapture.util;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Encodes an image in several formats, qualities and sizes in parallel and picks the smallest result that is good
+ * enough and fits in a byte limit.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class SizeBudget {
+	/**
+	 * The JPEG qualities to try at full size.
+	 */
+	private static final float[] JPEG_QUALITIES = {0.95f, 0.9f, 0.8f, 0.7f, 0.6f};
+	/**
+	 * The scales to try downscaled variants at, and the JPEG quality used for them.
+	 */
+	private static final double[] SCALES = {0.75, 0.5};
+	private static final float SCALED_QUALITY = 0.85f;
+
+	private static volatile boolean enabled = false;
+	private static volatile long maxSize = 0;
+	private static volatile double minQuality = 38;
+
+	/**
+	 * Set whether or not uploads should go through the size budget.
+	 */
+	public static void setEnabled(boolean enabled) {
+		SizeBudget.enabled = enabled;
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Set the maximum size of an upload in bytes. Zero or less means there is no limit other than that of the server.
+	 */
+	public static void setMaxSize(long maxSize) {
+		SizeBudget.maxSize = maxSize;
+	}
+
+	public static long getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Set the lowest acceptable quality as the peak signal-to-noise ratio in decibels. Around 40 dB differences are
+	 * hard to see, while text starts to look blurry or blocky below about 30 dB.
+	 */
+	public static void setMinQuality(double minQuality) {
+		SizeBudget.minQuality = minQuality;
+	}
+
+	public static double getMinQuality() {
+		return minQuality;
+	}
+
+	/**
+	 * An encoded variant of the image.
+	 */
+	public static class Candidate {
+		private final String description;
+		private final ByteImageSource source;
+		private final double quality;
+
+		private Candidate(String description, ByteImageSource source, double quality) {
+			this.description = description;
+			this.source = source;
+			this.quality = quality;
+		}
+
+		/**
+		 * Get a human-readable description of the format, quality and size of the variant.
+		 */
+		public String getDescription() {
+			return description;
+		}
+
+		public ByteImageSource getSource() {
+			return source;
+		}
+
+		/**
+		 * Get the peak signal-to-noise ratio of the variant compared to the original image in decibels. Lossless
+		 * variants have infinite quality.
+		 */
+		public double getQuality() {
+			return quality;
+		}
+	}
+
+	/**
+	 * Encode the candidate variants of the image in parallel and pick the smallest one that meets the quality
+	 * threshold and fits in the limit. If none does, the smallest variant under the limit is picked regardless of
+	 * quality, and if nothing fits, the smallest variant overall.
+	 *
+	 * @param format The format to use for the lossless variant, usually {@code png}.
+	 * @param limit  The maximum size in bytes, or zero or less for no limit other than {@link #getMaxSize()}.
+	 */
+	public static Candidate encode(BufferedImage image, String format, long limit) throws IOException {
+		long configured = maxSize;
+		if (limit <= 0 || configured > 0 && configured < limit) {
+			limit = configured;
+		}
+		double threshold = minQuality;
+
+		List<Callable<Candidate>> tasks = new ArrayList<>();
+		tasks.add(() -> new Candidate(format.toUpperCase(), ByteImageSource.encode(image, format),
+				Double.POSITIVE_INFINITY));
+		// JPEG doesn't support transparency, so only try it for opaque images.
+		boolean opaque = image.getTransparency() == Transparency.OPAQUE;
+		if (opaque) {
+			for (float quality : JPEG_QUALITIES) {
+				tasks.add(() -> lossy(image, image, "jpg", quality, "JPEG " + Math.round(quality * 100) + "%"));
+			}
+		}
+		for (double scale : SCALES) {
+			tasks.add(() -> {
+				BufferedImage scaled = scale(image, scale);
+				String size = Math.round(scale * 100) + "% size";
+				return opaque
+						? lossy(image, scaled, "jpg", SCALED_QUALITY, "JPEG " + Math.round(SCALED_QUALITY * 100) + "% at " + size)
+						: lossy(image, scaled, format, -1, format.toUpperCase() + " at " + size);
+			});
+		}
+
+		List<Candidate> candidates = new ArrayList<>(tasks.size());
+		try {
+			for (Future<Candidate> future : PngEncoder.currentPool().invokeAll(tasks)) {
+				candidates.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while encoding", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Failed to encode image", e.getCause());
+		}
+
+		Candidate best = null, fitting = null, smallest = null;
+		for (Candidate c : candidates) {
+			long length = c.source.getLength();
+			boolean fits = limit <= 0 || length <= limit;
+			if (fits && c.quality >= threshold && (best == null || length < best.source.getLength())) {
+				best = c;
+			}
+			if (fits && (fitting == null || length < fitting.source.getLength())) {
+				fitting = c;
+			}
+			if (smallest == null || length < smallest.source.getLength()) {
+				smallest = c;
+			}
+		}
+		return best != null ? best : fitting != null ? fitting : smallest;
+	}
+
+	/**
+	 * Encode a variant and measure its quality by decoding it and comparing it to the original.
+	 */
+	private static Candidate lossy(BufferedImage original, BufferedImage image, String format, float quality,
+			String description) throws IOException {
+		ExposedByteArrayOutputStream out = new ExposedByteArrayOutputStream();
+		ImageEncoding.write(image, format, quality, out);
+		ByteImageSource source = new ByteImageSource(format, out.getBuffer(), 0, out.size());
+		BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(out.getBuffer(), 0, out.size()));
+		if (decoded == null) {
+			throw new IOException("Failed to decode " + format + " variant");
+		}
+		if (decoded.getWidth() != original.getWidth() || decoded.getHeight() != original.getHeight()) {
+			decoded = scale(decoded, original.getWidth(), original.getHeight());
+		}
+		return new Candidate(description, source, psnr(original, decoded));
+	}
+
+	private static BufferedImage scale(BufferedImage image, double scale) {
+		return scale(image, Math.max(1, (int) Math.round(image.getWidth() * scale)),
+				Math.max(1, (int) Math.round(image.getHeight() * scale)));
+	}
+
+	private static BufferedImage scale(BufferedImage image, int width, int height) {
+		BufferedImage out = new BufferedImage(width, height,
+				image.getTransparency() == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = out.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+		g.drawImage(image, 0, 0, width, height, null);
+		g.dispose();
+		return out;
+	}
+
+	/**
+	 * Calculate the peak signal-to-noise ratio of the color channels of two images of the same size.
+	 */
+	static double psnr(BufferedImage a, BufferedImage b) {
+		int width = a.getWidth(), height = a.getHeight();
+		int[] rowA = new int[width], rowB = new int[width];
+		long sum = 0;
+		for (int y = 0; y < height; y++) {
+			a.getRGB(0, y, width, 1, rowA, 0, width);
+			b.getRGB(0, y, width, 1, rowB, 0, width);
+			for (int x = 0; x < width; x++) {
+				int pa = rowA[x], pb = rowB[x];
+				int dr = (pa >> 16 & 0xFF) - (pb >> 16 & 0xFF);
+				int dg = (pa >> 8 & 0xFF) - (pb >> 8 & 0xFF);
+				int db = (pa & 0xFF) - (pb & 0xFF);
+				sum += dr * dr + dg * dg + db * db;
+			}
+		}
+		if (sum == 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		double mse = (double) sum / (3.0 * width * height);
+		return 10 * Math.log10(255.0 * 255.0 / mse);
+	}
+}
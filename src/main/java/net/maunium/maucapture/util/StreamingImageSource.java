@@ -0,0 +1,76 @@
+package net.maunium.maucapture.util;
+
+import java.awt.image.RenderedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.Consumer;
+
+/**
+ * An ImageSource that encodes the image while it's being written, so encoding and sending overlap and the encoded
+ * image doesn't have to be stored before sending.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class StreamingImageSource implements ImageSource {
+	private final RenderedImage image;
+	private final String format;
+	private final Consumer<ByteImageSource> onEncoded;
+
+	public StreamingImageSource(RenderedImage image, String format) {
+		this(image, format, null);
+	}
+
+	/**
+	 * @param onEncoded A function to pass a copy of the encoded image to after it has been written completely, or
+	 *                  {@code null} if the copy isn't needed.
+	 */
+	public StreamingImageSource(RenderedImage image, String format, Consumer<ByteImageSource> onEncoded) {
+		this.image = image;
+		this.format = format;
+		this.onEncoded = onEncoded;
+	}
+
+	@Override
+	public String getFormat() {
+		return format;
+	}
+
+	@Override
+	public long getLength() {
+		return -1;
+	}
+
+	@Override
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	@Override
+	public void writeTo(OutputStream out) throws IOException {
+		if (onEncoded == null) {
+			ImageEncoding.write(image, format, out);
+			return;
+		}
+		ExposedByteArrayOutputStream copy = new ExposedByteArrayOutputStream();
+		ImageEncoding.write(image, format, new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				out.write(b);
+				copy.write(b);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+				copy.write(b, off, len);
+			}
+
+			@Override
+			public void flush() throws IOException {
+				out.flush();
+			}
+		});
+		onEncoded.accept(new ByteImageSource(format, copy.getBuffer(), 0, copy.size()));
+	}
+}
@@ -6,25 +6,50 @@ import java.awt.datatransfer.ClipboardOwner;
 import java.awt.datatransfer.DataFlavor;
 import java.awt.datatransfer.Transferable;
 import java.awt.datatransfer.UnsupportedFlavorException;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 
 /**
- * A simple Transferable implementation to allow copying images to the clipboard.
+ * A simple Transferable implementation to allow copying images to the clipboard. Buffered images are also offered
+ * as PNG bytes, which are taken from the {@link EncodeCache} if the same revision has already been encoded.
  *
  * @author tulir
  * @since 2.0.0
  */
 public class TransferableImage implements Transferable, ClipboardOwner {
+	private static final DataFlavor pngFlavor = createPngFlavor();
+
 	private Image i;
+	private long revision;
 
 	public TransferableImage(Image i) {
+		this(i, -1);
+	}
+
+	/**
+	 * @param revision The revision of the image for the {@link EncodeCache}, or {@code -1} to not cache it.
+	 */
+	public TransferableImage(Image i, long revision) {
 		this.i = i;
+		this.revision = revision;
+	}
+
+	private static DataFlavor createPngFlavor() {
+		try {
+			return new DataFlavor("image/png;class=java.io.InputStream");
+		} catch (ClassNotFoundException e) {
+			throw new RuntimeException(e);
+		}
 	}
 
 	@Override
 	public Object getTransferData(DataFlavor flavor) throws UnsupportedFlavorException, IOException {
 		if (flavor.equals(DataFlavor.imageFlavor) && i != null) {
 			return i;
+		} else if (flavor.equals(pngFlavor) && i instanceof BufferedImage) {
+			ByteImageSource png = EncodeCache.encode((BufferedImage) i, revision, "png");
+			return new ByteArrayInputStream(png.getData(), png.getOffset(), (int) png.getLength());
 		} else {
 			throw new UnsupportedFlavorException(flavor);
 		}
@@ -32,9 +57,10 @@ public class TransferableImage implements Transferable, ClipboardOwner {
 
 	@Override
 	public DataFlavor[] getTransferDataFlavors() {
-		DataFlavor[] flavors = new DataFlavor[1];
-		flavors[0] = DataFlavor.imageFlavor;
-		return flavors;
+		if (i instanceof BufferedImage) {
+			return new DataFlavor[]{DataFlavor.imageFlavor, pngFlavor};
+		}
+		return new DataFlavor[]{DataFlavor.imageFlavor};
 	}
 
 	@Override
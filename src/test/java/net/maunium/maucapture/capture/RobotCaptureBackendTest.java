@@ -0,0 +1,88 @@
+package net.maunium.maucapture.capture;
+
+import java.awt.Frame;
+import java.awt.GraphicsDevice;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+import java.awt.Robot;
+import java.awt.event.InputEvent;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link RobotCaptureBackend} on a real display. Skipped when headless, run e.g. with
+ * {@code xvfb-run -s "-screen 0 1024x768x24" mvn test}.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class RobotCaptureBackendTest {
+	@Before
+	public void requireDisplay() {
+		Assume.assumeFalse("No display", GraphicsEnvironment.isHeadless());
+	}
+
+	@Test
+	public void boundsCoverExactlyAllScreens() {
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+		for (GraphicsDevice gd : GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices()) {
+			Rectangle screen = gd.getDefaultConfiguration().getBounds();
+			minX = Math.min(minX, screen.x);
+			minY = Math.min(minY, screen.y);
+			maxX = Math.max(maxX, screen.x + screen.width);
+			maxY = Math.max(maxY, screen.y + screen.height);
+		}
+		assertEquals(new Rectangle(minX, minY, maxX - minX, maxY - minY), RobotCaptureBackend.getScreenBounds());
+	}
+
+	@Test(timeout = 30000)
+	public void capturesSelectedRegion() throws Exception {
+		RobotCaptureBackend backend = new RobotCaptureBackend();
+		assertTrue(backend.isAvailable());
+		CompletableFuture<BufferedImage> result = CompletableFuture.supplyAsync(() -> {
+			try {
+				return backend.capture();
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		});
+
+		Frame overlay = null;
+		while (overlay == null) {
+			Thread.sleep(50);
+			for (Frame frame : Frame.getFrames()) {
+				if (frame.isShowing() && frame.getTitle().equals("mauCapture")) {
+					overlay = frame;
+				}
+			}
+		}
+
+		Rectangle bounds = RobotCaptureBackend.getScreenBounds();
+		Robot robot = new Robot();
+		robot.setAutoDelay(50);
+		robot.waitForIdle();
+		robot.mouseMove(bounds.x + 50, bounds.y + 40);
+		robot.mousePress(InputEvent.BUTTON1_DOWN_MASK);
+		robot.mouseMove(bounds.x + 100, bounds.y + 80);
+		robot.mouseMove(bounds.x + 150, bounds.y + 100);
+		robot.mouseRelease(InputEvent.BUTTON1_DOWN_MASK);
+
+		BufferedImage bi = result.get(10, TimeUnit.SECONDS);
+		assertNotNull(bi);
+		assertEquals(100, bi.getWidth());
+		assertEquals(60, bi.getHeight());
+		// The selection must not keep the capture of the whole screen alive.
+		assertNull(bi.getRaster().getParent());
+		assertTrue(backend.getLastLatency() >= 0);
+	}
+}
@@ -0,0 +1,193 @@
+package net.maunium.maucapture.uploaders;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import net.maunium.maucapture.util.ByteImageSource;
+import net.maunium.maucapture.util.ImageEncoding;
+import net.maunium.maucapture.util.StreamingImageSource;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the upload mode negotiation of {@link MISUploader} against a stand-in mauImageServer.
+ *
+ * @author tulir
+ * @since 2.2.0
+ */
+public class MISUploaderTest {
+	private static final byte[] IMAGE = "not really a png ä".getBytes(StandardCharsets.UTF_8);
+
+	private HttpServer server;
+	private String addr;
+	private final List<String> requests = new ArrayList<>();
+	private String capabilities;
+	private int capabilitiesStatus;
+	private boolean rejectMultipart;
+	private String insertType;
+	private String insertBody;
+
+	@Before
+	public void start() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/capabilities", exchange -> {
+			requests.add("capabilities");
+			respond(exchange, capabilitiesStatus, capabilities);
+		});
+		server.createContext("/insert", exchange -> {
+			String type = exchange.getRequestHeaders().getFirst("Content-Type");
+			String body = new String(readAll(exchange.getRequestBody()), StandardCharsets.UTF_8);
+			requests.add("insert " + type.split(";")[0]);
+			if (rejectMultipart && type.startsWith("multipart/")) {
+				respond(exchange, 415, "{\"success\": false, \"status-humanreadable\": \"Unsupported media type\"}");
+				return;
+			}
+			insertType = type;
+			insertBody = body;
+			respond(exchange, 200, "{\"success\": true}");
+		});
+		server.start();
+		// Each test uses a new port, so the capabilities cached by earlier tests don't apply.
+		addr = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+	}
+
+	@After
+	public void stop() {
+		server.stop(0);
+	}
+
+	private MISUploader uploader() {
+		return new MISUploader(null, addr, "test", "png", "tulir", "töken", false);
+	}
+
+	@Test
+	public void uploadsMultipartWhenAdvertised() throws IOException {
+		capabilitiesStatus = 200;
+		capabilities = "{\"upload-modes\": [\"json\", \"multipart\"]}";
+		MISUploader u = uploader();
+
+		assertFalse(u.requiresLength());
+		assertEquals(addr + "test.png", u.upload(new ByteImageSource("png", IMAGE, 0, IMAGE.length)));
+		assertEquals(2, requests.size());
+		assertEquals("insert multipart/form-data", requests.get(1));
+		assertTrue(insertBody.contains(new String(IMAGE, StandardCharsets.UTF_8)));
+		// The string fields must be sent as UTF-8.
+		assertTrue(insertBody.contains("töken"));
+		assertTrue(insertBody.contains("charset=UTF-8"));
+	}
+
+	@Test
+	public void uploadsJsonToOldServers() throws IOException {
+		capabilitiesStatus = 404;
+		capabilities = "404 page not found";
+		MISUploader u = uploader();
+
+		assertTrue(u.requiresLength());
+		assertEquals(addr + "test.png", u.upload(new ByteImageSource("png", IMAGE, 0, IMAGE.length)));
+		assertEquals(2, requests.size());
+		assertTrue(insertType.startsWith("application/json"));
+		JsonObject payload = new JsonParser().parse(insertBody).getAsJsonObject();
+		assertEquals("töken", payload.get("auth-token").getAsString());
+		assertEquals(Base64.getEncoder().encodeToString(IMAGE), payload.get("image").getAsString());
+	}
+
+	@Test
+	public void fallsBackToJsonOnUnsupportedMediaType() throws IOException {
+		capabilitiesStatus = 200;
+		capabilities = "{\"upload-modes\": [\"multipart\"]}";
+		rejectMultipart = true;
+
+		assertEquals(addr + "test.png", uploader().upload(new ByteImageSource("png", IMAGE, 0, IMAGE.length)));
+		assertEquals(3, requests.size());
+		assertEquals("insert multipart/form-data", requests.get(1));
+		assertEquals("insert application/json", requests.get(2));
+		assertTrue(insertType.startsWith("application/json"));
+
+		// The fallback is remembered, so the next upload goes straight to JSON.
+		requests.clear();
+		uploader().upload(new ByteImageSource("png", IMAGE, 0, IMAGE.length));
+		assertEquals(1, requests.size());
+		assertEquals("insert application/json", requests.get(0));
+	}
+
+	@Test
+	public void fallsBackToJsonWithStreamingSource() throws IOException {
+		capabilitiesStatus = 200;
+		capabilities = "{\"upload-modes\": [\"multipart\"]}";
+		rejectMultipart = true;
+		BufferedImage image = new BufferedImage(300, 200, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				image.setRGB(x, y, x * 0x010203 ^ y * 0x030201);
+			}
+		}
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		ImageEncoding.write(image, "png", expected);
+
+		// The streaming source is what UploadScheduler sends when the image is encoded while sending.
+		assertEquals(addr + "test.png", uploader().upload(new StreamingImageSource(image, "png")));
+		assertEquals(Arrays.asList("capabilities", "insert multipart/form-data", "insert application/json"), requests);
+		// The retry encodes the image again, and the whole image must be in the body.
+		JsonObject payload = new JsonParser().parse(insertBody).getAsJsonObject();
+		byte[] sent = Base64.getDecoder().decode(payload.get("image").getAsString());
+		assertArrayEquals(expected.toByteArray(), sent);
+		BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(sent));
+		assertEquals(image.getWidth(), decoded.getWidth());
+		assertEquals(image.getHeight(), decoded.getHeight());
+		assertEquals(image.getRGB(299, 199), decoded.getRGB(299, 199));
+	}
+
+	@Test
+	public void cachesFailedCapabilityFetches() throws IOException {
+		capabilitiesStatus = 200;
+		capabilities = "this is not json";
+		MISUploader u = uploader();
+
+		assertTrue(u.requiresLength());
+		assertEquals(addr + "test.png", u.upload(new ByteImageSource("png", IMAGE, 0, IMAGE.length)));
+		assertEquals(2, requests.size());
+		assertEquals("insert application/json", requests.get(1));
+	}
+
+	private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] data = body.getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(status, data.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(data);
+		}
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[8192];
+		int n;
+		while ((n = in.read(buf)) != -1) {
+			out.write(buf, 0, n);
+		}
+		return out.toByteArray();
+	}
+}